@@ -0,0 +1,55 @@
+package de.andre.neat;
+
+/**
+ * Activation function of a node working on primitive floats.
+ */
+@FunctionalInterface
+public interface ActivationFunction {
+
+  /**
+   * 1 / (1 + e^(-4.9x)), the steepened sigmoid of the NEAT paper
+   */
+  ActivationFunction STEEPENED_SIGMOID = ActivationFunction::steepenedSigmoid;
+  /**
+   * approximation of {@link #STEEPENED_SIGMOID} by a lookup table of 1024 entries on [-3, 3] with
+   * linear interpolation. The absolute error is below 1.1e-5.
+   */
+  ActivationFunction STEEPENED_SIGMOID_LOOKUP = new LookupTableActivationFunction(
+      STEEPENED_SIGMOID, -3f, 3f, 1024);
+  /**
+   * approximation of {@link #STEEPENED_SIGMOID} by a rational function without any call to
+   * {@link Math#exp(double)}. The absolute error is below 5e-5.
+   */
+  ActivationFunction STEEPENED_SIGMOID_RATIONAL = ActivationFunction::steepenedSigmoidRational;
+  ActivationFunction TANH = ActivationFunction::tanh;
+  ActivationFunction RELU = ActivationFunction::relu;
+
+  float apply(float x);
+
+  static float steepenedSigmoid(float x) {
+    return (float) (1d / (1d + Math.exp(-4.9d * x)));
+  }
+
+  static float steepenedSigmoidRational(float x) {
+    // sigmoid(4.9x) = (1 + tanh(2.45x)) / 2, tanh approximated by Lambert's continued fraction
+    float y = 2.45f * x;
+    if (y >= 4.97f) {
+      return 1f;
+    }
+    if (y <= -4.97f) {
+      return 0f;
+    }
+    float y2 = y * y;
+    float tanh = y * (135135f + y2 * (17325f + y2 * (378f + y2)))
+        / (135135f + y2 * (62370f + y2 * (3150f + y2 * 28f)));
+    return 0.5f + 0.5f * tanh;
+  }
+
+  static float tanh(float x) {
+    return (float) Math.tanh(x);
+  }
+
+  static float relu(float x) {
+    return x > 0f ? x : 0f;
+  }
+}
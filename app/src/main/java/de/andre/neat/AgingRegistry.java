@@ -0,0 +1,204 @@
+package de.andre.neat;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.LongFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Thread-safe map from a primitive key to a value that is created once per key. Entries that have
+ * not been used for more than maxAge generations are evicted by {@link #nextGeneration()}.
+ * <p>
+ * The entries are kept in an open-addressing table, so keys are not boxed and reading a present
+ * key takes no lock. Adding a key locks the registry, the table is replaced as a whole when it
+ * grows or entries are evicted.
+ */
+class AgingRegistry<V> {
+
+  private static final int MIN_CAPACITY = 16;
+
+  private volatile Table<V> table = new Table<>(MIN_CAPACITY);
+  private final int maxAge;
+  private volatile int generation;
+
+  /**
+   * @param maxAge number of generations an entry is kept after its last use,
+   *               {@link Integer#MAX_VALUE} keeps all entries
+   */
+  AgingRegistry(int maxAge) {
+    if (maxAge < 0) {
+      throw new IllegalArgumentException("maxAge must not be negative");
+    }
+    this.maxAge = maxAge;
+  }
+
+  /**
+   * @return the value for the key, the factory is called at most once per key (until the key is
+   * evicted)
+   */
+  V get(long key, LongFunction<V> factory) {
+    Registration<V> registration = table.find(key);
+    if (registration == null) {
+      registration = register(key, factory);
+    }
+    // only written when it changes, so entries that are used often are not written all the time
+    int currentGeneration = generation;
+    if (registration.lastUsedGeneration != currentGeneration) {
+      registration.lastUsedGeneration = currentGeneration;
+    }
+    return registration.value;
+  }
+
+  private synchronized Registration<V> register(long key, LongFunction<V> factory) {
+    Table<V> current = table;
+    Registration<V> registration = current.find(key);
+    if (registration == null) {
+      registration = new Registration<>(key, factory.apply(key));
+      add(registration);
+    }
+    return registration;
+  }
+
+  /**
+   * Adds a registration with a new key, the caller holds the lock.
+   */
+  private void add(Registration<V> registration) {
+    Table<V> current = table;
+    if ((current.size + 1) * 2 > current.capacity()) {
+      Table<V> grown = new Table<>(current.capacity() * 2);
+      current.forEach(grown::add);
+      grown.add(registration);
+      table = grown;
+    } else {
+      current.add(registration);
+    }
+  }
+
+  /**
+   * Starts the next generation and evicts the entries that are too old, must not be called while
+   * entries are added.
+   */
+  synchronized void nextGeneration() {
+    int currentGeneration = ++generation;
+    if (maxAge != Integer.MAX_VALUE) {
+      Table<V> current = table;
+      Table<V> remaining = new Table<>(current.capacity());
+      current.forEach(registration -> {
+        if (currentGeneration - registration.lastUsedGeneration <= maxAge) {
+          remaining.add(registration);
+        }
+      });
+      if (remaining.size < current.size) {
+        table = remaining;
+      }
+    }
+  }
+
+  int size() {
+    return table.size;
+  }
+
+  /**
+   * Writes the generation and all entries, must not be called while entries are added.
+   *
+   * @param values encodes a value as int
+   */
+  void writeTo(DataOutput out, ToIntFunction<V> values) throws IOException {
+    Table<V> current = table;
+    out.writeInt(generation);
+    out.writeInt(current.size);
+    for (int slot = 0; slot < current.capacity(); slot++) {
+      Registration<V> registration = current.slots.get(slot);
+      if (registration != null) {
+        out.writeLong(registration.key);
+        out.writeInt(values.applyAsInt(registration.value));
+        out.writeInt(registration.lastUsedGeneration);
+      }
+    }
+  }
+
+  /**
+   * Replaces the generation and all entries by the ones written by
+   * {@link #writeTo(DataOutput, ToIntFunction)}.
+   *
+   * @param values decodes a value from its int
+   */
+  synchronized void readFrom(DataInput in, IntFunction<V> values) throws IOException {
+    int currentGeneration = in.readInt();
+    int size = in.readInt();
+    table = new Table<>(MIN_CAPACITY);
+    for (int i = 0; i < size; i++) {
+      long key = in.readLong();
+      Registration<V> registration = new Registration<>(key, values.apply(in.readInt()));
+      registration.lastUsedGeneration = in.readInt();
+      add(registration);
+    }
+    generation = currentGeneration;
+  }
+
+  /**
+   * Open-addressing table with linear probing. Slots are only written under the lock of the
+   * registry and never cleared, so a reader either finds the key or reaches an empty slot.
+   */
+  private static final class Table<V> {
+
+    private final AtomicReferenceArray<Registration<V>> slots;
+    /**
+     * only changed under the lock of the registry
+     */
+    private volatile int size;
+
+    private Table(int capacity) {
+      slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    private int capacity() {
+      return slots.length();
+    }
+
+    private Registration<V> find(long key) {
+      int mask = slots.length() - 1;
+      for (int slot = LongIntHashMap.slot(key, mask); ; slot = slot + 1 & mask) {
+        Registration<V> registration = slots.get(slot);
+        if (registration == null || registration.key == key) {
+          return registration;
+        }
+      }
+    }
+
+    private void add(Registration<V> registration) {
+      int mask = slots.length() - 1;
+      int slot = LongIntHashMap.slot(registration.key, mask);
+      while (slots.get(slot) != null) {
+        slot = slot + 1 & mask;
+      }
+      slots.set(slot, registration);
+      size++;
+    }
+
+    private void forEach(Consumer<Registration<V>> action) {
+      for (int slot = 0; slot < slots.length(); slot++) {
+        Registration<V> registration = slots.get(slot);
+        if (registration != null) {
+          action.accept(registration);
+        }
+      }
+    }
+  }
+
+  private static class Registration<V> {
+
+    private final long key;
+    private final V value;
+    private volatile int lastUsedGeneration;
+
+    private Registration(long key, V value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package de.andre.neat;
+
+import java.util.Random;
+
+/**
+ * Samples indices with probabilities proportional to their weights in O(1) (Walker's alias method
+ * as described by Vose). Each index gets a column with the probability to keep it and an alias for
+ * the rest of the column.
+ */
+final class AliasTable implements SelectionStrategy.Selection {
+
+  private final int size;
+  private final double[] probabilities;
+  private final int[] aliases;
+
+  /**
+   * @param weights non-negative weights, all indices have the same probability when their sum is 0
+   */
+  AliasTable(double[] weights, int size) {
+    this.size = size;
+    this.probabilities = new double[size];
+    this.aliases = new int[size];
+
+    double sum = 0d;
+    for (int i = 0; i < size; i++) {
+      sum += weights[i];
+    }
+    if (!(sum > 0d) || Double.isInfinite(sum)) {
+      for (int i = 0; i < size; i++) {
+        probabilities[i] = 1d;
+        aliases[i] = i;
+      }
+      return;
+    }
+
+    // columns below the average are filled up by columns above the average
+    int[] small = new int[size];
+    int[] large = new int[size];
+    int smallSize = 0;
+    int largeSize = 0;
+    for (int i = 0; i < size; i++) {
+      probabilities[i] = weights[i] * size / sum;
+      if (probabilities[i] < 1d) {
+        small[smallSize++] = i;
+      } else {
+        large[largeSize++] = i;
+      }
+    }
+    while (smallSize > 0 && largeSize > 0) {
+      int less = small[--smallSize];
+      int more = large[--largeSize];
+      aliases[less] = more;
+      probabilities[more] += probabilities[less] - 1d;
+      if (probabilities[more] < 1d) {
+        small[smallSize++] = more;
+      } else {
+        large[largeSize++] = more;
+      }
+    }
+    // the remaining columns are full, apart from rounding errors
+    while (largeSize > 0) {
+      int index = large[--largeSize];
+      probabilities[index] = 1d;
+      aliases[index] = index;
+    }
+    while (smallSize > 0) {
+      int index = small[--smallSize];
+      probabilities[index] = 1d;
+      aliases[index] = index;
+    }
+  }
+
+  /**
+   * @return the fitness values as weights, shifted by the lowest value if it is negative
+   */
+  static double[] nonNegativeWeights(float[] fitnesses, int size) {
+    float min = 0f;
+    for (int i = 0; i < size; i++) {
+      min = Math.min(min, fitnesses[i]);
+    }
+    double[] weights = new double[size];
+    for (int i = 0; i < size; i++) {
+      weights[i] = (double) fitnesses[i] - min;
+    }
+    return weights;
+  }
+
+  @Override
+  public int select(Random r) {
+    int column = r.nextInt(size);
+    return r.nextDouble() < probabilities[column] ? column : aliases[column];
+  }
+}
@@ -1,31 +1,75 @@
 package de.andre.neat;
 
+import static de.andre.neat.Parameter.PARAM_CHECKPOINT_INTERVAL;
 import static de.andre.neat.Parameter.PARAM_POPULATION_SIZE;
 
+import de.andre.neat.runtime.Model.WeightEncoding;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
 public class App {
 
-  public static void main(String[] args) {
+  private static final Path CHECKPOINT = Path.of("output/xor/checkpoint.bin");
+  private static final Path HISTORY = Path.of("output/xor/history.bin");
+  private static final Path MODEL = Path.of("output/xor/champion.model");
+  private static final int GENERATIONS = 1_000;
+
+  /**
+   * @param args --resume continues the run of the last checkpoint until it has evaluated the same
+   *             number of generations as a new run, --history appends all genomes of each
+   *             generation to the history
+   */
+  public static void main(String[] args) throws IOException {
+    List<String> options = List.of(args);
     XorEvaluator evaluator = new XorEvaluator(PARAM_POPULATION_SIZE);
+    if (options.contains("--resume")) {
+      evaluator.restoreCheckpoint(CHECKPOINT);
+    }
+    Files.createDirectories(CHECKPOINT.getParent());
+    evaluator.setCheckpoints(CHECKPOINT, PARAM_CHECKPOINT_INTERVAL);
+    evaluator.addGenerationListener(App::printGeneration);
+    GenerationHistoryWriter history = null;
+    if (options.contains("--history")) {
+      history = new GenerationHistoryWriter(HISTORY);
+      evaluator.addGenerationListener(history);
+    }
 
-    for (int i = 0; i < 1_000; i++) {
-      evaluator.evaluateNextGeneration();
-      System.out.print("Generation: " + i);
-      System.out.print("\tHighest fitness: " + evaluator.getHighestFitness().getValue());
-      System.out.print("\tAmount of species: " + evaluator.getNumberOfSpecies());
-      System.out.print(
-          "\tConnections in best performer: " + evaluator.getFittestGenome().getConnections()
-              .size());
-      int deadGenes = 0;
-      for (ConnectionGene cg : evaluator.getFittestGenome().getConnections()) {
-        if (cg.getExpressed() == ExpressedState.NOT_EXPRESSED) {
-          deadGenes++;
-        }
+    try {
+      while (evaluator.getEvaluatedGenerations() < GENERATIONS) {
+        evaluator.evaluateNextGeneration();
       }
-      System.out.print("\tDead genes in best performer: " + deadGenes);
-      System.out.print("\n");
-      if (i % 100 == 0) {
-        GenomePrinter.printGenome(evaluator.getFittestGenome(), "output/xor/genome_"+i+".png");
+    } finally {
+      if (history != null) {
+        history.close();
       }
     }
+
+    try {
+      evaluator.exportFittestGenome(MODEL, WeightEncoding.FLOAT32);
+    } catch (IllegalArgumentException ex) {
+      System.out.println("The fittest genome has not been exported: " + ex.getMessage());
+    }
+  }
+
+  private static void printGeneration(GenerationStatistics statistics) {
+    int i = statistics.getGeneration() - 1;
+    Genome fittestGenome = statistics.getFittestGenome();
+    System.out.print("Generation: " + i);
+    System.out.print("\tHighest fitness: " + statistics.getHighestFitness().getValue());
+    System.out.print("\tAmount of species: " + statistics.getNumberOfSpecies());
+    System.out.print("\tConnections in best performer: " + fittestGenome.getConnections().size());
+    int deadGenes = fittestGenome.getConnections().size() - fittestGenome.expressedConnectionCount();
+    System.out.print("\tDead genes in best performer: " + deadGenes);
+    System.out.printf("\tTime: %.3f ms", statistics.getTotalNanos() / 1e6);
+    for (GenerationPhase phase : GenerationPhase.values()) {
+      System.out.printf(" %s %.3f", phase.name().toLowerCase(), statistics.getNanos(phase) / 1e6);
+    }
+    System.out.print("\tAllocated: " + statistics.getTotalAllocatedBytes() / 1024 + " KB");
+    System.out.print("\n");
+    if (i % 100 == 0) {
+      GenomePrinter.printGenome(fittestGenome, "output/xor/genome_" + i + ".png");
+    }
   }
 }
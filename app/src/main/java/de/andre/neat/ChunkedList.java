@@ -0,0 +1,221 @@
+package de.andre.neat;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list stored in chunks of at most {@value #MAX_CHUNK_SIZE} elements. {@link #replace}
+ * and {@link #insert} return a new list that shares all unchanged chunks with this list, so they
+ * only copy one chunk and the array of chunk references instead of all elements.
+ */
+final class ChunkedList<T> extends AbstractList<T> implements RandomAccess {
+
+  static final int MAX_CHUNK_SIZE = 32;
+
+  private static final ChunkedList<?> EMPTY = new ChunkedList<>(new Object[0][], new int[1]);
+
+  private final Object[][] chunks;
+  /**
+   * index of the first element of chunk i, offsets[chunks.length] is the size of the list
+   */
+  private final int[] offsets;
+
+  private ChunkedList(Object[][] chunks, int[] offsets) {
+    this.chunks = chunks;
+    this.offsets = offsets;
+  }
+
+  @SuppressWarnings("unchecked")
+  static <T> ChunkedList<T> empty() {
+    return (ChunkedList<T>) EMPTY;
+  }
+
+  static <T> ChunkedList<T> copyOf(Collection<? extends T> elements) {
+    if (elements instanceof ChunkedList) {
+      @SuppressWarnings("unchecked")
+      ChunkedList<T> list = (ChunkedList<T>) elements;
+      return list;
+    }
+    Builder<T> builder = new Builder<>();
+    for (T element : elements) {
+      builder.add(element);
+    }
+    return builder.build();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T get(int index) {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size());
+    }
+    int chunk = chunkOf(index);
+    return (T) chunks[chunk][index - offsets[chunk]];
+  }
+
+  @Override
+  public int size() {
+    return offsets[chunks.length];
+  }
+
+  /**
+   * @return a copy of this list with the element at the index replaced
+   */
+  ChunkedList<T> replace(int index, T element) {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size());
+    }
+    int chunk = chunkOf(index);
+    Object[] newChunk = chunks[chunk].clone();
+    newChunk[index - offsets[chunk]] = element;
+    Object[][] newChunks = chunks.clone();
+    newChunks[chunk] = newChunk;
+    // the offsets do not change, so they are shared as well
+    return new ChunkedList<>(newChunks, offsets);
+  }
+
+  /**
+   * @return a copy of this list with the element inserted at the index, the elements from the index
+   * on are shifted by one
+   */
+  ChunkedList<T> insert(int index, T element) {
+    int size = size();
+    if (index < 0 || index > size) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+    }
+    if (chunks.length == 0 || index == size
+        && chunks[chunks.length - 1].length == MAX_CHUNK_SIZE) {
+      // start a new chunk at the end, so appending keeps all chunks full
+      Object[][] newChunks = Arrays.copyOf(chunks, chunks.length + 1);
+      newChunks[chunks.length] = new Object[]{element};
+      int[] newOffsets = Arrays.copyOf(offsets, offsets.length + 1);
+      newOffsets[chunks.length + 1] = size + 1;
+      return new ChunkedList<>(newChunks, newOffsets);
+    }
+
+    int chunk = index == size ? chunks.length - 1 : chunkOf(index);
+    Object[] oldChunk = chunks[chunk];
+    int position = index - offsets[chunk];
+    Object[] grownChunk = new Object[oldChunk.length + 1];
+    System.arraycopy(oldChunk, 0, grownChunk, 0, position);
+    grownChunk[position] = element;
+    System.arraycopy(oldChunk, position, grownChunk, position + 1, oldChunk.length - position);
+
+    Object[][] newChunks;
+    int[] newOffsets;
+    if (grownChunk.length <= MAX_CHUNK_SIZE) {
+      newChunks = chunks.clone();
+      newChunks[chunk] = grownChunk;
+      newOffsets = offsets.clone();
+    } else {
+      // split the chunk in halves
+      int half = grownChunk.length / 2;
+      newChunks = new Object[chunks.length + 1][];
+      System.arraycopy(chunks, 0, newChunks, 0, chunk);
+      newChunks[chunk] = Arrays.copyOfRange(grownChunk, 0, half);
+      newChunks[chunk + 1] = Arrays.copyOfRange(grownChunk, half, grownChunk.length);
+      System.arraycopy(chunks, chunk + 1, newChunks, chunk + 2, chunks.length - chunk - 1);
+      newOffsets = new int[offsets.length + 1];
+      System.arraycopy(offsets, 0, newOffsets, 0, chunk + 1);
+      newOffsets[chunk + 1] = offsets[chunk] + half;
+      System.arraycopy(offsets, chunk + 1, newOffsets, chunk + 2, offsets.length - chunk - 1);
+      chunk++;
+    }
+    for (int i = chunk + 1; i < newOffsets.length; i++) {
+      newOffsets[i]++;
+    }
+    return new ChunkedList<>(newChunks, newOffsets);
+  }
+
+  /**
+   * @return the chunk that contains the index
+   */
+  private int chunkOf(int index) {
+    // the last chunk with an offset of at most index
+    int low = 0;
+    int high = chunks.length - 1;
+    while (low < high) {
+      int middle = (low + high + 1) >>> 1;
+      if (offsets[middle] <= index) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return low;
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    return new Iterator<>() {
+      private int chunk;
+      private int position;
+
+      @Override
+      public boolean hasNext() {
+        return chunk < chunks.length;
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public T next() {
+        if (chunk >= chunks.length) {
+          throw new NoSuchElementException();
+        }
+        T element = (T) chunks[chunk][position++];
+        if (position == chunks[chunk].length) {
+          chunk++;
+          position = 0;
+        }
+        return element;
+      }
+    };
+  }
+
+  /**
+   * Collects elements into full chunks, a builder can only build one list.
+   */
+  static final class Builder<T> {
+
+    private Object[][] chunks = new Object[4][];
+    private int chunkCount;
+    private Object[] current = new Object[MAX_CHUNK_SIZE];
+    private int currentSize;
+    private int size;
+
+    Builder<T> add(T element) {
+      if (currentSize == MAX_CHUNK_SIZE) {
+        addChunk(current);
+        current = new Object[MAX_CHUNK_SIZE];
+        currentSize = 0;
+      }
+      current[currentSize++] = element;
+      size++;
+      return this;
+    }
+
+    ChunkedList<T> build() {
+      if (size == 0) {
+        return empty();
+      }
+      addChunk(currentSize == MAX_CHUNK_SIZE ? current : Arrays.copyOf(current, currentSize));
+      Object[][] builtChunks = Arrays.copyOf(chunks, chunkCount);
+      int[] offsets = new int[chunkCount + 1];
+      for (int i = 0; i < chunkCount; i++) {
+        offsets[i + 1] = offsets[i] + builtChunks[i].length;
+      }
+      return new ChunkedList<>(builtChunks, offsets);
+    }
+
+    private void addChunk(Object[] chunk) {
+      if (chunkCount == chunks.length) {
+        chunks = Arrays.copyOf(chunks, chunkCount * 2);
+      }
+      chunks[chunkCount++] = chunk;
+    }
+  }
+}
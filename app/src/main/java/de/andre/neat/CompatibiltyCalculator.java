@@ -4,59 +4,133 @@ import static de.andre.neat.Parameter.PARAM_C1;
 import static de.andre.neat.Parameter.PARAM_C2;
 import static de.andre.neat.Parameter.PARAM_C3;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.List;
 
 public class CompatibiltyCalculator {
 
   public float calcCompatibility(Genome genome1, Genome genome2) {
+    return calcCompatibility(genome1, genome2, Float.POSITIVE_INFINITY);
+  }
 
-    float nodeCount = Math.max(genome1.nodeCount(), genome2.nodeCount());
+  /**
+   * @return true, if the compatibility distance of the genomes is below the threshold. Stops as soon
+   * as the distance is known to reach the threshold, which is much faster for incompatible genomes.
+   */
+  public boolean isCompatible(Genome genome1, Genome genome2, float threshold) {
+    return calcCompatibility(genome1, genome2, threshold) < threshold;
+  }
 
-    InnovationNumber g1MaxInno = genome1.maxInnovationNumber();
-    InnovationNumber g2MaxInno = genome2.maxInnovationNumber();
+  /**
+   * @return the compatibility distance, or a lower bound of it that is at least the given bound
+   */
+  private float calcCompatibility(Genome genome1, Genome genome2, float bound) {
 
-    int countDisjointConnectionGenes = 0;
-    int countExcessConnectionGenes = 0;
-    int countMatchingConnectionGenes = 0;
-    Map<InnovationNumber, ConnectionGene> g1Connections = new HashMap<>();
-    for (ConnectionGene connection : genome1.getConnections()) {
-      g1Connections.put(connection.getInnovation(), connection);
-    }
-    Map<InnovationNumber, ConnectionGene> g2Connections = new HashMap<>();
-    for (ConnectionGene connection : genome2.getConnections()) {
-      g2Connections.put(connection.getInnovation(), connection);
+    float nodeCount = Math.max(genome1.nodeCount(), genome2.nodeCount());
+    // every connection that does not match counts at least this much
+    float minNonMatchingWeight = Math.min(PARAM_C1, PARAM_C2) / nodeCount;
+
+    List<ConnectionGene> g1Connections = genome1.getConnections();
+    List<ConnectionGene> g2Connections = genome2.getConnections();
+    int g1Size = g1Connections.size();
+    int g2Size = g2Connections.size();
+    if (g1Size == 0 || g2Size == 0) {
+      // all connections are excess
+      return PARAM_C1 * (g1Size + g2Size) / nodeCount;
     }
 
-    for (ConnectionGene g1Connection : genome1.getConnections()) {
-      ConnectionGene g2Connection = g2Connections.get(g1Connection.getInnovation());
-      if (g2Connection != null) {
-        // it's a matching connection
-        countMatchingConnectionGenes++;
-      } else if (g1Connection.getInnovation().getValue() < g2MaxInno.getValue()) {
-        countDisjointConnectionGenes++;
-      } else {
-        countExcessConnectionGenes++;
+    if (bound != Float.POSITIVE_INFINITY) {
+      // connections outside the innovation range of the other genome cannot match, so at most the
+      // connections within the overlapping range match
+      int g1MinInno = genome1.minInnovationNumber().getValue();
+      int g1MaxInno = genome1.maxInnovationNumber().getValue();
+      int g2MinInno = genome2.minInnovationNumber().getValue();
+      int g2MaxInno = genome2.maxInnovationNumber().getValue();
+      int g1InRange = countInRange(g1Connections, g2MinInno, g2MaxInno);
+      int g2InRange = countInRange(g2Connections, g1MinInno, g1MaxInno);
+      int maxMatching = Math.min(g1InRange, g2InRange);
+      float lowerBound = minNonMatchingWeight * (g1Size + g2Size - 2 * maxMatching);
+      if (lowerBound >= bound) {
+        return lowerBound;
       }
     }
 
+    // merge the connections, both are sorted by innovation number
+    int countDisjointConnectionGenes = 0;
+    int countMatchingConnectionGenes = 0;
     float sumWeightDifference = 0f;
-    for (ConnectionGene g2Connection : genome2.getConnections()) {
-      ConnectionGene g1Connection = g1Connections.get(g2Connection.getInnovation());
-      if (g1Connection != null) {
+    Iterator<ConnectionGene> g1Iterator = g1Connections.iterator();
+    Iterator<ConnectionGene> g2Iterator = g2Connections.iterator();
+    ConnectionGene g1Connection = g1Iterator.next();
+    ConnectionGene g2Connection = g2Iterator.next();
+    int i = 0;
+    int j = 0;
+    while (g1Connection != null && g2Connection != null) {
+      int g1Inno = g1Connection.getInnovation().getValue();
+      int g2Inno = g2Connection.getInnovation().getValue();
+      if (g1Inno == g2Inno) {
         // it's a matching connection
-        sumWeightDifference =
-            Math.abs(g1Connection.getWeight().getWeight() - g2Connection.getWeight().getWeight())
-                / countMatchingConnectionGenes;
-      } else if (g2Connection.getInnovation().getValue() < g1MaxInno.getValue()) {
-        countDisjointConnectionGenes++;
+        countMatchingConnectionGenes++;
+        sumWeightDifference += Math.abs(
+            g1Connection.getWeight().getWeight() - g2Connection.getWeight().getWeight());
+        i++;
+        j++;
+        g1Connection = nextOrNull(g1Iterator);
+        g2Connection = nextOrNull(g2Iterator);
+        continue;
+      }
+
+      // within the innovation numbers of the other genome
+      countDisjointConnectionGenes++;
+      if (g1Inno < g2Inno) {
+        i++;
+        g1Connection = nextOrNull(g1Iterator);
       } else {
-        countExcessConnectionGenes++;
+        j++;
+        g2Connection = nextOrNull(g2Iterator);
+      }
+      // of the remaining connections, at least the difference in number does not match
+      float lowerBound = minNonMatchingWeight
+          * (countDisjointConnectionGenes + Math.abs((g1Size - i) - (g2Size - j)));
+      if (lowerBound >= bound) {
+        return lowerBound;
       }
     }
+    // the remaining connections are behind the highest innovation number of the other genome
+    int countExcessConnectionGenes = g1Size - i + g2Size - j;
 
+    float averageWeightDifference = countMatchingConnectionGenes == 0 ? 0f
+        : sumWeightDifference / countMatchingConnectionGenes;
     return PARAM_C1 * countExcessConnectionGenes / nodeCount
         + PARAM_C2 * countDisjointConnectionGenes / nodeCount
-        + PARAM_C3 * sumWeightDifference;
+        + PARAM_C3 * averageWeightDifference;
+  }
+
+  private static ConnectionGene nextOrNull(Iterator<ConnectionGene> iterator) {
+    return iterator.hasNext() ? iterator.next() : null;
+  }
+
+  /**
+   * @return the number of connections with an innovation number from min to max (inclusive)
+   */
+  private static int countInRange(List<ConnectionGene> connections, int min, int max) {
+    return indexAbove(connections, max) - indexAbove(connections, min - 1);
+  }
+
+  /**
+   * @return the index of the first connection with an innovation number above the given one
+   */
+  private static int indexAbove(List<ConnectionGene> connections, int innovation) {
+    int low = 0;
+    int high = connections.size();
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (connections.get(middle).getInnovation().getValue() <= innovation) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
   }
 }
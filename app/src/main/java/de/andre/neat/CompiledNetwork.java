@@ -0,0 +1,13 @@
+package de.andre.neat;
+
+/**
+ * A feed-forward network compiled by {@link NetworkCompiler}.
+ */
+public interface CompiledNetwork {
+
+  /**
+   * @param inputs  values of the input nodes, in the order given to the compiler
+   * @param outputs receives the values of the output nodes, in the order given to the compiler
+   */
+  void compute(float[] inputs, float[] outputs);
+}
@@ -13,7 +13,7 @@ public class ConnectionGene {
   private final NodeGene outNode;
   private final InnovationNumber innovation;
   private final ConnectionWeight weight;
-  private ExpressedState expressed;
+  private final ExpressedState expressed;
 
   @Builder
   public ConnectionGene(NodeGene inNode, NodeGene outNode, ConnectionWeight weight,
@@ -25,8 +25,19 @@ public class ConnectionGene {
     this.innovation = innovation;
   }
 
-  public void disable() {
-    this.expressed = ExpressedState.NOT_EXPRESSED;
+  /**
+   * @return the key of a connection from the in node to the out node, the id of the in node in the
+   * upper 32 bits and the id of the out node in the lower 32 bits
+   */
+  static long edgeKey(NodeGene inNode, NodeGene outNode) {
+    return (long) inNode.getId().getValue() << 32 | outNode.getId().getValue() & 0xffffffffL;
+  }
+
+  /**
+   * @return a copy of this connection, that is not expressed
+   */
+  public ConnectionGene disabled() {
+    return new ConnectionGene(inNode, outNode, weight, ExpressedState.NOT_EXPRESSED, innovation);
   }
 
   public ConnectionGene pertubeWeight(Random r) {
@@ -38,8 +49,4 @@ public class ConnectionGene {
     ConnectionWeight newWeight = ConnectionWeight.random(r);
     return new ConnectionGene(inNode, outNode, newWeight, expressed, innovation);
   }
-
-  public ConnectionGene createCopy() {
-    return new ConnectionGene(inNode, outNode, weight, expressed, innovation);
-  }
 }
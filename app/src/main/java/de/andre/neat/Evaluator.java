@@ -1,6 +1,7 @@
 package de.andre.neat;
 
 import static de.andre.neat.Parameter.PARAM_COMPATIBILITY_DISTANCE;
+import static de.andre.neat.Parameter.PARAM_INNOVATION_MAX_AGE;
 import static de.andre.neat.Parameter.PARAM_INTERSPECIES_MATING_RATE;
 import static de.andre.neat.Parameter.PARAM_MAX_GENERATIONS_WITHOUT_IMPROVEMENT;
 import static de.andre.neat.Parameter.PARAM_MIN_GENOMES_PER_SPECIES;
@@ -8,27 +9,89 @@ import static de.andre.neat.Parameter.PARAM_MUTATION_RATE;
 import static de.andre.neat.Parameter.PARAM_NEW_CONNECTION_MUTATION_RATE;
 import static de.andre.neat.Parameter.PARAM_NEW_NODE_MUTATION_RATE;
 import static de.andre.neat.Parameter.PARAM_NO_CROSSOVER_RATE;
+import static de.andre.neat.Parameter.PARAM_SELECTION_STRATEGY;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Value;
 
 public abstract class Evaluator {
 
-  private final int populationSize;
-  private final List<Genome> genomes = new ArrayList<>();
+  private static final CompatibiltyCalculator COMPATIBILITY_CALCULATOR =
+      new CompatibiltyCalculator();
+  /**
+   * "NEAT" in ASCII, the first bytes of a checkpoint
+   */
+  private static final int CHECKPOINT_MAGIC = 0x4e454154;
+  private static final int CHECKPOINT_VERSION = 2;
+
+  private int populationSize;
+  @Getter(AccessLevel.PACKAGE)
+  private final Population population;
   private final List<Species> species = new ArrayList<>();
-  private final NodeFactory nodeFactory = new NodeFactory();
-  private final InnovationNumberFactory innovationNumberFactory = new InnovationNumberFactory();
-  private final Random r = new Random();
+  private final RelativeFitnessMap overallRelativeFitnessMap = new RelativeFitnessMap();
+  private final List<GenerationListener> listeners = new ArrayList<>();
+  private final PhaseRecorder phaseRecorder = new PhaseRecorder();
+  /**
+   * the recorder while a generation is measured, null if nobody listens
+   */
+  private PhaseRecorder activeRecorder;
+  /**
+   * compatibility distances calculated on the calling thread during the current generation
+   */
+  private int compatibilityChecks;
+  /**
+   * node ids and innovation numbers are counted per evaluator, so the same seed breeds the same
+   * genomes in every evaluator
+   */
+  private final NodeFactory nodeFactory = new NodeFactory(PARAM_INNOVATION_MAX_AGE);
+  private final InnovationNumberFactory innovationNumberFactory = new InnovationNumberFactory(
+      PARAM_INNOVATION_MAX_AGE);
+  /**
+   * source of the random streams, derived from the seed of the run
+   */
+  private SplittableRandom random;
+  private long seed;
+  /**
+   * values taken from {@link #random}, a checkpoint restores its state by drawing them again
+   */
+  private long randomDraws;
+  /**
+   * evaluates and breeds the genomes in parallel, null does it on the calling thread
+   */
+  private final ExecutorService executor;
 
   private Generation generation = Generation.FIRST;
+  private Path checkpointFile;
+  private int checkpointInterval;
 
   @Getter
   private Fitness highestFitness;
@@ -36,153 +99,603 @@ public abstract class Evaluator {
   private Genome fittestGenome;
 
   protected Evaluator(int populationSize) {
+    this(populationSize, null);
+  }
+
+  protected Evaluator(int populationSize, ExecutorService executor) {
+    this(populationSize, executor, new SplittableRandom().nextLong());
+  }
+
+  /**
+   * @param executor evaluates and breeds the genomes in parallel (e.g. a
+   *                 {@link java.util.concurrent.ForkJoinPool}), so
+   *                 {@link #evaluateGenome(Genome)} must be thread-safe. null does it on the
+   *                 calling thread.
+   * @param seed     seed of the run, the same seed breeds the same generations with or without an
+   *                 executor
+   */
+  protected Evaluator(int populationSize, ExecutorService executor, long seed) {
     this.populationSize = populationSize;
-    while (genomes.size() < populationSize) {
-      genomes.add(initializeGenome(r));
+    this.executor = executor;
+    this.seed = seed;
+    this.random = new SplittableRandom(seed);
+    this.population = new Population(populationSize);
+    Random r = new Random(nextSeed());
+    for (int i = 0; i < populationSize; i++) {
+      population.addToNextGeneration(initializeGenome(r), null, -1, -1);
     }
+    population.nextGeneration();
   }
 
   protected abstract Genome initializeGenome(Random r);
 
   protected abstract Fitness evaluateGenome(Genome genome);
 
-  public void evaluateNextGeneration() {
-    Map<Genome, Species> speciesMap = new HashMap<>(populationSize);
-    Map<Genome, Fitness> fitnessMap = new HashMap<>(populationSize);
+  /**
+   * @return a new node id of this evaluator, e.g. for the input and output nodes
+   */
+  protected NodeId nextNodeId() {
+    return nodeFactory.nextId();
+  }
 
-    // place genomes into species
-    for (Genome genome : genomes) {
-      Species specie = assignSpecie(genome);
-      speciesMap.put(genome, specie);
-    }
+  /**
+   * @return a new innovation number of this evaluator, e.g. for the connections of the initial
+   * genomes
+   */
+  protected InnovationNumber nextInnovationNumber() {
+    return innovationNumberFactory.next();
+  }
 
-    // evaluate genomes and assign fitness
-    for (Genome genome : genomes) {
-      Fitness fitness = evaluateGenome(genome);
-      fitnessMap.put(genome, fitness);
+  /**
+   * Writes the state of the subclass to a checkpoint, e.g. the nodes used by
+   * {@link #evaluateGenome(Genome)}. Nothing by default.
+   */
+  protected void writeCheckpoint(DataOutput out) throws IOException {
+  }
 
-      Species specie = speciesMap.get(genome);
-      specie.updateGenomeFitness(genome, fitness, generation);
+  /**
+   * Restores the state written by {@link #writeCheckpoint(DataOutput)}. Nothing by default.
+   */
+  protected void readCheckpoint(DataInput in) throws IOException {
+  }
+
+  public void addGenerationListener(GenerationListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeGenerationListener(GenerationListener listener) {
+    listeners.remove(listener);
+  }
+
+  public void evaluateNextGeneration() {
+    GenerationEvent generationEvent = new GenerationEvent();
+    generationEvent.begin();
+    // the phases are only measured, if somebody listens
+    PhaseRecorder recorder = listeners.isEmpty() ? null : phaseRecorder;
+    activeRecorder = recorder;
+    if (recorder != null) {
+      recorder.start();
+    }
+    Population population = this.population;
+    int size = population.size();
+    int evaluatedGeneration = generation.getValue();
+    compatibilityChecks = 0;
+    SpeciationEvent speciationEvent = new SpeciationEvent();
+    speciationEvent.begin();
+    int existingSpecies = species.size();
+    speciate();
+    speciationEvent.end();
+    if (speciationEvent.shouldCommit()) {
+      speciationEvent.generation = evaluatedGeneration;
+      speciationEvent.speciesCount = species.size();
+      speciationEvent.newSpecies = species.size() - existingSpecies;
+      speciationEvent.compatibilityChecks = compatibilityChecks;
+      speciationEvent.commit();
+    }
+    if (recorder != null) {
+      recorder.endPhase(GenerationPhase.SPECIATION);
+    }
+
+    // evaluate genomes and assign fitness in the order of the genomes, so the result does not
+    // depend on the execution
+    Fitness[] fitnesses = evaluateGenomes(evaluatedGeneration);
+    int notAvailableGenomes = 0;
+    for (int i = 0; i < size; i++) {
+      Fitness fitness = fitnesses[i];
+      population.fitnesses[i] = fitness.getValue();
+      if (fitness.getValue() == Fitness.NOT_AVAILABLE.getValue()) {
+        notAvailableGenomes++;
+      }
+      species.get(population.speciesIds[i]).updateGenomeFitness(i, fitness, generation);
 
       // remember the fittest genome
       if (highestFitness == null || fitness.getValue() > highestFitness.getValue()) {
         this.highestFitness = fitness;
-        this.fittestGenome = genome;
+        this.fittestGenome = population.genomes[i];
       }
     }
+    if (recorder != null) {
+      recorder.endPhase(GenerationPhase.EVALUATION);
+    }
 
     // put the best genome of each species with more than 5 members into the next generation
-    Set<Genome> nextGenGenomes = new HashSet<>();
     for (Species specie : species) {
       if (specie.size() >= PARAM_MIN_GENOMES_PER_SPECIES) {
         // add the champion of the specie to next generation
-        nextGenGenomes.add(specie.getBestGenome());
+        population.champions[specie.bestSlot] = true;
+        population.addToNextGeneration(population.genomes[specie.bestSlot], specie,
+            specie.bestSlot, -1);
       }
     }
 
     // assign the relative fitness to each genome
-    RelativeFitnessMap overallRelativeFitnessMap = new RelativeFitnessMap();
-    HashMap<Species, RelativeFitnessMap> speciesRelativeFitnessMap = new HashMap<>();
+    overallRelativeFitnessMap.clear();
     for (Species specie : species) {
-      RelativeFitnessMap specieRelativeFitnessMap = new RelativeFitnessMap();
-      for (Genome genome : specie.getMembers()) {
-        RelativeFitness relativeFitness = specie.relativeFitness(genome);
-        if (relativeFitness == RelativeFitness.NOT_AVAILABLE) {
+      RelativeFitnessMap specieRelativeFitnessMap = specie.relativeFitnessMap;
+      specieRelativeFitnessMap.clear();
+      boolean stagnant = specie.getLastImprovedGeneration().getValue()
+          + PARAM_MAX_GENERATIONS_WITHOUT_IMPROVEMENT < generation.getValue();
+      for (int m = 0; m < specie.size(); m++) {
+        int slot = specie.members[m];
+        if (population.fitnesses[slot] == Fitness.NOT_AVAILABLE.getValue()) {
           // do not add networks with recursion
           continue;
         }
 
-        specieRelativeFitnessMap.add(genome, relativeFitness);
-        if (nextGenGenomes.contains(genome)) {
-          overallRelativeFitnessMap.add(genome, relativeFitness);
-        } else if (specie.getLastImprovedGeneration().getValue()
-            + PARAM_MAX_GENERATIONS_WITHOUT_IMPROVEMENT >= generation.getValue()) {
-          // do not let genomes reproduce, if species does not evolve
-          overallRelativeFitnessMap.add(genome, relativeFitness);
+        float relativeFitness = population.fitnesses[slot] / specie.size();
+        specieRelativeFitnessMap.add(slot, relativeFitness);
+        // do not let genomes reproduce, if species does not evolve
+        if (population.champions[slot] || !stagnant) {
+          overallRelativeFitnessMap.add(slot, relativeFitness);
         }
       }
-      speciesRelativeFitnessMap.put(specie, specieRelativeFitnessMap);
+    }
+    // prepare the selections in the order of the species, so the result does not depend on the
+    // execution
+    Random selectionRandom = new Random(nextSeed());
+    overallRelativeFitnessMap.prepareSelection(PARAM_SELECTION_STRATEGY, selectionRandom);
+    for (Species specie : species) {
+      specie.relativeFitnessMap.prepareSelection(PARAM_SELECTION_STRATEGY, selectionRandom);
+    }
+    if (recorder != null) {
+      recorder.endPhase(GenerationPhase.RELATIVE_FITNESS);
+    }
+
+    // the first offspring are bred via mutation only, the rest via crossover (prefer fitter
+    // genomes). Each offspring gets its own random stream, so it does not depend on the order the
+    // offspring are bred in.
+    int genomesWithoutCrossover = (int) (populationSize * PARAM_NO_CROSSOVER_RATE);
+    Offspring[] offspring = new Offspring[Math.max(genomesWithoutCrossover,
+        populationSize - population.nextSize())];
+    for (int i = 0; i < offspring.length; i++) {
+      offspring[i] = new Offspring(new Random(nextSeed()));
+    }
+    forEachIndex(genomesWithoutCrossover,
+        i -> offspring[i].breedWithoutCrossover(population, species, overallRelativeFitnessMap));
+    // structural mutations assign innovation numbers and node ids, so they are applied in the
+    // order of the offspring
+    int failedMutations = addOffspring(offspring, 0, genomesWithoutCrossover);
+    if (recorder != null) {
+      recorder.endPhase(GenerationPhase.BREEDING_WITHOUT_CROSSOVER);
+    }
+    forEachIndex(offspring.length - genomesWithoutCrossover,
+        i -> offspring[genomesWithoutCrossover + i].breedWithCrossover(population, species,
+            overallRelativeFitnessMap));
+    failedMutations += addOffspring(offspring, genomesWithoutCrossover, offspring.length);
+    if (recorder != null) {
+      recorder.endPhase(GenerationPhase.BREEDING_WITH_CROSSOVER);
+    }
+
+    // the generation change releases the evaluated genomes, so listeners get copies
+    Genome[] evaluatedGenomes = null;
+    float[] evaluatedFitnesses = null;
+    int[] firstParents = null;
+    int[] secondParents = null;
+    if (recorder != null) {
+      evaluatedGenomes = Arrays.copyOf(population.genomes, size);
+      evaluatedFitnesses = Arrays.copyOf(population.fitnesses, size);
+      firstParents = Arrays.copyOf(population.firstParents, size);
+      secondParents = Arrays.copyOf(population.secondParents, size);
+    }
+
+    // make the generation change
+    generation = generation.next();
+    nodeFactory.nextGeneration();
+    innovationNumberFactory.nextGeneration();
+    population.nextGeneration();
+    species.removeIf(Species::hasNoMember);
+    for (Species specie : species) {
+      specie.removeExtinctNeighbors();
+    }
+    for (Species specie : species) {
+      specie.reset();
     }
 
-    // breed the rest of the genomes via mutation (prefer fitter genomes)
-    int genomesWithoutCrossoverMissing = (int) (populationSize * PARAM_NO_CROSSOVER_RATE);
-    while (genomesWithoutCrossoverMissing > 0) {
-      // add genomes to next generation without crossover
-      Genome genome = overallRelativeFitnessMap.pickRandomly(r);
-      Genome mutatedGenome = applyMutations(genome);
-      if (genome != mutatedGenome) {
-        nextGenGenomes.add(genome);
-        genomesWithoutCrossoverMissing--;
+    generationEvent.end();
+    if (generationEvent.shouldCommit()) {
+      generationEvent.generation = evaluatedGeneration;
+      generationEvent.populationSize = size;
+      generationEvent.speciesCount = species.size();
+      generationEvent.highestFitness = highestFitness.getValue();
+      generationEvent.commit();
+    }
+    if (recorder != null) {
+      recorder.endPhase(GenerationPhase.TURNOVER);
+      activeRecorder = null;
+      GenerationStatistics statistics = new GenerationStatistics(evaluatedGeneration, size,
+          species.size(), highestFitness, fittestGenome, compatibilityChecks, failedMutations,
+          notAvailableGenomes, evaluatedGenomes, evaluatedFitnesses, firstParents, secondParents,
+          recorder.nanos(), recorder.allocatedBytes());
+      for (GenerationListener listener : new ArrayList<>(listeners)) {
+        listener.generationEvaluated(statistics);
       }
     }
 
-    // breed the rest of the genomes via crossover (prefer fitter genomes)
-    while (nextGenGenomes.size() < populationSize) {
-      Genome parent1 = overallRelativeFitnessMap.pickRandomly(r);
-      Genome parent2;
-      if (r.nextFloat() <= PARAM_INTERSPECIES_MATING_RATE) {
-        // select couple from any species
-        parent2 = overallRelativeFitnessMap.pickRandomly(r);
-      } else {
-        // select couple from same species
-        Species specie = speciesMap.get(parent1);
-        parent2 = speciesRelativeFitnessMap.get(specie).pickRandomly(r);
+    if (checkpointFile != null && evaluatedGeneration % checkpointInterval == 0) {
+      try {
+        saveCheckpoint(checkpointFile);
+      } catch (IOException ex) {
+        throw new UncheckedIOException("Checkpoint could not be saved", ex);
       }
+    }
+  }
 
-      // check which parent has the better fitness
-      Fitness fitness1 = fitnessMap.get(parent1);
-      Fitness fitness2 = fitnessMap.get(parent2);
-      Genome offspring;
-      if (fitness1.getValue() == fitness2.getValue()) {
-        // both parents have the same fitness
-        offspring = Genome.crossover(parent1, parent2, true, r);
-      } else if (fitness1.getValue() > fitness2.getValue()) {
-        // parent1 is the fitter parent
-        offspring = Genome.crossover(parent1, parent2, false, r);
+  /**
+   * Places the genomes of the current generation into species, starting with the species of their
+   * parent, and counts the compatibility checks.
+   */
+  void speciate() {
+    Population population = this.population;
+    int size = population.size();
+    for (int i = 0; i < species.size(); i++) {
+      species.get(i).index = i;
+    }
+
+    // place genomes into the existing species, starting with the species of their parent
+    forEachIndex(size, i -> {
+      Species specie = findCompatibleSpecie(i);
+      population.speciesIds[i] = specie == null ? -1 : specie.index;
+    });
+    // genomes without a compatible species create new species in the order of the genomes, so the
+    // result does not depend on the execution
+    int existingSpecies = species.size();
+    for (int i = 0; i < size; i++) {
+      if (population.speciesIds[i] < 0) {
+        population.speciesIds[i] = assignNewSpecie(i, existingSpecies).index;
       } else {
-        // parent2 is the fitter parent
-        offspring = Genome.crossover(parent2, parent1, false, r);
+        species.get(population.speciesIds[i]).add(i);
       }
-      offspring = applyMutations(offspring);
-      nextGenGenomes.add(offspring);
+      compatibilityChecks += population.compatibilityChecks[i];
     }
+  }
 
-    // make the generation change
-    generation = generation.next();
-    genomes.clear();
-    genomes.addAll(nextGenGenomes);
-    species.removeIf(Species::hasNoMember);
+  private long nextSeed() {
+    randomDraws++;
+    return random.nextLong();
+  }
+
+  /**
+   * Saves a checkpoint after every interval generations, replacing the previous one.
+   *
+   * @param file     the checkpoint, null disables the checkpoints
+   * @param interval number of generations between two checkpoints
+   */
+  public void setCheckpoints(Path file, int interval) {
+    if (file != null && interval < 1) {
+      throw new IllegalArgumentException("Checkpoint interval must be at least 1");
+    }
+    this.checkpointFile = file;
+    this.checkpointInterval = interval;
+  }
+
+  /**
+   * Saves the state of the run between two generations. The checkpoint is written to a temporary
+   * file first and then moved atomically, so the file contains either the previous or the new
+   * checkpoint, even if the process is killed.
+   */
+  public void saveCheckpoint(Path file) throws IOException {
+    Path directory = file.toAbsolutePath().getParent();
+    Path temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+    try {
+      try (FileOutputStream stream = new FileOutputStream(temporaryFile.toFile())) {
+        CRC32 checksum = new CRC32();
+        DataOutputStream out = new DataOutputStream(
+            new CheckedOutputStream(new BufferedOutputStream(stream), checksum));
+        writeState(out);
+        out.writeLong(checksum.getValue());
+        out.flush();
+        stream.getFD().sync();
+      }
+      Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temporaryFile);
+    }
+  }
+
+  /**
+   * Replaces the state of this evaluator by the checkpoint, the next generations are the same as
+   * if the run had not been interrupted. Node ids and innovation numbers continue after the ones
+   * of the checkpoint, unless higher ones have been created in this JVM already.
+   */
+  public void restoreCheckpoint(Path file) throws IOException {
+    // the checksum is verified first, so a corrupted checkpoint does not change the state
+    byte[] bytes = Files.readAllBytes(file);
+    int length = bytes.length - Long.BYTES;
+    CRC32 checksum = new CRC32();
+    checksum.update(bytes, 0, Math.max(length, 0));
+    if (length < 2 * Integer.BYTES
+        || ByteBuffer.wrap(bytes, length, Long.BYTES).getLong() != checksum.getValue()) {
+      throw new IOException("Checkpoint is corrupted: " + file);
+    }
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, length));
+    if (in.readInt() != CHECKPOINT_MAGIC || in.readInt() != CHECKPOINT_VERSION) {
+      throw new IOException("Not a checkpoint of this version: " + file);
+    }
+    readState(in);
+  }
+
+  private void writeState(DataOutput out) throws IOException {
+    out.writeInt(CHECKPOINT_MAGIC);
+    out.writeInt(CHECKPOINT_VERSION);
+    out.writeLong(seed);
+    out.writeLong(randomDraws);
+    out.writeInt(generation.getValue());
+    out.writeInt(populationSize);
+    nodeFactory.writeTo(out);
+    innovationNumberFactory.writeTo(out);
+
+    // genomes are written once and referred to by their index, even if they are used repeatedly
+    Map<Genome, Integer> genomeIndices = new IdentityHashMap<>();
+    List<Genome> genomes = new ArrayList<>();
     for (Species specie : species) {
-      specie.reset();
+      genomeIndices.computeIfAbsent(specie.mascot, genome -> addGenome(genomes, genome));
     }
-    speciesMap.clear();
-    fitnessMap.clear();
+    for (int i = 0; i < population.size(); i++) {
+      genomeIndices.computeIfAbsent(population.genomes[i], genome -> addGenome(genomes, genome));
+    }
+    if (fittestGenome != null) {
+      genomeIndices.computeIfAbsent(fittestGenome, genome -> addGenome(genomes, genome));
+    }
+    out.writeInt(genomes.size());
+    for (Genome genome : genomes) {
+      PackedGenome.pack(genome).writeTo(out);
+    }
+
+    out.writeInt(species.size());
+    for (int i = 0; i < species.size(); i++) {
+      species.get(i).index = i;
+    }
+    for (Species specie : species) {
+      out.writeInt(genomeIndices.get(specie.mascot));
+      out.writeFloat(specie.maxFitnessOverallGeneration.getValue());
+      out.writeInt(specie.lastImprovedGeneration.getValue());
+    }
+    for (Species specie : species) {
+      out.writeInt(specie.neighbors.size());
+      for (SpeciesDistance neighbor : specie.neighbors) {
+        out.writeInt(neighbor.getSpecie().index);
+        out.writeFloat(neighbor.getDistance());
+      }
+    }
+
+    out.writeInt(population.size());
+    for (int i = 0; i < population.size(); i++) {
+      out.writeInt(genomeIndices.get(population.genomes[i]));
+      Species parentSpecie = population.parentSpecies[i];
+      out.writeInt(parentSpecie == null ? -1 : parentSpecie.index);
+      out.writeInt(population.firstParents[i]);
+      out.writeInt(population.secondParents[i]);
+    }
+    out.writeBoolean(fittestGenome != null);
+    if (fittestGenome != null) {
+      out.writeFloat(highestFitness.getValue());
+      out.writeInt(genomeIndices.get(fittestGenome));
+    }
+    writeCheckpoint(out);
+  }
+
+  private static int addGenome(List<Genome> genomes, Genome genome) {
+    genomes.add(genome);
+    return genomes.size() - 1;
   }
 
-  private Genome applyMutations(Genome genome) {
-    Genome mutatedGenome = genome;
-    if (r.nextFloat() <= PARAM_MUTATION_RATE) {
-      mutatedGenome = mutatedGenome.weightMutation(r);
+  private void readState(DataInput in) throws IOException {
+    seed = in.readLong();
+    randomDraws = in.readLong();
+    random = new SplittableRandom(seed);
+    for (long i = 0; i < randomDraws; i++) {
+      random.nextLong();
     }
-    if (r.nextFloat() <= PARAM_NEW_NODE_MUTATION_RATE) {
-      mutatedGenome = mutatedGenome.addNodeMutation(r, nodeFactory, innovationNumberFactory);
+    generation = new Generation(in.readInt());
+    populationSize = in.readInt();
+    nodeFactory.readFrom(in);
+    innovationNumberFactory.readFrom(in);
+
+    Genome[] genomes = new Genome[in.readInt()];
+    for (int i = 0; i < genomes.length; i++) {
+      genomes[i] = PackedGenome.readFrom(in).unpack();
+    }
+
+    int speciesCount = in.readInt();
+    species.clear();
+    for (int i = 0; i < speciesCount; i++) {
+      Species specie = new Species(genomes[in.readInt()], i);
+      specie.maxFitnessOverallGeneration = Fitness.of(in.readFloat());
+      specie.lastImprovedGeneration = new Generation(in.readInt());
+      species.add(specie);
     }
-    if (r.nextFloat() <= PARAM_NEW_CONNECTION_MUTATION_RATE) {
-      mutatedGenome = mutatedGenome.addConnectionMutation(r, innovationNumberFactory);
+    for (Species specie : species) {
+      int neighborCount = in.readInt();
+      for (int i = 0; i < neighborCount; i++) {
+        specie.neighbors.add(SpeciesDistance.of(species.get(in.readInt()), in.readFloat()));
+      }
+    }
+
+    // the genomes of the constructor are replaced by the ones of the checkpoint
+    int size = in.readInt();
+    for (int i = 0; i < size; i++) {
+      Genome genome = genomes[in.readInt()];
+      int parentSpecie = in.readInt();
+      population.addToNextGeneration(genome, parentSpecie < 0 ? null : species.get(parentSpecie),
+          in.readInt(), in.readInt());
     }
-    return mutatedGenome;
+    population.nextGeneration();
+    if (in.readBoolean()) {
+      highestFitness = Fitness.of(in.readFloat());
+      fittestGenome = genomes[in.readInt()];
+    } else {
+      highestFitness = null;
+      fittestGenome = null;
+    }
+    readCheckpoint(in);
+  }
+
+  /**
+   * Applies the structural mutations of the offspring from start (inclusive) to end (exclusive) and
+   * adds them to the next generation.
+   *
+   * @return the number of structural mutations that failed
+   */
+  private int addOffspring(Offspring[] offspring, int start, int end) {
+    int failedMutations = 0;
+    for (int i = start; i < end; i++) {
+      Offspring child = offspring[i];
+      population.addToNextGeneration(
+          child.applyStructuralMutations(nodeFactory, innovationNumberFactory), child.parentSpecie,
+          child.firstParent, child.secondParent);
+      failedMutations += child.failedMutations;
+    }
+    return failedMutations;
   }
 
-  private Species assignSpecie(Genome genome) {
-    for (Species specie : this.species) {
+  private Fitness[] evaluateGenomes(int evaluatedGeneration) {
+    Fitness[] fitnesses = new Fitness[population.size()];
+    forEachIndex(fitnesses.length, i -> {
+      Genome genome = population.genomes[i];
+      GenomeEvaluationEvent event = new GenomeEvaluationEvent();
+      event.begin();
+      Fitness fitness = evaluateGenome(genome);
+      event.end();
+      if (event.shouldCommit()) {
+        event.generation = evaluatedGeneration;
+        event.nodeCount = genome.nodeCount();
+        event.connectionCount = genome.getConnections().size();
+        event.fitness = fitness.getValue();
+        event.commit();
+      }
+      fitnesses[i] = fitness;
+    });
+    return fitnesses;
+  }
+
+  /**
+   * Runs the task for each index from 0 (inclusive) to count (exclusive), in parallel when there is
+   * an executor.
+   */
+  private void forEachIndex(int count, IntConsumer task) {
+    if (executor == null) {
+      for (int i = 0; i < count; i++) {
+        task.accept(i);
+      }
+      return;
+    }
+
+    // a few chunks per processor balance the load without paying a task per index
+    int chunks = Math.min(count, Runtime.getRuntime().availableProcessors() * 4);
+    PhaseRecorder recorder = activeRecorder;
+    List<Callable<Void>> tasks = new ArrayList<>(chunks);
+    for (int chunk = 0; chunk < chunks; chunk++) {
+      int start = (int) ((long) chunk * count / chunks);
+      int end = (int) ((long) (chunk + 1) * count / chunks);
+      tasks.add(() -> {
+        long allocatedBytes = recorder == null ? 0 : PhaseRecorder.currentThreadAllocatedBytes();
+        for (int i = start; i < end; i++) {
+          task.accept(i);
+        }
+        if (recorder != null && allocatedBytes >= 0) {
+          recorder.addWorkerAllocatedBytes(
+              PhaseRecorder.currentThreadAllocatedBytes() - allocatedBytes);
+        }
+        return null;
+      });
+    }
+    try {
+      for (Future<Void> future : executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Parallel execution has been interrupted", ex);
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ex.getCause();
+      }
+      throw new IllegalStateException("Parallel execution failed", ex.getCause());
+    }
+  }
+
+  /**
+   * Counts the compatibility checks of the slot in {@link Population#compatibilityChecks}.
+   *
+   * @return the first compatible species, trying the species of the parent and the species with the
+   * closest mascots first. null if there is no compatible species.
+   */
+  private Species findCompatibleSpecie(int slot) {
+    Genome genome = population.genomes[slot];
+    Species parentSpecie = population.parentSpecies[slot];
+    int checks = 0;
+    Species compatibleSpecie = null;
+    if (parentSpecie == null) {
+      for (Species specie : this.species) {
+        checks++;
+        if (specie.isCompatible(genome)) {
+          compatibleSpecie = specie;
+          break;
+        }
+      }
+    } else {
+      checks++;
+      if (parentSpecie.isCompatible(genome)) {
+        compatibleSpecie = parentSpecie;
+      } else {
+        for (SpeciesDistance neighbor : parentSpecie.getNeighbors()) {
+          checks++;
+          if (neighbor.getSpecie().isCompatible(genome)) {
+            compatibleSpecie = neighbor.getSpecie();
+            break;
+          }
+        }
+      }
+    }
+    population.compatibilityChecks[slot] = checks;
+    return compatibleSpecie;
+  }
+
+  /**
+   * @param existingSpecies number of species before the species assignment of this generation
+   */
+  private Species assignNewSpecie(int slot, int existingSpecies) {
+    Genome genome = population.genomes[slot];
+    // the genome may be compatible with a species created by a previous genome
+    for (int i = existingSpecies; i < this.species.size(); i++) {
+      Species specie = this.species.get(i);
+      compatibilityChecks++;
       if (specie.isCompatible(genome)) {
-        specie.add(genome);
+        specie.add(slot);
         return specie;
       }
     }
 
     // create a new species
-    Species specie = new Species(genome);
+    Species specie = new Species(genome, this.species.size());
+    specie.add(slot);
+    for (Species other : this.species) {
+      float distance = COMPATIBILITY_CALCULATOR.calcCompatibility(other.mascot, genome);
+      compatibilityChecks++;
+      other.addNeighbor(specie, distance);
+      specie.addNeighbor(other, distance);
+    }
     this.species.add(specie);
     return specie;
   }
@@ -191,125 +704,426 @@ public abstract class Evaluator {
     return species.size();
   }
 
-  private static class Species {
+  /**
+   * @return the number of generations evaluated so far, including the ones before a restored
+   * checkpoint
+   */
+  public int getEvaluatedGenerations() {
+    return generation.getValue() - 1;
+  }
+
+  /**
+   * @return the species of the current generation, read-only
+   */
+  List<Species> getSpecies() {
+    return Collections.unmodifiableList(species);
+  }
+
+  /**
+   * An offspring in the making, with its own random stream.
+   */
+  private static class Offspring {
+
+    private final Random r;
+    private Genome genome;
+    private Species parentSpecie;
+    /**
+     * slot of the (fitter) parent
+     */
+    private int firstParent;
+    /**
+     * slot of the other parent, -1 if bred without crossover
+     */
+    private int secondParent = -1;
+    private boolean addNode;
+    private boolean addConnection;
+    private int failedMutations;
 
+    private Offspring(Random r) {
+      this.r = r;
+    }
+
+    private void breedWithoutCrossover(Population population, List<Species> species,
+        RelativeFitnessMap overallRelativeFitnessMap) {
+      boolean mutateWeights;
+      int slot;
+      do {
+        slot = overallRelativeFitnessMap.pickRandomly(r);
+        mutateWeights = chooseMutations();
+      } while (!mutateWeights && !addNode && !addConnection);
+      genome = population.genomes[slot];
+      parentSpecie = species.get(population.speciesIds[slot]);
+      firstParent = slot;
+      if (mutateWeights) {
+        genome = genome.weightMutation(r);
+      }
+    }
+
+    private void breedWithCrossover(Population population, List<Species> species,
+        RelativeFitnessMap overallRelativeFitnessMap) {
+      int parent1 = overallRelativeFitnessMap.pickRandomly(r);
+      int parent2;
+      if (r.nextFloat() <= PARAM_INTERSPECIES_MATING_RATE) {
+        // select couple from any species
+        parent2 = overallRelativeFitnessMap.pickRandomly(r);
+      } else {
+        // select couple from same species
+        Species specie = species.get(population.speciesIds[parent1]);
+        parent2 = specie.relativeFitnessMap.pickRandomly(r);
+      }
+
+      // check which parent has the better fitness
+      float fitness1 = population.fitnesses[parent1];
+      float fitness2 = population.fitnesses[parent2];
+      Genome genome1 = population.genomes[parent1];
+      Genome genome2 = population.genomes[parent2];
+      if (fitness1 == fitness2) {
+        // both parents have the same fitness
+        genome = Genome.crossover(genome1, genome2, true, r);
+        parentSpecie = species.get(population.speciesIds[parent1]);
+        firstParent = parent1;
+        secondParent = parent2;
+      } else if (fitness1 > fitness2) {
+        // parent1 is the fitter parent
+        genome = Genome.crossover(genome1, genome2, false, r);
+        parentSpecie = species.get(population.speciesIds[parent1]);
+        firstParent = parent1;
+        secondParent = parent2;
+      } else {
+        // parent2 is the fitter parent
+        genome = Genome.crossover(genome2, genome1, false, r);
+        parentSpecie = species.get(population.speciesIds[parent2]);
+        firstParent = parent2;
+        secondParent = parent1;
+      }
+      if (chooseMutations()) {
+        genome = genome.weightMutation(r);
+      }
+    }
+
+    /**
+     * @return true, if the weights shall be mutated
+     */
+    private boolean chooseMutations() {
+      boolean mutateWeights = r.nextFloat() <= PARAM_MUTATION_RATE;
+      addNode = r.nextFloat() <= PARAM_NEW_NODE_MUTATION_RATE;
+      addConnection = r.nextFloat() <= PARAM_NEW_CONNECTION_MUTATION_RATE;
+      return mutateWeights;
+    }
+
+    private Genome applyStructuralMutations(NodeFactory nodeFactory,
+        InnovationNumberFactory innovationNumberFactory) {
+      if (addNode) {
+        Genome parent = genome;
+        genome = genome.addNodeMutation(r, nodeFactory, innovationNumberFactory);
+        if (genome == parent) {
+          failedMutations++;
+        }
+      }
+      if (addConnection) {
+        Genome parent = genome;
+        genome = genome.addConnectionMutation(r, innovationNumberFactory);
+        if (genome == parent) {
+          failedMutations++;
+        }
+      }
+      return genome;
+    }
+  }
+
+  static final class Species {
+
+    /**
+     * slots of the members in the population
+     */
+    private int[] members = new int[8];
+    private int memberCount;
     @Getter
-    private final List<Genome> members = new ArrayList<>();
     private final Genome mascot;
-    private final Map<Genome, Fitness> fitnessMap = new HashMap<>();
+    /**
+     * all other species, ordered by the distance of their mascot to the mascot of this species
+     */
+    @Getter
+    private final List<SpeciesDistance> neighbors = new ArrayList<>();
+    private final RelativeFitnessMap relativeFitnessMap = new RelativeFitnessMap();
+    /**
+     * position in the list of species during the current generation
+     */
+    private int index;
+    /**
+     * slot of the fittest member, -1 before the fitness has been assigned
+     */
     @Getter
-    private Genome bestGenome;
+    private int bestSlot = -1;
     private Fitness maxFitnessCurrentGeneration = Fitness.NOT_AVAILABLE;
     private Fitness maxFitnessOverallGeneration = Fitness.NOT_AVAILABLE;
     @Getter
     private Generation lastImprovedGeneration = Generation.FIRST;
 
-    private Species(Genome mascot) {
+    private Species(Genome mascot, int index) {
       this.mascot = mascot;
-      this.bestGenome = mascot;
-      this.members.add(mascot);
+      this.index = index;
     }
 
-    private void add(Genome genome) {
-      if (genome != mascot) {
-        this.members.add(genome);
+    private void add(int slot) {
+      if (memberCount == members.length) {
+        members = Arrays.copyOf(members, memberCount * 2);
       }
+      members[memberCount++] = slot;
+    }
+
+    private void addNeighbor(Species specie, float distance) {
+      // insert behind all neighbors with a lower or the same distance
+      int low = 0;
+      int high = neighbors.size();
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (neighbors.get(middle).getDistance() <= distance) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      neighbors.add(low, SpeciesDistance.of(specie, distance));
+    }
+
+    private void removeExtinctNeighbors() {
+      neighbors.removeIf(neighbor -> neighbor.getSpecie().hasNoMember());
     }
 
     public void reset() {
-      members.clear();
-      fitnessMap.clear();
+      memberCount = 0;
+      bestSlot = -1;
       maxFitnessCurrentGeneration = Fitness.NOT_AVAILABLE;
     }
 
     public boolean isCompatible(Genome genome) {
-      return new CompatibiltyCalculator()
-          .calcCompatibility(mascot, genome) < PARAM_COMPATIBILITY_DISTANCE;
+      return COMPATIBILITY_CALCULATOR.isCompatible(mascot, genome, PARAM_COMPATIBILITY_DISTANCE);
     }
 
-    public void updateGenomeFitness(Genome genome, Fitness fitness, Generation generation) {
-      if (fitness.getValue() > this.maxFitnessCurrentGeneration.getValue()) {
+    public void updateGenomeFitness(int slot, Fitness fitness, Generation generation) {
+      if (bestSlot < 0 || fitness.getValue() > this.maxFitnessCurrentGeneration.getValue()) {
         this.maxFitnessCurrentGeneration = fitness;
-        this.bestGenome = genome;
+        this.bestSlot = slot;
       }
       if (fitness.getValue() > this.maxFitnessOverallGeneration.getValue()) {
         this.maxFitnessOverallGeneration = fitness;
         this.lastImprovedGeneration = generation;
       }
-      this.fitnessMap.put(genome, fitness);
     }
 
     public int size() {
-      return members.size();
+      return memberCount;
     }
 
-    public boolean hasNoMember() {
-      return members.isEmpty();
+    /**
+     * @return the slots of the members
+     */
+    public int[] getMembers() {
+      return Arrays.copyOf(members, memberCount);
     }
 
-    public RelativeFitness relativeFitness(Genome genome) {
-      Fitness fitness = this.fitnessMap.get(genome);
-      if (fitness == Fitness.NOT_AVAILABLE) {
-        return RelativeFitness.NOT_AVAILABLE;
-      }
-
-      return RelativeFitness.of(fitness.getValue() / size());
+    public boolean hasNoMember() {
+      return memberCount == 0;
     }
   }
 
   @Value(staticConstructor = "of")
-  private static class RelativeFitness {
-
-    public static RelativeFitness NOT_AVAILABLE = RelativeFitness.of(Float.MIN_VALUE);
+  static class SpeciesDistance {
 
-    float value;
+    Species specie;
+    float distance;
   }
 
+  /**
+   * Slots of genomes with their relative fitness, stored in arrays, so the selection can be prepared
+   * once per generation without copying. The arrays are reused by the next generations.
+   */
   private static class RelativeFitnessMap {
 
-    private final List<Map.Entry<Genome, RelativeFitness>> fitnessMap = new ArrayList<>();
-    private RelativeFitness sumFitness = null;
-    private RelativeFitness minFitness = null;
+    private int[] slots = new int[8];
+    private float[] fitnesses = new float[8];
+    private int size;
+    private SelectionStrategy.Selection selection;
 
-    public void add(Genome genome, RelativeFitness relativeFitness) {
-      sumFitness = null;
-      fitnessMap.add(Map.entry(genome, relativeFitness));
-
-      if (minFitness == null || relativeFitness.getValue() < minFitness.getValue()) {
-        minFitness = relativeFitness;
+    public void add(int slot, float relativeFitness) {
+      if (size == slots.length) {
+        slots = Arrays.copyOf(slots, size * 2);
+        fitnesses = Arrays.copyOf(fitnesses, size * 2);
       }
+      slots[size] = slot;
+      fitnesses[size] = relativeFitness;
+      size++;
+      selection = null;
     }
 
-    /*
-    public Genome pickRandomly(Random r) {
-      // calc sumFitness, if needed
-      if (sumFitness == null) {
-        float sumRelativeFitness = 0f;
-        for (Entry<Genome, RelativeFitness> entry : fitnessMap) {
-          sumRelativeFitness += Math.abs(minFitness.getValue() - entry.getValue().getValue());
-        }
-        sumFitness = RelativeFitness.of(sumRelativeFitness);
+    public void clear() {
+      size = 0;
+      selection = null;
+    }
+
+    /**
+     * Must be called after all genomes have been added, before genomes are picked.
+     */
+    public void prepareSelection(SelectionStrategy strategy, Random r) {
+      if (size > 0) {
+        selection = strategy.prepare(fitnesses, size, r);
       }
+    }
 
-      float threshold = r.nextFloat() * sumFitness.getValue();
-      // find first genome that is above the threshold
-      float sumRelativeFitness = 0f;
-      for (Entry<Genome, RelativeFitness> entry : fitnessMap) {
-        sumRelativeFitness += Math.abs(minFitness.getValue() - entry.getValue().getValue());
-        if (sumRelativeFitness >= threshold) {
-          return entry.getKey();
-        }
+    /**
+     * @return the slot of the picked genome
+     */
+    public int pickRandomly(Random r) {
+      if (selection == null) {
+        throw new IllegalStateException("There is no genome to pick");
       }
+      return slots[selection.select(r)];
+    }
+  }
+
+  /**
+   * The genomes of the current generation by slot, with their species and fitness in parallel
+   * arrays. The next generation is collected in a second set of arrays, both are reused by the
+   * following generations.
+   */
+  static final class Population {
 
-      throw new IllegalArgumentException("Cannot find a random genome");
+    private Genome[] genomes;
+    /**
+     * species of the (fitter) parent of each genome, null if unknown
+     */
+    private Species[] parentSpecies;
+    /**
+     * slot of the (fitter) parent of each genome in the previous generation, -1 if unknown
+     */
+    private int[] firstParents;
+    /**
+     * slot of the other parent of each genome in the previous generation, -1 if there is none
+     */
+    private int[] secondParents;
+    private int size;
+    /**
+     * index of the species of each genome in the list of species, -1 if not assigned yet
+     */
+    private int[] speciesIds;
+    private float[] fitnesses;
+    private boolean[] champions;
+    /**
+     * compatibility distances calculated to find the species of each genome
+     */
+    private int[] compatibilityChecks;
+
+    private Genome[] nextGenomes;
+    private Species[] nextParentSpecies;
+    private int[] nextFirstParents;
+    private int[] nextSecondParents;
+    private int nextSize;
+
+    private Population(int capacity) {
+      genomes = new Genome[capacity];
+      parentSpecies = new Species[capacity];
+      firstParents = new int[capacity];
+      secondParents = new int[capacity];
+      speciesIds = new int[capacity];
+      fitnesses = new float[capacity];
+      champions = new boolean[capacity];
+      compatibilityChecks = new int[capacity];
+      nextGenomes = new Genome[capacity];
+      nextParentSpecies = new Species[capacity];
+      nextFirstParents = new int[capacity];
+      nextSecondParents = new int[capacity];
     }
-    */
 
-    public Genome pickRandomly(Random r) {
-      return fitnessMap.get(r.nextInt(fitnessMap.size())).getKey();
+    int size() {
+      return size;
+    }
+
+    private int nextSize() {
+      return nextSize;
+    }
+
+    Genome genome(int slot) {
+      return genomes[slot];
+    }
+
+    /**
+     * @return the species of the (fitter) parent of the genome, null if unknown
+     */
+    Species parentSpecie(int slot) {
+      return parentSpecies[slot];
+    }
+
+    int firstParent(int slot) {
+      return firstParents[slot];
+    }
+
+    int secondParent(int slot) {
+      return secondParents[slot];
     }
-  }
 
+    /**
+     * @return the index of the species of the genome, -1 if not assigned yet
+     */
+    int speciesId(int slot) {
+      return speciesIds[slot];
+    }
+
+    boolean isChampion(int slot) {
+      return champions[slot];
+    }
+
+    int compatibilityChecks(int slot) {
+      return compatibilityChecks[slot];
+    }
+
+    void addToNextGeneration(Genome genome, Species parentSpecie, int firstParent,
+        int secondParent) {
+      if (nextSize == nextGenomes.length) {
+        nextGenomes = Arrays.copyOf(nextGenomes, nextSize * 2);
+        nextParentSpecies = Arrays.copyOf(nextParentSpecies, nextSize * 2);
+        nextFirstParents = Arrays.copyOf(nextFirstParents, nextSize * 2);
+        nextSecondParents = Arrays.copyOf(nextSecondParents, nextSize * 2);
+      }
+      nextGenomes[nextSize] = genome;
+      nextParentSpecies[nextSize] = parentSpecie;
+      nextFirstParents[nextSize] = firstParent;
+      nextSecondParents[nextSize] = secondParent;
+      nextSize++;
+    }
+
+    /**
+     * Makes the collected genomes the current generation.
+     */
+    void nextGeneration() {
+      Genome[] swapGenomes = genomes;
+      genomes = nextGenomes;
+      nextGenomes = swapGenomes;
+      Species[] swapParentSpecies = parentSpecies;
+      parentSpecies = nextParentSpecies;
+      nextParentSpecies = swapParentSpecies;
+      int[] swapParents = firstParents;
+      firstParents = nextFirstParents;
+      nextFirstParents = swapParents;
+      swapParents = secondParents;
+      secondParents = nextSecondParents;
+      nextSecondParents = swapParents;
+      // release the genomes and species of the previous generation
+      Arrays.fill(nextGenomes, 0, size, null);
+      Arrays.fill(nextParentSpecies, 0, size, null);
+      size = nextSize;
+      nextSize = 0;
+
+      if (speciesIds.length < size) {
+        speciesIds = new int[genomes.length];
+        fitnesses = new float[genomes.length];
+        champions = new boolean[genomes.length];
+        compatibilityChecks = new int[genomes.length];
+      }
+      Arrays.fill(speciesIds, 0, size, -1);
+      Arrays.fill(champions, 0, size, false);
+    }
+  }
 
   @Value
   private static class Generation {
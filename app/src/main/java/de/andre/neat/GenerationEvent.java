@@ -0,0 +1,28 @@
+package de.andre.neat;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("de.andre.neat.Generation")
+@Label("Generation")
+@Category("NEAT")
+@Description("Evaluation and breeding of one generation")
+class GenerationEvent extends Event {
+
+  @Label("Generation")
+  int generation;
+
+  @Label("Population Size")
+  int populationSize;
+
+  @Label("Species")
+  @Description("Number of species after the generation change")
+  int speciesCount;
+
+  @Label("Highest Fitness")
+  @Description("Highest fitness of all generations so far")
+  float highestFitness;
+}
@@ -0,0 +1,269 @@
+package de.andre.neat;
+
+import static de.andre.neat.GenerationHistoryWriter.RECORD_HEADER_BYTES;
+import static de.andre.neat.GenerationHistoryWriter.SLOT_BYTES;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Reads a history written by {@link GenerationHistoryWriter}. The file is memory-mapped and opening
+ * it only reads the length and the generation of each record, so a generation, a genome or the
+ * lineage of a genome are found without decoding the generations before them.
+ *
+ * <p>A record at the end of the file, that has not been written completely, is ignored. If a
+ * generation has been written more than once, because the run has been resumed from an earlier
+ * checkpoint, the last record is used.
+ */
+public final class GenerationHistoryReader implements AutoCloseable {
+
+  /**
+   * a mapping is limited to 2 GB, larger files are mapped in several segments
+   */
+  private static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE;
+
+  private final FileChannel channel;
+  private final List<ByteBuffer> segments = new ArrayList<>();
+  /**
+   * the generations in ascending order, while indexing the generation of each record
+   */
+  private int[] generations = new int[0];
+  /**
+   * segment of the record of each generation
+   */
+  private int[] recordSegments = new int[0];
+  /**
+   * position of the generation of each record in its segment
+   */
+  private int[] recordPositions = new int[0];
+  private int recordCount;
+  /**
+   * start of the segment that is mapped next while indexing
+   */
+  private long segmentStart;
+
+  private GenerationHistoryReader(FileChannel channel) {
+    this.channel = channel;
+  }
+
+  public static GenerationHistoryReader open(Path file) throws IOException {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      GenerationHistoryReader reader = new GenerationHistoryReader(channel);
+      reader.indexRecords();
+      return reader;
+    } catch (IOException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  private void indexRecords() throws IOException {
+    long end = GenerationHistoryWriter.scanRecords(channel, this::addRecord);
+    segments.add(channel.map(MapMode.READ_ONLY, segmentStart, end - segmentStart));
+
+    // sort the records by generation and then by their order in the file, so the last record of
+    // a generation replaces the earlier ones
+    long[] keys = new long[recordCount];
+    for (int record = 0; record < recordCount; record++) {
+      keys[record] = (long) generations[record] << 32 | record;
+    }
+    Arrays.sort(keys);
+    int[] sortedGenerations = new int[recordCount];
+    int[] sortedSegments = new int[recordCount];
+    int[] sortedPositions = new int[recordCount];
+    int count = 0;
+    for (long key : keys) {
+      int generation = (int) (key >>> 32);
+      if (count > 0 && sortedGenerations[count - 1] == generation) {
+        count--;
+      }
+      sortedGenerations[count] = generation;
+      sortedSegments[count] = recordSegments[(int) key];
+      sortedPositions[count] = recordPositions[(int) key];
+      count++;
+    }
+    generations = Arrays.copyOf(sortedGenerations, count);
+    recordSegments = Arrays.copyOf(sortedSegments, count);
+    recordPositions = Arrays.copyOf(sortedPositions, count);
+  }
+
+  private void addRecord(int generation, long position, long end) throws IOException {
+    if (end - segmentStart > MAX_SEGMENT_BYTES) {
+      segments.add(channel.map(MapMode.READ_ONLY, segmentStart, position - segmentStart));
+      segmentStart = position;
+    }
+    if (recordCount == generations.length) {
+      // the arrays grow with the records in the file, a corrupted generation can not inflate them
+      int length = Math.max(16, recordCount * 2);
+      generations = Arrays.copyOf(generations, length);
+      recordSegments = Arrays.copyOf(recordSegments, length);
+      recordPositions = Arrays.copyOf(recordPositions, length);
+    }
+    generations[recordCount] = generation;
+    recordSegments[recordCount] = segments.size();
+    recordPositions[recordCount] = (int) (position + Integer.BYTES - segmentStart);
+    recordCount++;
+  }
+
+  /**
+   * @return the first generation in the history, {@link Integer#MAX_VALUE} if it is empty
+   */
+  public int getFirstGeneration() {
+    return generations.length == 0 ? Integer.MAX_VALUE : generations[0];
+  }
+
+  /**
+   * @return the last generation in the history, 0 if it is empty
+   */
+  public int getLastGeneration() {
+    return generations.length == 0 ? 0 : generations[generations.length - 1];
+  }
+
+  public boolean contains(int generation) {
+    return Arrays.binarySearch(generations, generation) >= 0;
+  }
+
+  /**
+   * @throws IllegalArgumentException if the generation is not in the history
+   */
+  public Generation getGeneration(int generation) {
+    int index = Arrays.binarySearch(generations, generation);
+    if (index < 0) {
+      throw new IllegalArgumentException("Generation " + generation + " is not in the history");
+    }
+    return new Generation(segments.get(recordSegments[index]), recordPositions[index]);
+  }
+
+  /**
+   * @return the slot of the genome followed by the slots of its first parents, the slot at index i
+   * belongs to generation - i. It ends with a genome of the first generation or when the previous
+   * generation is not in the history.
+   */
+  public int[] getLineage(int generation, int slot) {
+    Generation current = getGeneration(generation);
+    Objects.checkIndex(slot, current.size());
+    int[] lineage = new int[Math.min(generation, 64)];
+    int length = 0;
+    while (true) {
+      if (length == lineage.length) {
+        lineage = Arrays.copyOf(lineage, length * 2);
+      }
+      lineage[length++] = slot;
+      slot = current.getFirstParent(slot);
+      generation--;
+      if (slot < 0 || !contains(generation)) {
+        return Arrays.copyOf(lineage, length);
+      }
+      current = getGeneration(generation);
+    }
+  }
+
+  /**
+   * Closes the file, the mapped generations stay readable until they are garbage collected.
+   */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * View of a generation in the mapped file, the values are read on each access.
+   */
+  public static final class Generation {
+
+    private final ByteBuffer buffer;
+    /**
+     * position of the record after its length
+     */
+    private final int position;
+
+    private Generation(ByteBuffer buffer, int position) {
+      this.buffer = buffer;
+      this.position = position;
+    }
+
+    public int getGeneration() {
+      return buffer.getInt(position);
+    }
+
+    public int size() {
+      return buffer.getInt(position + Integer.BYTES);
+    }
+
+    public float getFitness(int slot) {
+      return buffer.getFloat(slotPosition(slot));
+    }
+
+    /**
+     * @see GenerationStatistics#getFirstParent(int)
+     */
+    public int getFirstParent(int slot) {
+      return buffer.getInt(slotPosition(slot) + Float.BYTES);
+    }
+
+    /**
+     * @see GenerationStatistics#getSecondParent(int)
+     */
+    public int getSecondParent(int slot) {
+      return buffer.getInt(slotPosition(slot) + Float.BYTES + Integer.BYTES);
+    }
+
+    /**
+     * @return the genome of the slot, decoded from the file
+     */
+    public PackedGenome getGenome(int slot) {
+      ByteBuffer genome = buffer.duplicate();
+      genome.position(position + buffer.getInt(slotPosition(slot) + Float.BYTES
+          + 2 * Integer.BYTES));
+      try {
+        return PackedGenome.readFrom(new DataInputStream(new ByteBufferInputStream(genome)));
+      } catch (IOException ex) {
+        throw new UncheckedIOException("Genome " + slot + " is corrupted", ex);
+      }
+    }
+
+    private int slotPosition(int slot) {
+      Objects.checkIndex(slot, size());
+      return position + RECORD_HEADER_BYTES + slot * SLOT_BYTES;
+    }
+  }
+
+  private static class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    private ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, count);
+      return count;
+    }
+  }
+}
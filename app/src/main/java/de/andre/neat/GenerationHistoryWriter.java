@@ -0,0 +1,210 @@
+package de.andre.neat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Appends the genomes, fitness values and parents of every generation to a history file, that is
+ * read by {@link GenerationHistoryReader}. The generations are encoded and written by a background
+ * thread, the evolution only waits if the writer falls behind by more than
+ * {@link #QUEUE_CAPACITY} generations.
+ *
+ * <p>Each record starts with the number of bytes that follow, then the generation, the population
+ * size and a table with the fitness, the parents and the position of the genome of each slot. The
+ * genomes follow as written by {@link PackedGenome#writeTo(DataOutput)}. The table has a fixed size
+ * per slot, so a single genome can be read without decoding the others.
+ */
+public class GenerationHistoryWriter implements GenerationListener, AutoCloseable {
+
+  /**
+   * generation and population size
+   */
+  static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+  /**
+   * fitness, first parent, second parent and position of the genome relative to the generation
+   */
+  static final int SLOT_BYTES = Float.BYTES + 3 * Integer.BYTES;
+  private static final int QUEUE_CAPACITY = 16;
+  /**
+   * stops the background thread
+   */
+  private static final GenerationStatistics END = new GenerationStatistics(0, 0, 0, null, null, 0,
+      0, 0, null, null, null, null, null, null);
+
+  private final FileChannel channel;
+  private final BlockingQueue<GenerationStatistics> queue =
+      new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final Thread thread;
+  private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+  private final ByteArrayOutputStream genomes = new ByteArrayOutputStream();
+  private volatile IOException failure;
+  private boolean closed;
+
+  /**
+   * @param file the history, new generations are appended if it exists already. A record that has
+   *             not been written completely, because the previous run has been interrupted, is cut
+   *             off first, otherwise its length would misalign the records appended after it.
+   */
+  public GenerationHistoryWriter(Path file) throws IOException {
+    this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    try {
+      long end = scanRecords(channel, (generation, position, recordEnd) -> {
+      });
+      channel.truncate(end);
+      channel.position(end);
+    } catch (IOException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+    this.thread = new Thread(this::writeGenerations, "generation-history-writer");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Queues the generation, it waits while the queue is full.
+   *
+   * @throws UncheckedIOException if a previous generation could not be written
+   */
+  @Override
+  public void generationEvaluated(GenerationStatistics statistics) {
+    if (closed) {
+      throw new IllegalStateException("History has been closed");
+    }
+    throwFailure();
+    try {
+      queue.put(statistics);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Waiting for the history writer has been interrupted", ex);
+    }
+  }
+
+  /**
+   * Writes the queued generations and closes the file.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      queue.put(END);
+      thread.join();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Waiting for the history writer has been interrupted", ex);
+    } finally {
+      channel.close();
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Reads the length and the generation of each record, that has been written completely.
+   *
+   * @return the position after the last complete record
+   */
+  static long scanRecords(FileChannel channel, RecordVisitor visitor) throws IOException {
+    long fileSize = channel.size();
+    ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+    long position = 0;
+    while (position + header.capacity() <= fileSize) {
+      header.clear();
+      while (header.hasRemaining()) {
+        channel.read(header, position + header.position());
+      }
+      int length = header.getInt(0);
+      int generation = header.getInt(Integer.BYTES);
+      long end = position + Integer.BYTES + length;
+      if (length < RECORD_HEADER_BYTES || generation < 0 || end > fileSize) {
+        // the last record has not been written completely
+        break;
+      }
+      visitor.visit(generation, position, end);
+      position = end;
+    }
+    return position;
+  }
+
+  private void throwFailure() {
+    IOException ex = failure;
+    if (ex != null) {
+      throw new UncheckedIOException("History could not be written", ex);
+    }
+  }
+
+  private void writeGenerations() {
+    while (true) {
+      GenerationStatistics statistics;
+      try {
+        statistics = queue.take();
+      } catch (InterruptedException ex) {
+        return;
+      }
+      if (statistics == END) {
+        return;
+      }
+      // after a failure the generations are dropped, so the evolution is not blocked
+      if (failure == null) {
+        try {
+          write(statistics);
+        } catch (IOException ex) {
+          failure = ex;
+        }
+      }
+    }
+  }
+
+  private void write(GenerationStatistics statistics) throws IOException {
+    int size = statistics.getPopulationSize();
+    int tableBytes = RECORD_HEADER_BYTES + size * SLOT_BYTES;
+    genomes.reset();
+    DataOutputStream genomeOut = new DataOutputStream(genomes);
+    record.reset();
+    DataOutputStream out = new DataOutputStream(record);
+    out.writeInt(0);
+    out.writeInt(statistics.getGeneration());
+    out.writeInt(size);
+    for (int slot = 0; slot < size; slot++) {
+      out.writeFloat(statistics.getFitness(slot));
+      out.writeInt(statistics.getFirstParent(slot));
+      out.writeInt(statistics.getSecondParent(slot));
+      out.writeInt(tableBytes + genomes.size());
+      PackedGenome.pack(statistics.getGenome(slot)).writeTo(genomeOut);
+    }
+    genomes.writeTo(record);
+
+    ByteBuffer buffer = ByteBuffer.wrap(record.toByteArray());
+    buffer.putInt(0, buffer.capacity() - Integer.BYTES);
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  /**
+   * Receives the records found by {@link #scanRecords(FileChannel, RecordVisitor)}.
+   */
+  @FunctionalInterface
+  interface RecordVisitor {
+
+    /**
+     * @param position the position of the length of the record
+     * @param end      the position after the record
+     */
+    void visit(int generation, long position, long end) throws IOException;
+  }
+}
@@ -0,0 +1,11 @@
+package de.andre.neat;
+
+/**
+ * Is notified by an {@link Evaluator} after each generation, on the thread that called
+ * {@link Evaluator#evaluateNextGeneration()}.
+ */
+@FunctionalInterface
+public interface GenerationListener {
+
+  void generationEvaluated(GenerationStatistics statistics);
+}
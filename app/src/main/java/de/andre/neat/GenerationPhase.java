@@ -0,0 +1,31 @@
+package de.andre.neat;
+
+/**
+ * The phases of {@link Evaluator#evaluateNextGeneration()} in the order they are executed.
+ */
+public enum GenerationPhase {
+  /**
+   * placing the genomes into species
+   */
+  SPECIATION,
+  /**
+   * evaluating the fitness of the genomes
+   */
+  EVALUATION,
+  /**
+   * choosing the champions and preparing the selection by relative fitness
+   */
+  RELATIVE_FITNESS,
+  /**
+   * breeding the offspring via mutation only, including their structural mutations
+   */
+  BREEDING_WITHOUT_CROSSOVER,
+  /**
+   * breeding the offspring via crossover, including their structural mutations
+   */
+  BREEDING_WITH_CROSSOVER,
+  /**
+   * replacing the generation and removing extinct species
+   */
+  TURNOVER
+}
@@ -0,0 +1,128 @@
+package de.andre.neat;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * What happened during one generation and where its time went. Allocated bytes include the worker
+ * threads of the executor, they are -1 if the JVM cannot measure allocations.
+ */
+@Getter
+public class GenerationStatistics {
+
+  /**
+   * the evaluated generation, starting at 1
+   */
+  private final int generation;
+  private final int populationSize;
+  /**
+   * number of species after the generation change
+   */
+  private final int numberOfSpecies;
+  /**
+   * highest fitness of all generations so far
+   */
+  private final Fitness highestFitness;
+  private final Genome fittestGenome;
+  /**
+   * compatibility distances calculated while placing genomes into species
+   */
+  private final int compatibilityChecks;
+  /**
+   * structural mutations that left the genome unchanged
+   */
+  private final int failedMutations;
+  /**
+   * genomes evaluated to {@link Fitness#NOT_AVAILABLE}
+   */
+  private final int notAvailableGenomes;
+  @Getter(AccessLevel.NONE)
+  private final Genome[] genomes;
+  @Getter(AccessLevel.NONE)
+  private final float[] fitnesses;
+  @Getter(AccessLevel.NONE)
+  private final int[] firstParents;
+  @Getter(AccessLevel.NONE)
+  private final int[] secondParents;
+  @Getter(AccessLevel.NONE)
+  private final long[] phaseNanos;
+  @Getter(AccessLevel.NONE)
+  private final long[] phaseAllocatedBytes;
+
+  GenerationStatistics(int generation, int populationSize, int numberOfSpecies,
+      Fitness highestFitness, Genome fittestGenome, int compatibilityChecks, int failedMutations,
+      int notAvailableGenomes, Genome[] genomes, float[] fitnesses, int[] firstParents,
+      int[] secondParents, long[] phaseNanos, long[] phaseAllocatedBytes) {
+    this.generation = generation;
+    this.populationSize = populationSize;
+    this.numberOfSpecies = numberOfSpecies;
+    this.highestFitness = highestFitness;
+    this.fittestGenome = fittestGenome;
+    this.compatibilityChecks = compatibilityChecks;
+    this.failedMutations = failedMutations;
+    this.notAvailableGenomes = notAvailableGenomes;
+    this.genomes = genomes;
+    this.fitnesses = fitnesses;
+    this.firstParents = firstParents;
+    this.secondParents = secondParents;
+    this.phaseNanos = phaseNanos;
+    this.phaseAllocatedBytes = phaseAllocatedBytes;
+  }
+
+  /**
+   * @param slot position of the genome in the evaluated generation, from 0 to populationSize - 1
+   */
+  public Genome getGenome(int slot) {
+    return genomes[slot];
+  }
+
+  public float getFitness(int slot) {
+    return fitnesses[slot];
+  }
+
+  /**
+   * @return the slot of the (fitter) parent in the previous generation, -1 for the genomes of the
+   * first generation. Champions that survive unchanged refer to themselves.
+   */
+  public int getFirstParent(int slot) {
+    return firstParents[slot];
+  }
+
+  /**
+   * @return the slot of the other parent in the previous generation, -1 if the genome has been
+   * bred without crossover
+   */
+  public int getSecondParent(int slot) {
+    return secondParents[slot];
+  }
+
+  public long getNanos(GenerationPhase phase) {
+    return phaseNanos[phase.ordinal()];
+  }
+
+  public long getAllocatedBytes(GenerationPhase phase) {
+    return phaseAllocatedBytes[phase.ordinal()];
+  }
+
+  public long getTotalNanos() {
+    long sum = 0;
+    for (long nanos : phaseNanos) {
+      sum += nanos;
+    }
+    return sum;
+  }
+
+  /**
+   * @return the bytes allocated during all phases, -1 if allocations cannot be measured
+   */
+  public long getTotalAllocatedBytes() {
+    long sum = 0;
+    for (long bytes : phaseAllocatedBytes) {
+      if (bytes < 0) {
+        return -1;
+      }
+      sum += bytes;
+    }
+    return sum;
+  }
+}
@@ -1,47 +1,77 @@
 package de.andre.neat;
 
+import static de.andre.neat.Parameter.PARAM_FEED_FORWARD_ONLY;
 import static de.andre.neat.Parameter.PARAM_MUTATION_RATE_WEIGHT_PERTUBE;
 
+import de.andre.neat.NodeGene.Type;
+
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Random;
 import java.util.TreeMap;
 
 public class Genome {
 
-  private final List<NodeGene> nodes = new ArrayList<>();
-  private final List<ConnectionGene> connections = new ArrayList<>();
+  private static final Comparator<ConnectionGene> INNOVATION_ORDER = Comparator.comparingInt(
+      connection -> connection.getInnovation().getValue());
+  /**
+   * random node pairs tried before all candidates for a new connection are determined
+   */
+  private static final int RANDOM_CONNECTION_DRAWS = 8;
+
+  /**
+   * the lists are immutable and shared between genomes, changing a gene copies only its chunk
+   */
+  private ChunkedList<NodeGene> nodes = ChunkedList.empty();
+  /**
+   * sorted by innovation number, so genomes can be compared by merging their connections
+   */
+  private ChunkedList<ConnectionGene> connections = ChunkedList.empty();
+  /**
+   * created on demand, genomes are not changed after they have been handed out. Methods changing
+   * the nodes or connections of a new genome must call {@link #invalidate()}.
+   */
+  private Metadata metadata;
+  private ReachabilityIndex reachabilityIndex;
 
   static Genome init(List<NodeGene> nodes, List<ConnectionGene> connections) {
+    List<ConnectionGene> sortedConnections = new ArrayList<>(connections);
+    sortedConnections.sort(INNOVATION_ORDER);
+    Genome newGenome = new Genome();
+    newGenome.nodes = ChunkedList.copyOf(nodes);
+    newGenome.connections = ChunkedList.copyOf(sortedConnections);
+
     // ensure connections are valid
     for (ConnectionGene connection : connections) {
       // check inNode and outNode are present
-      if (!nodes.contains(connection.getInNode())) {
+      if (!newGenome.containsNode(connection.getInNode().getId())) {
         throw new IllegalArgumentException("InNode is not present");
       }
-      if (!nodes.contains(connection.getOutNode())) {
+      if (!newGenome.containsNode(connection.getOutNode().getId())) {
         throw new IllegalArgumentException("OutNode is not present");
       }
     }
-
-    Genome newGenome = new Genome();
-    newGenome.nodes.addAll(nodes);
-    newGenome.connections.addAll(connections);
     return newGenome;
   }
 
+  public static Genome crossover(Genome parent1, Genome parent2, boolean sameFitness, Random r) {
+    return crossover(parent1, parent2, sameFitness, r, PARAM_FEED_FORWARD_ONLY);
+  }
+
   /**
-   * @param parent1 the more fit parent
-   * @param parent2 the less fit parent
+   * @param parent1         the more fit parent
+   * @param parent2         the less fit parent
+   * @param feedForwardOnly remove connections inherited from parent2, that close a cycle with the
+   *                        other connections (e.g. a -> b of parent1 and b -> a of parent2)
    * @return a new genome
    */
-  public static Genome crossover(Genome parent1, Genome parent2, boolean sameFitness, Random r) {
+  public static Genome crossover(Genome parent1, Genome parent2, boolean sameFitness, Random r,
+      boolean feedForwardOnly) {
     // build superset of all nodes present
-    Collection<NodeGene> newNodes = new ArrayList<>();
+    Genome offspring = new Genome();
     if (sameFitness) {
       TreeMap<NodeId, NodeGene> orderedNewNodes = new TreeMap<>(NodeId.COMPARATOR);
       for (NodeGene node : parent1.nodes) {
@@ -50,116 +80,248 @@ public class Genome {
       for (NodeGene node : parent2.nodes) {
         orderedNewNodes.put(node.getId(), node);
       }
-      newNodes.addAll(orderedNewNodes.values());
+      offspring.nodes = ChunkedList.copyOf(orderedNewNodes.values());
     } else {
-      newNodes.addAll(parent1.nodes);
+      offspring.nodes = parent1.nodes;
     }
 
-    // find matching connection genes
-    Map<InnovationNumber, ConnectionGene> parent1Innos = new HashMap<>();
-    for (ConnectionGene connection : parent1.connections) {
-      parent1Innos.put(connection.getInnovation(), connection);
+    // merge the connections, both are sorted by innovation number
+    ChunkedList.Builder<ConnectionGene> newConnections = new ChunkedList.Builder<>();
+    Iterator<ConnectionGene> connections1 = parent1.connections.iterator();
+    Iterator<ConnectionGene> connections2 = parent2.connections.iterator();
+    ConnectionGene p1Connection = nextOrNull(connections1);
+    ConnectionGene p2Connection = nextOrNull(connections2);
+    while (p1Connection != null && p2Connection != null) {
+      int innovation1 = p1Connection.getInnovation().getValue();
+      int innovation2 = p2Connection.getInnovation().getValue();
+      if (innovation1 == innovation2) {
+        // choose matching connections randomly from p1 or p2
+        newConnections.add(r.nextBoolean() ? p1Connection : p2Connection);
+        p1Connection = nextOrNull(connections1);
+        p2Connection = nextOrNull(connections2);
+      } else if (innovation1 < innovation2) {
+        // add "disjoint" connection from the fitter parent
+        newConnections.add(p1Connection);
+        p1Connection = nextOrNull(connections1);
+      } else {
+        // add "disjoint" connection from both parents when both parents have the same fitness
+        if (sameFitness) {
+          newConnections.add(p2Connection);
+        }
+        p2Connection = nextOrNull(connections2);
+      }
     }
-    Map<InnovationNumber, ConnectionGene> parent2Innos = new HashMap<>();
-    for (ConnectionGene connection : parent2.connections) {
-      parent2Innos.put(connection.getInnovation(), connection);
+
+    // add "excess" connections from the fitter parent or both parents when both parents have the
+    // same fitness
+    for (; p1Connection != null; p1Connection = nextOrNull(connections1)) {
+      newConnections.add(p1Connection);
     }
-    List<ConnectionGene> newConnectionsBases = new ArrayList<>();
-    for (ConnectionGene p1Connection : parent1.connections) {
-      ConnectionGene p2Connection = parent2Innos.get(p1Connection.getInnovation());
-      if (p2Connection == null) {
-        // add "disjoint" and "excess" connection from the fitter parent
-        newConnectionsBases.add(p1Connection);
-      } else {
-        // choose matching connections randomly from p1 or p2
-        newConnectionsBases.add(r.nextBoolean() ? p1Connection : p2Connection);
+    for (; sameFitness && p2Connection != null; p2Connection = nextOrNull(connections2)) {
+      newConnections.add(p2Connection);
+    }
+    offspring.connections = newConnections.build();
+
+    // without the same fitness all connections are inherited from parent1, so only connections of
+    // both parents can close a cycle
+    if (feedForwardOnly && sameFitness && !offspring.reachabilityIndex().acyclic) {
+      offspring.connections = removeCycles(offspring, parent1);
+      offspring.invalidate();
+    }
+    return offspring;
+  }
+
+  /**
+   * @return the connections of the offspring without the ones not inherited from parent1, that
+   * close a cycle. They are checked in the order of their innovation numbers.
+   */
+  private static ChunkedList<ConnectionGene> removeCycles(Genome offspring, Genome parent1) {
+    LongIntHashMap nodeIndex = offspring.metadata().nodeIndex;
+    LongIntHashMap parent1Edges = parent1.metadata().edges;
+    ChunkedList<ConnectionGene> connections = offspring.connections;
+    int nodeCount = nodeIndex.size();
+    int[][] targets = new int[nodeCount][];
+    int[] targetCounts = new int[nodeCount];
+    boolean[] fromParent1 = new boolean[connections.size()];
+    for (int i = 0; i < connections.size(); i++) {
+      ConnectionGene connection = connections.get(i);
+      if (parent1Edges.get(ConnectionGene.edgeKey(connection.getInNode(), connection.getOutNode()))
+          >= 0) {
+        fromParent1[i] = true;
+        addTarget(targets, targetCounts, nodeIndex.get(connection.getInNode().getId().getValue()),
+            nodeIndex.get(connection.getOutNode().getId().getValue()));
       }
     }
 
-    if (sameFitness) {
-      // add "disjoint" and "excess" connection from both parents when both parents have the same fitness
-      for (ConnectionGene p2Connection : parent2.connections) {
-        if (!parent1Innos.containsKey(p2Connection.getInnovation())) {
-          newConnectionsBases.add(p2Connection);
+    ChunkedList.Builder<ConnectionGene> keptConnections = new ChunkedList.Builder<>();
+    boolean[] visited = new boolean[nodeCount];
+    int[] stack = new int[nodeCount];
+    for (int i = 0; i < connections.size(); i++) {
+      ConnectionGene connection = connections.get(i);
+      if (!fromParent1[i]) {
+        int in = nodeIndex.get(connection.getInNode().getId().getValue());
+        int out = nodeIndex.get(connection.getOutNode().getId().getValue());
+        // depth first search from the out node back to the in node
+        Arrays.fill(visited, false);
+        int stackSize = 0;
+        stack[stackSize++] = out;
+        visited[out] = true;
+        while (stackSize > 0 && !visited[in]) {
+          int node = stack[--stackSize];
+          for (int t = 0; t < targetCounts[node]; t++) {
+            int target = targets[node][t];
+            if (!visited[target]) {
+              visited[target] = true;
+              stack[stackSize++] = target;
+            }
+          }
+        }
+        if (visited[in]) {
+          continue;
         }
+        addTarget(targets, targetCounts, in, out);
       }
+      keptConnections.add(connection);
     }
+    return keptConnections.build();
+  }
 
-    // create new genome
-    Genome offspring = new Genome();
-    offspring.nodes.addAll(newNodes);
-    for (ConnectionGene connectionBase : newConnectionsBases) {
-      offspring.connections.add(connectionBase.createCopy());
+  private static void addTarget(int[][] targets, int[] targetCounts, int node, int target) {
+    if (targets[node] == null) {
+      targets[node] = new int[4];
+    } else if (targetCounts[node] == targets[node].length) {
+      targets[node] = Arrays.copyOf(targets[node], targetCounts[node] * 2);
     }
-    return offspring;
+    targets[node][targetCounts[node]++] = target;
   }
 
+  private static <T> T nextOrNull(Iterator<T> iterator) {
+    return iterator.hasNext() ? iterator.next() : null;
+  }
+
+  /**
+   * @return an unmodifiable list of the nodes
+   */
   public List<NodeGene> getNodes() {
-    return Collections.unmodifiableList(nodes);
+    return nodes;
   }
 
+  /**
+   * @return an unmodifiable list of the connections, sorted by innovation number
+   */
   public List<ConnectionGene> getConnections() {
-    return Collections.unmodifiableList(connections);
+    return connections;
   }
 
   private Genome cloneGenome() {
     Genome clone = new Genome();
-    clone.nodes.addAll(this.nodes);
-    for (ConnectionGene connection : this.connections) {
-      clone.connections.add(connection.createCopy());
-    }
+    clone.nodes = this.nodes;
+    clone.connections = this.connections;
     return clone;
   }
 
   public Genome weightMutation(Random r) {
+    // every weight changes, so only the nodes can be shared
     Genome clone = new Genome();
-    clone.nodes.addAll(this.nodes);
+    clone.nodes = this.nodes;
+    // the structure stays the same, so do the values derived from it
+    clone.metadata = this.metadata;
+    clone.reachabilityIndex = this.reachabilityIndex;
+    ChunkedList.Builder<ConnectionGene> newConnections = new ChunkedList.Builder<>();
     for (ConnectionGene connection : this.connections) {
       if (r.nextFloat() < PARAM_MUTATION_RATE_WEIGHT_PERTUBE) {
         // weight shall mutate uniformly perturbed
-        clone.connections.add(connection.pertubeWeight(r));
+        newConnections.add(connection.pertubeWeight(r));
       } else {
         // weight shall get a totally random new value
-        clone.connections.add(connection.assignNewWeight(r));
+        newConnections.add(connection.assignNewWeight(r));
       }
     }
+    clone.connections = newConnections.build();
     return clone;
   }
 
   public Genome addConnectionMutation(Random r, InnovationNumberFactory innovationNumberFactory) {
-    NodeGene inNode = pickRandomNode(r);
-    NodeGene outNode = pickRandomNode(r);
+    return addConnectionMutation(r, innovationNumberFactory, PARAM_FEED_FORWARD_ONLY);
+  }
 
-    // check if connection exists
-    if (!connectionExists(inNode, outNode)) {
-      // create new connection
-      Genome clone = cloneGenome();
-      InnovationNumber innovation = innovationNumberFactory.create(inNode,
-          outNode);
-      ConnectionGene connection = ConnectionGene.builder()
-          .inNode(inNode)
-          .outNode(outNode)
-          .weight(ConnectionWeight.random(r))
-          .expressed(ExpressedState.EXPRESSED)
-          .innovation(innovation)
-          .build();
-      clone.connections.add(connection);
-      return clone;
+  /**
+   * Adds a connection picked uniformly from all connections that can be added. Returns this genome,
+   * if no connection can be added.
+   *
+   * @param feedForwardOnly reject connections that would create a cycle, connections into input
+   *                        nodes and connections out of output nodes
+   */
+  public Genome addConnectionMutation(Random r, InnovationNumberFactory innovationNumberFactory,
+      boolean feedForwardOnly) {
+    NodeGene inNode = null;
+    NodeGene outNode = null;
+    // in sparse genomes a few random node pairs find a new connection quickly
+    for (int draw = 0; draw < RANDOM_CONNECTION_DRAWS && inNode == null; draw++) {
+      NodeGene in = pickRandomNode(r);
+      NodeGene out = pickRandomNode(r);
+      if (!connectionExists(in, out)
+          && (!feedForwardOnly || isFeedForwardConnection(in, out))) {
+        inNode = in;
+        outNode = out;
+      }
+    }
+    if (inNode == null) {
+      // the genome is dense, so pick among all connections that can be added. The candidates are
+      // too large to keep them with the genome.
+      ConnectionCandidates candidates = new ConnectionCandidates(this, metadata(),
+          feedForwardOnly ? reachabilityIndex() : null);
+      if (candidates.count() == 0) {
+        return this;
+      }
+      long candidate = candidates.pick(r);
+      inNode = candidates.nodes[(int) (candidate >>> 32)];
+      outNode = candidates.nodes[(int) candidate];
     }
 
-    return this;
+    // create new connection
+    Genome clone = cloneGenome();
+    InnovationNumber innovation = innovationNumberFactory.create(inNode,
+        outNode);
+    ConnectionGene connection = ConnectionGene.builder()
+        .inNode(inNode)
+        .outNode(outNode)
+        .weight(ConnectionWeight.random(r))
+        .expressed(ExpressedState.EXPRESSED)
+        .innovation(innovation)
+        .build();
+    clone.addConnection(connection);
+    if (feedForwardOnly && reachabilityIndex != null) {
+      // the connection does not close a cycle, so the index of this genome can be updated
+      LongIntHashMap nodeIndex = metadata().nodeIndex;
+      clone.reachabilityIndex = reachabilityIndex.withConnection(
+          nodeIndex.get(inNode.getId().getValue()), nodeIndex.get(outNode.getId().getValue()));
+    }
+    return clone;
   }
 
   public Genome addNodeMutation(Random r, NodeFactory nodeFactory,
       InnovationNumberFactory innovationNumberFactory) {
-    Genome clone = cloneGenome();
-    // pick a random connection
-    ConnectionGene oldConnection = clone.pickRandomConnection(r);
-    oldConnection.disable();
+    if (connections.isEmpty()) {
+      return this;
+    }
+
+    // pick a random connection, only expressed connections are split
+    int index = r.nextInt(connections.size());
+    ConnectionGene oldConnection = connections.get(index);
+    if (oldConnection.getExpressed() != ExpressedState.EXPRESSED) {
+      return this;
+    }
 
     // create a new node
     NodeGene newNode = nodeFactory.create(oldConnection.getInnovation());
-    clone.nodes.add(newNode);
+    if (containsNode(newNode.getId())) {
+      // the connection has already been split (e.g. by the other parent of a crossover)
+      return this;
+    }
+    Genome clone = cloneGenome();
+    clone.replaceConnection(index, oldConnection.disabled());
+    clone.addNode(newNode);
 
     // add connection
     InnovationNumber innovation1 = innovationNumberFactory.create(oldConnection.getInNode(),
@@ -171,7 +333,7 @@ public class Genome {
         .expressed(ExpressedState.EXPRESSED)
         .innovation(innovation1)
         .build();
-    clone.connections.add(newConnection1);
+    clone.addConnection(newConnection1);
 
     InnovationNumber innovation2 = innovationNumberFactory.create(newNode,
         oldConnection.getOutNode());
@@ -182,40 +344,534 @@ public class Genome {
         .expressed(ExpressedState.EXPRESSED)
         .innovation(innovation2)
         .build();
-    clone.connections.add(newConnection2);
+    clone.addConnection(newConnection2);
+    if (reachabilityIndex != null) {
+      // the new node gets the next index
+      LongIntHashMap nodeIndex = metadata().nodeIndex;
+      clone.reachabilityIndex = reachabilityIndex.withSplitConnection(
+          nodeIndex.get(oldConnection.getInNode().getId().getValue()),
+          nodeIndex.get(oldConnection.getOutNode().getId().getValue()));
+    }
     return clone;
   }
 
-  private ConnectionGene pickRandomConnection(Random r) {
-    return connections.get(r.nextInt(connections.size()));
+  /**
+   * Inserts the connection behind all connections with a lower or the same innovation number.
+   */
+  private void addConnection(ConnectionGene connection) {
+    int innovation = connection.getInnovation().getValue();
+    int low = 0;
+    int high = connections.size();
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (connections.get(middle).getInnovation().getValue() <= innovation) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    connections = connections.insert(low, connection);
+    invalidate();
+  }
+
+  private void addNode(NodeGene node) {
+    nodes = nodes.insert(nodes.size(), node);
+    invalidate();
+  }
+
+  private void replaceConnection(int index, ConnectionGene connection) {
+    connections = connections.replace(index, connection);
+    invalidate();
+  }
+
+  private void invalidate() {
+    metadata = null;
+    reachabilityIndex = null;
+  }
+
+  private Metadata metadata() {
+    Metadata metadata = this.metadata;
+    if (metadata == null) {
+      metadata = new Metadata(this);
+      this.metadata = metadata;
+    }
+    return metadata;
   }
 
   private boolean connectionExists(NodeGene inNode, NodeGene outNode) {
-    for (ConnectionGene connection : connections) {
-      if (connection.getInNode().getId().equals(inNode.getId())
-          && connection.getOutNode().getId().equals(outNode.getId())) {
-        return true;
-      }
+    return metadata().edges.get(ConnectionGene.edgeKey(inNode, outNode)) >= 0;
+  }
+
+  public boolean containsNode(NodeId id) {
+    return metadata().nodeIndex.get(id.getValue()) >= 0;
+  }
+
+  private boolean isFeedForwardConnection(NodeGene inNode, NodeGene outNode) {
+    if (inNode.getType() == Type.OUTPUT || outNode.getType() == Type.INPUT
+        || inNode.getId().equals(outNode.getId())) {
+      return false;
+    }
+    LongIntHashMap nodeIndex = metadata().nodeIndex;
+    return !reachabilityIndex().isReachable(nodeIndex.get(outNode.getId().getValue()),
+        nodeIndex.get(inNode.getId().getValue()));
+  }
+
+  private ReachabilityIndex reachabilityIndex() {
+    ReachabilityIndex reachabilityIndex = this.reachabilityIndex;
+    if (reachabilityIndex == null) {
+      reachabilityIndex = ReachabilityIndex.build(this, metadata().nodeIndex);
+      this.reachabilityIndex = reachabilityIndex;
     }
-    return false;
+    return reachabilityIndex;
   }
 
   private NodeGene pickRandomNode(Random r) {
-    return nodes.get(r.nextInt(nodes.size()));
+    // the node list may contain a node more than once, the metadata does not
+    NodeGene[] distinctNodes = metadata().nodes;
+    return distinctNodes[r.nextInt(distinctNodes.length)];
   }
 
   public int nodeCount() {
     return nodes.size();
   }
 
+  /**
+   * @return the lowest innovation number, null if there are no connections
+   */
+  public InnovationNumber minInnovationNumber() {
+    return connections.isEmpty() ? null : connections.get(0).getInnovation();
+  }
+
+  /**
+   * @return the highest innovation number, null if there are no connections
+   */
   public InnovationNumber maxInnovationNumber() {
-    InnovationNumber max = null;
-    for (ConnectionGene connection : this.connections) {
-      if (max == null || connection.getInnovation().getValue() > max.getValue()) {
-        max = connection.getInnovation();
+    return connections.isEmpty() ? null : connections.get(connections.size() - 1).getInnovation();
+  }
+
+  public int expressedConnectionCount() {
+    return metadata().expressedConnectionCount;
+  }
+
+  /**
+   * @return a hash of the nodes and connections without the weights, genomes with the same
+   * structure have the same hash
+   */
+  public long structuralHash() {
+    return metadata().structuralHash;
+  }
+
+  /**
+   * Values derived from the nodes and connections of a genome.
+   */
+  private static class Metadata {
+
+    /**
+     * distinct index of each node by its id
+     */
+    private final LongIntHashMap nodeIndex;
+    /**
+     * distinct nodes by their index
+     */
+    private final NodeGene[] nodes;
+    /**
+     * index of the connection by {@link ConnectionGene#edgeKey(NodeGene, NodeGene)}
+     */
+    private final LongIntHashMap edges;
+    private final int expressedConnectionCount;
+    private final long structuralHash;
+
+    private Metadata(Genome genome) {
+      nodeIndex = new LongIntHashMap(genome.nodes.size());
+      // the order of the nodes does not matter for the structure
+      long nodeHash = 0;
+      NodeGene[] distinctNodes = new NodeGene[genome.nodes.size()];
+      for (NodeGene node : genome.nodes) {
+        int index = nodeIndex.size();
+        if (nodeIndex.putIfAbsent(node.getId().getValue(), index) < 0) {
+          distinctNodes[index] = node;
+          nodeHash += mix(node.getId().getValue());
+        }
+      }
+      nodes = nodeIndex.size() == distinctNodes.length
+          ? distinctNodes : Arrays.copyOf(distinctNodes, nodeIndex.size());
+
+      edges = new LongIntHashMap(genome.connections.size());
+      int expressed = 0;
+      long hash = nodeHash;
+      int index = 0;
+      for (ConnectionGene connection : genome.connections) {
+        long edgeKey = ConnectionGene.edgeKey(connection.getInNode(), connection.getOutNode());
+        edges.putIfAbsent(edgeKey, index++);
+        boolean isExpressed = connection.getExpressed() == ExpressedState.EXPRESSED;
+        if (isExpressed) {
+          expressed++;
+        }
+        hash = hash * 31 + mix(edgeKey);
+        hash = hash * 31 + mix(connection.getInnovation().getValue() * 2L + (isExpressed ? 1 : 0));
+      }
+      expressedConnectionCount = expressed;
+      structuralHash = hash;
+    }
+
+    private static long mix(long value) {
+      // finalizer of SplitMix64
+      long z = value * 0x9E3779B97F4A7C15L;
+      z = (z ^ z >>> 30) * 0xBF58476D1CE4E5B9L;
+      z = (z ^ z >>> 27) * 0x94D049BB133111EBL;
+      return z ^ z >>> 31;
+    }
+  }
+
+  /**
+   * Connections of a genome (expressed or not, since crossover may express them again) together
+   * with a topological order of the nodes. A new connection from a to b keeps the genome free of
+   * cycles, if a is not reachable from b. When a comes before b in the order this is known without
+   * any search, otherwise only the nodes between b and a in the order are searched.
+   *
+   * <p>Building the index takes O(N + E) for N nodes and E connections. The offspring of a
+   * structural mutation does not build it again, but gets a copy of the index of its parent that
+   * is updated for the new connections: the arrays of all nodes are copied (O(N)), the targets are
+   * shared, except for the node that got a new connection, and the order only changes between the
+   * two nodes of a connection that points backwards in the order. Nodes are referred to by their
+   * index in the {@link Metadata}, which stays the same, since new nodes are appended.
+   */
+  private static class ReachabilityIndex {
+
+    private static final int[] NO_TARGETS = new int[0];
+
+    /**
+     * out nodes of the connections of each node, the arrays are shared between indexes
+     */
+    private final int[][] targets;
+    /**
+     * position of each node in the topological order, -1 for nodes within or behind a cycle
+     */
+    private final int[] rank;
+    /**
+     * the ranked nodes in topological order
+     */
+    private final int[] order;
+    private final boolean acyclic;
+
+    private ReachabilityIndex(int[][] targets, int[] rank, int[] order, boolean acyclic) {
+      this.targets = targets;
+      this.rank = rank;
+      this.order = order;
+      this.acyclic = acyclic;
+    }
+
+    private static ReachabilityIndex build(Genome genome, LongIntHashMap nodeIndex) {
+      int nodeCount = nodeIndex.size();
+      int[] targetCounts = new int[nodeCount];
+      int[] remainingIncoming = new int[nodeCount];
+      for (ConnectionGene connection : genome.connections) {
+        targetCounts[nodeIndex.get(connection.getInNode().getId().getValue())]++;
+        remainingIncoming[nodeIndex.get(connection.getOutNode().getId().getValue())]++;
+      }
+      int[][] targets = new int[nodeCount][];
+      for (int i = 0; i < nodeCount; i++) {
+        targets[i] = targetCounts[i] == 0 ? NO_TARGETS : new int[targetCounts[i]];
+      }
+      int[] fill = new int[nodeCount];
+      for (ConnectionGene connection : genome.connections) {
+        int in = nodeIndex.get(connection.getInNode().getId().getValue());
+        targets[in][fill[in]++] = nodeIndex.get(connection.getOutNode().getId().getValue());
+      }
+
+      // sort topologically (Kahn)
+      int[] rank = new int[nodeCount];
+      Arrays.fill(rank, -1);
+      int[] queue = new int[nodeCount];
+      int queueEnd = 0;
+      for (int i = 0; i < nodeCount; i++) {
+        if (remainingIncoming[i] == 0) {
+          queue[queueEnd++] = i;
+        }
+      }
+      for (int queueStart = 0; queueStart < queueEnd; queueStart++) {
+        int node = queue[queueStart];
+        rank[node] = queueStart;
+        for (int target : targets[node]) {
+          if (--remainingIncoming[target] == 0) {
+            queue[queueEnd++] = target;
+          }
+        }
+      }
+      return new ReachabilityIndex(targets, rank, Arrays.copyOf(queue, queueEnd),
+          queueEnd == nodeCount);
+    }
+
+    /**
+     * @param in  index of the in node
+     * @param out index of the out node, in must not be reachable from it
+     * @return the index after adding the connection, null if it must be built again
+     */
+    private ReachabilityIndex withConnection(int in, int out) {
+      if (!acyclic) {
+        return null;
+      }
+      int[][] newTargets = targets.clone();
+      newTargets[in] = withTarget(targets[in], out);
+      if (rank[in] < rank[out]) {
+        return new ReachabilityIndex(newTargets, rank, order, true);
+      }
+
+      // the connection points backwards in the order, so the nodes reachable from out that are
+      // ranked up to in are moved behind the other nodes of this range (Marchetti-Spaccamela et
+      // al.). No connection leads from a moved node to a node that stays, so the order is valid.
+      boolean[] moved = reachable(out, rank[in], -1);
+      int[] newRank = rank.clone();
+      int[] newOrder = order.clone();
+      int position = rank[out];
+      for (int i = rank[out]; i <= rank[in]; i++) {
+        if (!moved[order[i]]) {
+          newOrder[position] = order[i];
+          newRank[order[i]] = position++;
+        }
+      }
+      for (int i = rank[out]; i <= rank[in]; i++) {
+        if (moved[order[i]]) {
+          newOrder[position] = order[i];
+          newRank[order[i]] = position++;
+        }
+      }
+      return new ReachabilityIndex(newTargets, newRank, newOrder, true);
+    }
+
+    /**
+     * @param in  index of the in node of the split connection
+     * @param out index of the out node of the split connection
+     * @return the index after adding the next node between in and out, null if it must be built
+     * again
+     */
+    private ReachabilityIndex withSplitConnection(int in, int out) {
+      if (!acyclic) {
+        return null;
+      }
+      int node = targets.length;
+      int[][] newTargets = Arrays.copyOf(targets, node + 1);
+      newTargets[in] = withTarget(targets[in], node);
+      newTargets[node] = new int[]{out};
+
+      // the new node is placed right before out
+      int position = rank[out];
+      int[] newOrder = new int[node + 1];
+      System.arraycopy(order, 0, newOrder, 0, position);
+      newOrder[position] = node;
+      System.arraycopy(order, position, newOrder, position + 1, node - position);
+      int[] newRank = Arrays.copyOf(rank, node + 1);
+      for (int i = position; i <= node; i++) {
+        newRank[newOrder[i]] = i;
+      }
+      return new ReachabilityIndex(newTargets, newRank, newOrder, true);
+    }
+
+    private static int[] withTarget(int[] targets, int target) {
+      int[] newTargets = Arrays.copyOf(targets, targets.length + 1);
+      newTargets[targets.length] = target;
+      return newTargets;
+    }
+
+    /**
+     * @return for each node a bit set of the nodes reachable from it
+     */
+    private long[][] descendants() {
+      int nodeCount = rank.length;
+      int words = (nodeCount + 63) >>> 6;
+      long[][] descendants = new long[nodeCount][words];
+      // nodes reachable from a cycle are not ranked and only reach unranked nodes, so they are
+      // updated until nothing changes
+      boolean changed;
+      do {
+        changed = false;
+        for (int node = 0; node < nodeCount; node++) {
+          if (rank[node] < 0) {
+            changed |= addDescendantsOfTargets(node, descendants);
+          }
+        }
+      } while (changed);
+      // the ranked nodes in reverse topological order, so the descendants of their targets are
+      // complete
+      for (int i = order.length - 1; i >= 0; i--) {
+        addDescendantsOfTargets(order[i], descendants);
+      }
+      return descendants;
+    }
+
+    /**
+     * @return true, if the descendants of the node changed
+     */
+    private boolean addDescendantsOfTargets(int node, long[][] descendants) {
+      long[] nodeDescendants = descendants[node];
+      boolean changed = false;
+      for (int target : targets[node]) {
+        long[] targetDescendants = descendants[target];
+        for (int word = 0; word < nodeDescendants.length; word++) {
+          long value = nodeDescendants[word] | targetDescendants[word];
+          if (word == target >>> 6) {
+            value |= 1L << target;
+          }
+          if (value != nodeDescendants[word]) {
+            nodeDescendants[word] = value;
+            changed = true;
+          }
+        }
+      }
+      return changed;
+    }
+
+    /**
+     * @return true, if there is a path of connections from start to end (indexes of the nodes)
+     */
+    private boolean isReachable(int start, int end) {
+      if (acyclic && rank[start] > rank[end]) {
+        // all paths lead to nodes with a higher rank
+        return false;
+      }
+      // in an acyclic genome only nodes ranked up to the end are relevant
+      return reachable(start, acyclic ? rank[end] : Integer.MAX_VALUE, end)[end];
+    }
+
+    /**
+     * Depth first search from the start, that stops when the end has been reached.
+     *
+     * @param maxRank only nodes ranked up to this are visited, nodes without a rank always
+     * @param end     index of the node to stop at, -1 to visit all reachable nodes
+     * @return the visited nodes
+     */
+    private boolean[] reachable(int start, int maxRank, int end) {
+      boolean[] visited = new boolean[rank.length];
+      int[] stack = new int[rank.length];
+      int stackSize = 0;
+      stack[stackSize++] = start;
+      visited[start] = true;
+      while (stackSize > 0) {
+        int node = stack[--stackSize];
+        if (node == end) {
+          break;
+        }
+        for (int target : targets[node]) {
+          if (!visited[target] && rank[target] <= maxRank) {
+            visited[target] = true;
+            stack[stackSize++] = target;
+          }
+        }
       }
+      return visited;
     }
+  }
 
-    return max;
+  /**
+   * All connections that can be added to a genome, as a bit set of the allowed in nodes for each
+   * out node. A candidate is picked by choosing the out node by its number of allowed in nodes.
+   *
+   * <p>The bit sets take N * N / 8 bytes for N nodes, about 128 KB for 1000 nodes, and the
+   * descendants of the nodes take the same again while they are built. So the candidates are built
+   * for a single pick and not kept with the genome.
+   */
+  private static class ConnectionCandidates {
+
+    /**
+     * distinct nodes by their index, those of the metadata
+     */
+    private final NodeGene[] nodes;
+    /**
+     * bit i of allowedInNodes[out] is set, if node i can be connected to node out
+     */
+    private final long[][] allowedInNodes;
+    /**
+     * number of candidates with an out node below the index
+     */
+    private final int[] candidatesBefore;
+
+    private ConnectionCandidates(Genome genome, Metadata metadata,
+        ReachabilityIndex reachabilityIndex) {
+      boolean feedForwardOnly = reachabilityIndex != null;
+      LongIntHashMap nodeIndex = metadata.nodeIndex;
+      int nodeCount = nodeIndex.size();
+      int words = (nodeCount + 63) >>> 6;
+
+      nodes = metadata.nodes;
+
+      // connections into input nodes and out of output nodes are not feed forward
+      long[] inNodeMask = new long[words];
+      for (int i = 0; i < nodeCount; i++) {
+        if (!feedForwardOnly || nodes[i].getType() != Type.OUTPUT) {
+          inNodeMask[i >>> 6] |= 1L << i;
+        }
+      }
+      long[][] descendants = feedForwardOnly ? reachabilityIndex.descendants() : null;
+      allowedInNodes = new long[nodeCount][];
+      for (int out = 0; out < nodeCount; out++) {
+        long[] allowed = inNodeMask.clone();
+        if (feedForwardOnly) {
+          if (nodes[out].getType() == Type.INPUT) {
+            Arrays.fill(allowed, 0L);
+          }
+          // a connection from a descendant or the node itself would create a cycle
+          for (int word = 0; word < words; word++) {
+            allowed[word] &= ~descendants[out][word];
+          }
+          allowed[out >>> 6] &= ~(1L << out);
+        }
+        allowedInNodes[out] = allowed;
+      }
+      for (ConnectionGene connection : genome.connections) {
+        int in = nodeIndex.get(connection.getInNode().getId().getValue());
+        int out = nodeIndex.get(connection.getOutNode().getId().getValue());
+        allowedInNodes[out][in >>> 6] &= ~(1L << in);
+      }
+
+      candidatesBefore = new int[nodeCount + 1];
+      for (int out = 0; out < nodeCount; out++) {
+        int count = 0;
+        for (long word : allowedInNodes[out]) {
+          count += Long.bitCount(word);
+        }
+        candidatesBefore[out + 1] = candidatesBefore[out] + count;
+      }
+    }
+
+    private int count() {
+      return candidatesBefore[nodes.length];
+    }
+
+    /**
+     * @return the index of the in node in the upper 32 bits and the index of the out node in the
+     * lower 32 bits
+     */
+    private long pick(Random r) {
+      int candidate = r.nextInt(count());
+      // the last out node with less candidates before it than the picked candidate
+      int low = 0;
+      int high = nodes.length - 1;
+      while (low < high) {
+        int middle = (low + high + 1) >>> 1;
+        if (candidatesBefore[middle] <= candidate) {
+          low = middle;
+        } else {
+          high = middle - 1;
+        }
+      }
+      int out = low;
+
+      // the remaining candidate-th set bit of the allowed in nodes
+      int remaining = candidate - candidatesBefore[out];
+      long[] allowed = allowedInNodes[out];
+      for (int word = 0; ; word++) {
+        int bits = Long.bitCount(allowed[word]);
+        if (remaining < bits) {
+          long value = allowed[word];
+          for (int i = 0; i < remaining; i++) {
+            // clear the lowest set bit
+            value &= value - 1;
+          }
+          int in = (word << 6) + Long.numberOfTrailingZeros(value);
+          return (long) in << 32 | out;
+        }
+        remaining -= bits;
+      }
+    }
   }
 }
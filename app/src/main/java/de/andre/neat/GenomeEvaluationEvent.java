@@ -0,0 +1,32 @@
+package de.andre.neat;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Only evaluations taking at least 1 ms are recorded by default, the threshold can be changed in
+ * the recording settings.
+ */
+@Name("de.andre.neat.GenomeEvaluation")
+@Label("Genome Evaluation")
+@Category("NEAT")
+@Description("Evaluation of the fitness of one genome")
+@Threshold("1 ms")
+class GenomeEvaluationEvent extends Event {
+
+  @Label("Generation")
+  int generation;
+
+  @Label("Nodes")
+  int nodeCount;
+
+  @Label("Connections")
+  int connectionCount;
+
+  @Label("Fitness")
+  float fitness;
+}
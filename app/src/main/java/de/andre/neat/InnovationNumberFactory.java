@@ -1,10 +1,32 @@
 package de.andre.neat;
 
-import java.util.HashMap;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class InnovationNumberFactory {
 
-  private final HashMap<NodeId, HashMap<NodeId, InnovationNumber>> allConnections = new HashMap<>();
+  /**
+   * innovation numbers by the ids of the in node (upper 32 bits) and the out node (lower 32 bits)
+   */
+  private final AgingRegistry<InnovationNumber> allConnections;
+  /**
+   * value of the last created innovation number, they are counted per factory
+   */
+  private final AtomicInteger lastValue = new AtomicInteger();
+
+  public InnovationNumberFactory() {
+    this(Integer.MAX_VALUE);
+  }
+
+  /**
+   * @param maxAge number of generations a connection is remembered after it has been created the
+   *               last time, {@link Integer#MAX_VALUE} remembers all connections
+   */
+  public InnovationNumberFactory(int maxAge) {
+    this.allConnections = new AgingRegistry<>(maxAge);
+  }
 
   /**
    * @param inNode  a node
@@ -13,14 +35,46 @@ public class InnovationNumberFactory {
    * input, then the same innovation number must be returned.
    */
   public InnovationNumber create(NodeGene inNode, NodeGene outNode) {
-    HashMap<NodeId, InnovationNumber> sublist = allConnections.computeIfAbsent(inNode.getId(),
-        k -> new HashMap<>());
-    InnovationNumber innovation = sublist.get(outNode.getId());
-    if (innovation == null) {
-      innovation = InnovationNumber.next();
-      sublist.put(outNode.getId(), innovation);
-    }
-    return innovation;
+    return allConnections.get(ConnectionGene.edgeKey(inNode, outNode),
+        k -> next());
   }
 
+  /**
+   * @return a new innovation number, e.g. for the connections of the initial genomes
+   */
+  public InnovationNumber next() {
+    return InnovationNumber.of(lastValue.incrementAndGet());
+  }
+
+  /**
+   * Continues after the given value, unless a higher value has been created already.
+   */
+  void continueAfter(int value) {
+    lastValue.accumulateAndGet(value, Math::max);
+  }
+
+  /**
+   * Starts the next generation and forgets the connections that are too old.
+   */
+  public void nextGeneration() {
+    allConnections.nextGeneration();
+  }
+
+  int size() {
+    return allConnections.size();
+  }
+
+  void writeTo(DataOutput out) throws IOException {
+    out.writeInt(lastValue.get());
+    allConnections.writeTo(out, InnovationNumber::getValue);
+  }
+
+  /**
+   * Replaces all connections and the last innovation number by the ones written by
+   * {@link #writeTo(DataOutput)}.
+   */
+  void readFrom(DataInput in) throws IOException {
+    lastValue.set(in.readInt());
+    allConnections.readFrom(in, InnovationNumber::of);
+  }
 }
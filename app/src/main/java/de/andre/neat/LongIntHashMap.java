@@ -0,0 +1,85 @@
+package de.andre.neat;
+
+/**
+ * Hash map from a primitive long key to a non-negative int value with open addressing, so neither
+ * keys nor values are boxed. Keys cannot be removed.
+ */
+class LongIntHashMap {
+
+  private long[] keys;
+  /**
+   * value + 1 of the key at the same position, 0 marks an empty slot
+   */
+  private int[] values;
+  private int size;
+
+  LongIntHashMap(int expectedSize) {
+    int capacity = 4;
+    while (capacity < expectedSize * 2) {
+      capacity <<= 1;
+    }
+    keys = new long[capacity];
+    values = new int[capacity];
+  }
+
+  /**
+   * @return the value of the key, -1 if the key is not present
+   */
+  int get(long key) {
+    int mask = keys.length - 1;
+    for (int slot = slot(key, mask); values[slot] != 0; slot = slot + 1 & mask) {
+      if (keys[slot] == key) {
+        return values[slot] - 1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @param value a non-negative value
+   * @return the value that was already present for the key, -1 if the value has been added
+   */
+  int putIfAbsent(long key, int value) {
+    int mask = keys.length - 1;
+    int slot = slot(key, mask);
+    for (; values[slot] != 0; slot = slot + 1 & mask) {
+      if (keys[slot] == key) {
+        return values[slot] - 1;
+      }
+    }
+    keys[slot] = key;
+    values[slot] = value + 1;
+    if (++size * 2 > keys.length) {
+      grow();
+    }
+    return -1;
+  }
+
+  int size() {
+    return size;
+  }
+
+  private void grow() {
+    long[] oldKeys = keys;
+    int[] oldValues = values;
+    keys = new long[oldKeys.length * 2];
+    values = new int[oldValues.length * 2];
+    int mask = keys.length - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldValues[i] != 0) {
+        int slot = slot(oldKeys[i], mask);
+        while (values[slot] != 0) {
+          slot = slot + 1 & mask;
+        }
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  static int slot(long key, int mask) {
+    // spread the bits, ids are mostly small consecutive numbers
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ hash >>> 32) & mask;
+  }
+}
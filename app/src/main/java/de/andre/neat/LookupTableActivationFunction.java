@@ -0,0 +1,48 @@
+package de.andre.neat;
+
+/**
+ * Approximates an activation function by linear interpolation between precomputed values. Outside
+ * of the table the value of the nearest end is used, so the function should be saturated there.
+ */
+public class LookupTableActivationFunction implements ActivationFunction {
+
+  private final float min;
+  private final float max;
+  private final float scale;
+  private final float[] table;
+
+  /**
+   * @param function the function to approximate
+   * @param min      the smallest input in the table
+   * @param max      the largest input in the table
+   * @param size     number of entries in the table
+   */
+  public LookupTableActivationFunction(ActivationFunction function, float min, float max,
+      int size) {
+    if (size < 2 || !(min < max)) {
+      throw new IllegalArgumentException("Invalid lookup table range");
+    }
+    this.min = min;
+    this.max = max;
+    this.scale = (size - 1) / (max - min);
+    this.table = new float[size];
+    for (int i = 0; i < size; i++) {
+      table[i] = function.apply(min + i / scale);
+    }
+  }
+
+  @Override
+  public float apply(float x) {
+    if (!(x > min)) {
+      // also handles NaN
+      return table[0];
+    }
+    if (x >= max) {
+      return table[table.length - 1];
+    }
+    float position = (x - min) * scale;
+    int index = Math.min((int) position, table.length - 2);
+    float fraction = position - index;
+    return table[index] + (table[index + 1] - table[index]) * fraction;
+  }
+}
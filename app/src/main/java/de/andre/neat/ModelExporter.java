@@ -0,0 +1,161 @@
+package de.andre.neat;
+
+import de.andre.neat.runtime.Model;
+import de.andre.neat.runtime.Model.Activation;
+import de.andre.neat.runtime.Model.WeightEncoding;
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Exports the network of a genome into the format of the runtime ({@link Model}), so it can be
+ * evaluated without this project. Only the expressed connections of nodes that an output depends
+ * on are exported, in topological order.
+ */
+public class ModelExporter {
+
+  private ModelExporter() {
+  }
+
+  /**
+   * @param activationFunction {@link ActivationFunction#STEEPENED_SIGMOID} (or one of its
+   *                           approximations, that the runtime reproduces),
+   *                           {@link ActivationFunction#TANH} or {@link ActivationFunction#RELU}
+   * @throws IllegalArgumentException if an output depends on a cycle or on a node without value
+   */
+  public static void export(Genome genome, List<NodeGene> inputNodes, List<NodeGene> outputNodes,
+      ActivationFunction activationFunction, WeightEncoding weightEncoding, Path file)
+      throws IOException {
+    try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(file))) {
+      DataOutputStream out = new DataOutputStream(stream);
+      writeTo(genome, inputNodes, outputNodes, activationFunction, weightEncoding, out);
+      out.flush();
+    }
+  }
+
+  static void writeTo(Genome genome, List<NodeGene> inputNodes, List<NodeGene> outputNodes,
+      ActivationFunction activationFunction, WeightEncoding weightEncoding, DataOutput out)
+      throws IOException {
+    Activation activation = activationOf(activationFunction);
+    NetworkTopology topology = NetworkTopology.compile(genome);
+    int nodeCount = topology.nodeCount();
+
+    // the nodes that can be computed from the inputs, in topological order
+    boolean[] available = new boolean[nodeCount];
+    int[] valueIndices = new int[nodeCount];
+    Arrays.fill(valueIndices, -1);
+    for (int i = 0; i < inputNodes.size(); i++) {
+      int node = topology.indexOf(inputNodes.get(i));
+      if (available[node]) {
+        throw new IllegalArgumentException("Input " + inputNodes.get(i).getId() + " is repeated");
+      }
+      available[node] = true;
+      valueIndices[node] = i;
+    }
+    int[] schedule = new int[nodeCount];
+    int scheduleSize = topology.scheduleCalculableNodes(available, schedule);
+
+    // prune the nodes no output depends on
+    boolean[] needed = new boolean[nodeCount];
+    for (NodeGene outputNode : outputNodes) {
+      int node = topology.indexOf(outputNode);
+      if (!available[node]) {
+        throw new IllegalArgumentException(
+            "Output " + outputNode.getId() + " can not be computed from the inputs");
+      }
+      needed[node] = true;
+    }
+    int computedCount = 0;
+    int connectionCount = 0;
+    for (int i = scheduleSize - 1; i >= 0; i--) {
+      int node = schedule[i];
+      if (needed[node]) {
+        computedCount++;
+        for (int c = topology.incomingStart[node]; c < topology.incomingStart[node + 1]; c++) {
+          needed[topology.sources[c]] = true;
+          connectionCount++;
+        }
+      }
+    }
+    int[] computed = new int[computedCount];
+    int valueIndex = inputNodes.size();
+    for (int i = 0, next = 0; i < scheduleSize; i++) {
+      if (needed[schedule[i]]) {
+        computed[next++] = schedule[i];
+        valueIndices[schedule[i]] = valueIndex++;
+      }
+    }
+
+    out.writeInt(Model.MAGIC);
+    out.writeInt(Model.VERSION);
+    out.writeByte(activation.ordinal());
+    out.writeByte(weightEncoding.ordinal());
+    out.writeShort(0);
+    out.writeInt(inputNodes.size());
+    out.writeInt(outputNodes.size());
+    out.writeInt(computedCount);
+    out.writeInt(connectionCount);
+    for (NodeGene outputNode : outputNodes) {
+      out.writeInt(valueIndices[topology.indexOf(outputNode)]);
+    }
+    int incomingEnd = 0;
+    for (int node : computed) {
+      incomingEnd += topology.incomingStart[node + 1] - topology.incomingStart[node];
+      out.writeInt(incomingEnd);
+    }
+    for (int node : computed) {
+      for (int c = topology.incomingStart[node]; c < topology.incomingStart[node + 1]; c++) {
+        out.writeInt(valueIndices[topology.sources[c]]);
+      }
+    }
+    if (weightEncoding == WeightEncoding.FLOAT32) {
+      for (int node : computed) {
+        for (int c = topology.incomingStart[node]; c < topology.incomingStart[node + 1]; c++) {
+          out.writeFloat(topology.weights[c]);
+        }
+      }
+    } else {
+      float[] scales = new float[computedCount];
+      for (int i = 0; i < computedCount; i++) {
+        float maxWeight = 0f;
+        for (int c = topology.incomingStart[computed[i]];
+            c < topology.incomingStart[computed[i] + 1]; c++) {
+          maxWeight = Math.max(maxWeight, Math.abs(topology.weights[c]));
+        }
+        scales[i] = maxWeight / 127f;
+        out.writeFloat(scales[i]);
+      }
+      for (int i = 0; i < computedCount; i++) {
+        for (int c = topology.incomingStart[computed[i]];
+            c < topology.incomingStart[computed[i] + 1]; c++) {
+          out.writeByte(scales[i] == 0f ? 0 : Math.round(topology.weights[c] / scales[i]));
+        }
+      }
+    }
+  }
+
+  private static Activation activationOf(ActivationFunction activationFunction) {
+    if (activationFunction == ActivationFunction.STEEPENED_SIGMOID) {
+      return Activation.STEEPENED_SIGMOID;
+    }
+    if (activationFunction == ActivationFunction.STEEPENED_SIGMOID_LOOKUP) {
+      return Activation.STEEPENED_SIGMOID_LOOKUP;
+    }
+    if (activationFunction == ActivationFunction.STEEPENED_SIGMOID_RATIONAL) {
+      return Activation.STEEPENED_SIGMOID_RATIONAL;
+    }
+    if (activationFunction == ActivationFunction.TANH) {
+      return Activation.TANH;
+    }
+    if (activationFunction == ActivationFunction.RELU) {
+      return Activation.RELU;
+    }
+    throw new IllegalArgumentException("Activation function is not supported by the runtime");
+  }
+}
@@ -0,0 +1,36 @@
+package de.andre.neat;
+
+/**
+ * Reusable buffers for building the phenotypes of genomes. Building a network into an arena only
+ * allocates when the genome is larger than all genomes before, so evaluating a population does not
+ * produce garbage on the steady path.
+ * <p>
+ * An arena is not thread-safe, use {@link #forCurrentThread()}. A network returned by an arena is
+ * only valid until the next network is built with the same arena.
+ */
+public class NetworkArena {
+
+  private static final ThreadLocal<NetworkArena> ARENAS = ThreadLocal.withInitial(
+      NetworkArena::new);
+
+  private final NetworkTopology topology = new NetworkTopology();
+  private final NeuralNetwork neuralNetwork = new NeuralNetwork(topology);
+  private final RecurrentNeuralNetwork recurrentNeuralNetwork = new RecurrentNeuralNetwork(
+      topology);
+
+  public static NetworkArena forCurrentThread() {
+    return ARENAS.get();
+  }
+
+  public NeuralNetwork neuralNetwork(Genome genome) {
+    topology.load(genome);
+    neuralNetwork.topologyLoaded();
+    return neuralNetwork;
+  }
+
+  public RecurrentNeuralNetwork recurrentNeuralNetwork(Genome genome) {
+    topology.load(genome);
+    recurrentNeuralNetwork.topologyLoaded();
+    return recurrentNeuralNetwork;
+  }
+}
@@ -0,0 +1,211 @@
+package de.andre.neat;
+
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACC_SYNTHETIC;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.BIPUSH;
+import static org.objectweb.asm.Opcodes.FADD;
+import static org.objectweb.asm.Opcodes.FALOAD;
+import static org.objectweb.asm.Opcodes.FASTORE;
+import static org.objectweb.asm.Opcodes.FCONST_0;
+import static org.objectweb.asm.Opcodes.FCONST_1;
+import static org.objectweb.asm.Opcodes.FCONST_2;
+import static org.objectweb.asm.Opcodes.FLOAD;
+import static org.objectweb.asm.Opcodes.FMUL;
+import static org.objectweb.asm.Opcodes.FSTORE;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.SIPUSH;
+import static org.objectweb.asm.Opcodes.V11;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationTargetException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodTooLargeException;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+/**
+ * Compiles a feed-forward {@link Genome} into a class with straight-line code. Every node value is
+ * a local variable, the weights are constants and the built-in activation functions are called
+ * statically, so the JIT can inline them. The results are identical to {@link NeuralNetwork}.
+ * <p>
+ * The generated classes are defined in this package and stay loaded as long as this class is, so
+ * compile champions, not every genome of the population. Because of the limited size of a method,
+ * only networks with up to a few thousand connections can be compiled.
+ */
+public class NetworkCompiler {
+
+  private static final String ACTIVATION_FUNCTION = Type.getInternalName(ActivationFunction.class);
+  private static final String ACTIVATION_FUNCTION_DESCRIPTOR = Type.getDescriptor(
+      ActivationFunction.class);
+  private static final Map<ActivationFunction, String> INLINED_ACTIVATION_FUNCTIONS =
+      new IdentityHashMap<>();
+  private static final AtomicInteger CLASS_COUNTER = new AtomicInteger();
+
+  static {
+    INLINED_ACTIVATION_FUNCTIONS.put(ActivationFunction.STEEPENED_SIGMOID, "steepenedSigmoid");
+    INLINED_ACTIVATION_FUNCTIONS.put(ActivationFunction.STEEPENED_SIGMOID_RATIONAL,
+        "steepenedSigmoidRational");
+    INLINED_ACTIVATION_FUNCTIONS.put(ActivationFunction.TANH, "tanh");
+    INLINED_ACTIVATION_FUNCTIONS.put(ActivationFunction.RELU, "relu");
+  }
+
+  /**
+   * @param inputNodes  nodes the input values are put into
+   * @param outputNodes nodes the output values are read from
+   * @throws ValueNotPresentException when an output node cannot be calculated
+   * @throws IllegalArgumentException  when the network is too large to be compiled
+   */
+  public static CompiledNetwork compile(Genome genome, List<NodeGene> inputNodes,
+      List<NodeGene> outputNodes, ActivationFunction activationFunction) {
+    NetworkTopology topology = NetworkTopology.compile(genome);
+    boolean[] available = new boolean[topology.nodeCount()];
+    int[] inputIndices = new int[inputNodes.size()];
+    for (int column = 0; column < inputIndices.length; column++) {
+      inputIndices[column] = topology.indexOf(inputNodes.get(column));
+      available[inputIndices[column]] = true;
+    }
+    int[] schedule = new int[topology.nodeCount()];
+    int scheduleSize = topology.scheduleCalculableNodes(available, schedule);
+    int[] outputIndices = new int[outputNodes.size()];
+    for (int column = 0; column < outputIndices.length; column++) {
+      NodeGene outputNode = outputNodes.get(column);
+      outputIndices[column] = topology.indexOf(outputNode);
+      if (!available[outputIndices[column]]) {
+        throw new ValueNotPresentException(
+            "Value of node " + outputNode.getId() + " has not been calculated.");
+      }
+    }
+
+    String className = Type.getInternalName(NetworkCompiler.class) + "$Generated"
+        + CLASS_COUNTER.incrementAndGet();
+    byte[] classFile;
+    try {
+      classFile = generateClass(className, topology, inputIndices, schedule, scheduleSize,
+          outputIndices, activationFunction);
+    } catch (MethodTooLargeException ex) {
+      throw new IllegalArgumentException("Network is too large to be compiled", ex);
+    }
+
+    try {
+      Class<?> generatedClass = MethodHandles.lookup().defineClass(classFile);
+      return (CompiledNetwork) generatedClass.getConstructor(ActivationFunction.class)
+          .newInstance(activationFunction);
+    } catch (IllegalAccessException | InstantiationException | NoSuchMethodException
+        | InvocationTargetException ex) {
+      throw new IllegalStateException("Cannot load compiled network", ex);
+    }
+  }
+
+  private static byte[] generateClass(String className, NetworkTopology topology,
+      int[] inputIndices, int[] schedule, int scheduleSize, int[] outputIndices,
+      ActivationFunction activationFunction) {
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    classWriter.visit(V11, ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, className, null,
+        Type.getInternalName(Object.class),
+        new String[]{Type.getInternalName(CompiledNetwork.class)});
+    classWriter.visitField(ACC_PRIVATE | ACC_FINAL, "activationFunction",
+        ACTIVATION_FUNCTION_DESCRIPTOR, null, null).visitEnd();
+
+    MethodVisitor constructor = classWriter.visitMethod(ACC_PUBLIC, "<init>",
+        "(" + ACTIVATION_FUNCTION_DESCRIPTOR + ")V", null, null);
+    constructor.visitCode();
+    constructor.visitVarInsn(ALOAD, 0);
+    constructor.visitMethodInsn(INVOKESPECIAL, Type.getInternalName(Object.class), "<init>", "()V",
+        false);
+    constructor.visitVarInsn(ALOAD, 0);
+    constructor.visitVarInsn(ALOAD, 1);
+    constructor.visitFieldInsn(PUTFIELD, className, "activationFunction",
+        ACTIVATION_FUNCTION_DESCRIPTOR);
+    constructor.visitInsn(RETURN);
+    constructor.visitMaxs(0, 0);
+    constructor.visitEnd();
+
+    // local variables: 0 = this, 1 = inputs, 2 = outputs, 3 + i = value of node i
+    MethodVisitor compute = classWriter.visitMethod(ACC_PUBLIC, "compute", "([F[F)V", null, null);
+    compute.visitCode();
+    for (int column = 0; column < inputIndices.length; column++) {
+      compute.visitVarInsn(ALOAD, 1);
+      pushInt(compute, column);
+      compute.visitInsn(FALOAD);
+      compute.visitVarInsn(FSTORE, 3 + inputIndices[column]);
+    }
+
+    String inlinedActivationFunction = INLINED_ACTIVATION_FUNCTIONS.get(activationFunction);
+    for (int i = 0; i < scheduleSize; i++) {
+      int node = schedule[i];
+      if (inlinedActivationFunction == null) {
+        compute.visitVarInsn(ALOAD, 0);
+        compute.visitFieldInsn(GETFIELD, className, "activationFunction",
+            ACTIVATION_FUNCTION_DESCRIPTOR);
+      }
+      // same order of operations as NeuralNetwork, so the results are identical
+      compute.visitInsn(FCONST_0);
+      for (int connection = topology.incomingStart[node];
+          connection < topology.incomingStart[node + 1]; connection++) {
+        compute.visitVarInsn(FLOAD, 3 + topology.sources[connection]);
+        pushFloat(compute, topology.weights[connection]);
+        compute.visitInsn(FMUL);
+        compute.visitInsn(FADD);
+      }
+      if (inlinedActivationFunction == null) {
+        compute.visitMethodInsn(INVOKEINTERFACE, ACTIVATION_FUNCTION, "apply", "(F)F", true);
+      } else {
+        compute.visitMethodInsn(INVOKESTATIC, ACTIVATION_FUNCTION, inlinedActivationFunction,
+            "(F)F", true);
+      }
+      compute.visitVarInsn(FSTORE, 3 + node);
+    }
+
+    for (int column = 0; column < outputIndices.length; column++) {
+      compute.visitVarInsn(ALOAD, 2);
+      pushInt(compute, column);
+      compute.visitVarInsn(FLOAD, 3 + outputIndices[column]);
+      compute.visitInsn(FASTORE);
+    }
+    compute.visitInsn(RETURN);
+    compute.visitMaxs(0, 0);
+    compute.visitEnd();
+
+    classWriter.visitEnd();
+    return classWriter.toByteArray();
+  }
+
+  private static void pushInt(MethodVisitor method, int value) {
+    if (value <= 5) {
+      method.visitInsn(ICONST_0 + value);
+    } else if (value <= Byte.MAX_VALUE) {
+      method.visitIntInsn(BIPUSH, value);
+    } else if (value <= Short.MAX_VALUE) {
+      method.visitIntInsn(SIPUSH, value);
+    } else {
+      method.visitLdcInsn(value);
+    }
+  }
+
+  private static void pushFloat(MethodVisitor method, float value) {
+    int bits = Float.floatToRawIntBits(value);
+    if (bits == Float.floatToRawIntBits(0f)) {
+      method.visitInsn(FCONST_0);
+    } else if (bits == Float.floatToRawIntBits(1f)) {
+      method.visitInsn(FCONST_1);
+    } else if (bits == Float.floatToRawIntBits(2f)) {
+      method.visitInsn(FCONST_2);
+    } else {
+      method.visitLdcInsn(value);
+    }
+  }
+}
@@ -0,0 +1,222 @@
+package de.andre.neat;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The expressed connections of a {@link Genome} compiled into flat arrays. Nodes are referenced by
+ * their index. A topology can be loaded again with another genome, the arrays are only grown when
+ * they are too small, so the arrays may be longer than the loaded genome needs.
+ */
+class NetworkTopology {
+
+  /**
+   * index of the node with id i, valid when nodeIndexStamps[i] equals the current stamp
+   */
+  private int[] nodeIndexById = new int[0];
+  private int[] nodeIndexStamps = new int[0];
+  private int stamp;
+  private int nodeCount;
+
+  /**
+   * incoming connections of node i are stored from incomingStart[i] (inclusive) to
+   * incomingStart[i + 1] (exclusive) in {@link #sources} and {@link #weights}
+   */
+  int[] incomingStart = new int[1];
+  int[] sources = new int[0];
+  float[] weights = new float[0];
+  /**
+   * all nodes with incoming connections that are not part of a cycle in topological order
+   */
+  int[] computeOrder = new int[0];
+  int computeOrderSize;
+  /**
+   * all nodes with incoming connections that are part of a cycle or depend on a cycle
+   */
+  int[] cyclicNodes = new int[0];
+  int cyclicNodesSize;
+
+  // buffers only needed while loading
+  private int[] outgoingStart = new int[1];
+  private int[] targets = new int[0];
+  private int[] incomingFill = new int[0];
+  private int[] outgoingFill = new int[0];
+  private int[] remainingIncoming = new int[0];
+  private int[] queue = new int[0];
+
+  static NetworkTopology compile(Genome genome) {
+    return new NetworkTopology().load(genome);
+  }
+
+  NetworkTopology load(Genome genome) {
+    // a genome may contain the same node more than once (e.g. when splitting the same connection
+    // twice), so each distinct node gets an index
+    nextStamp();
+    nodeCount = 0;
+    for (NodeGene node : genome.getNodes()) {
+      int id = node.getId().getValue();
+      if (id >= nodeIndexById.length) {
+        int length = Math.max(id + 1, nodeIndexById.length * 2);
+        nodeIndexById = Arrays.copyOf(nodeIndexById, length);
+        nodeIndexStamps = Arrays.copyOf(nodeIndexStamps, length);
+      }
+      if (nodeIndexStamps[id] != stamp) {
+        nodeIndexStamps[id] = stamp;
+        nodeIndexById[id] = nodeCount++;
+      }
+    }
+    ensureNodeCapacity(nodeCount);
+
+    // count expressed connections per node
+    List<ConnectionGene> connections = genome.getConnections();
+    Arrays.fill(incomingStart, 0, nodeCount + 1, 0);
+    Arrays.fill(outgoingStart, 0, nodeCount + 1, 0);
+    int connectionCount = 0;
+    for (ConnectionGene connection : connections) {
+      if (connection.getExpressed() == ExpressedState.EXPRESSED) {
+        incomingStart[indexOf(connection.getOutNode()) + 1]++;
+        outgoingStart[indexOf(connection.getInNode()) + 1]++;
+        connectionCount++;
+      }
+    }
+    for (int i = 0; i < nodeCount; i++) {
+      incomingStart[i + 1] += incomingStart[i];
+      outgoingStart[i + 1] += outgoingStart[i];
+    }
+    if (sources.length < connectionCount) {
+      sources = new int[connectionCount];
+      weights = new float[connectionCount];
+      targets = new int[connectionCount];
+    }
+
+    // fill the connections, keeping the order of the genome for each node
+    Arrays.fill(incomingFill, 0, nodeCount, 0);
+    Arrays.fill(outgoingFill, 0, nodeCount, 0);
+    for (ConnectionGene connection : connections) {
+      if (connection.getExpressed() == ExpressedState.EXPRESSED) {
+        int in = indexOf(connection.getInNode());
+        int out = indexOf(connection.getOutNode());
+        int incomingPos = incomingStart[out] + incomingFill[out]++;
+        sources[incomingPos] = in;
+        weights[incomingPos] = connection.getWeight().getWeight();
+        targets[outgoingStart[in] + outgoingFill[in]++] = out;
+      }
+    }
+
+    // sort topologically (Kahn), nodes that are never reached are part of or depend on a cycle
+    int queueEnd = 0;
+    for (int i = 0; i < nodeCount; i++) {
+      remainingIncoming[i] = incomingStart[i + 1] - incomingStart[i];
+      if (remainingIncoming[i] == 0) {
+        queue[queueEnd++] = i;
+      }
+    }
+    computeOrderSize = 0;
+    for (int queueStart = 0; queueStart < queueEnd; queueStart++) {
+      int node = queue[queueStart];
+      if (incomingStart[node + 1] > incomingStart[node]) {
+        computeOrder[computeOrderSize++] = node;
+      }
+      for (int i = outgoingStart[node]; i < outgoingStart[node + 1]; i++) {
+        if (--remainingIncoming[targets[i]] == 0) {
+          queue[queueEnd++] = targets[i];
+        }
+      }
+    }
+    cyclicNodesSize = 0;
+    for (int i = 0; i < nodeCount; i++) {
+      if (remainingIncoming[i] > 0) {
+        cyclicNodes[cyclicNodesSize++] = i;
+      }
+    }
+    return this;
+  }
+
+  private void nextStamp() {
+    stamp++;
+    if (stamp == 0) {
+      // the stamps wrapped around, so old stamps could become valid again
+      Arrays.fill(nodeIndexStamps, 0);
+      stamp = 1;
+    }
+  }
+
+  private void ensureNodeCapacity(int capacity) {
+    if (computeOrder.length < capacity) {
+      incomingStart = new int[capacity + 1];
+      outgoingStart = new int[capacity + 1];
+      computeOrder = new int[capacity];
+      cyclicNodes = new int[capacity];
+      incomingFill = new int[capacity];
+      outgoingFill = new int[capacity];
+      remainingIncoming = new int[capacity];
+      queue = new int[capacity];
+    }
+  }
+
+  /**
+   * Finds all nodes that can be calculated, when the values of the available nodes are known.
+   *
+   * @param available the nodes with known values, calculable nodes are added
+   * @param schedule  receives the calculable nodes in an order they can be calculated in
+   * @return the number of nodes in the schedule
+   */
+  int scheduleCalculableNodes(boolean[] available, int[] schedule) {
+    int scheduleSize = 0;
+    for (int i = 0; i < computeOrderSize; i++) {
+      int node = computeOrder[i];
+      if (!available[node] && canValueBeCalculated(node, available)) {
+        available[node] = true;
+        schedule[scheduleSize++] = node;
+      }
+    }
+
+    // nodes within a cycle can only be calculated when a value has been put into the cycle
+    boolean foundNodeForCalculation;
+    do {
+      foundNodeForCalculation = false;
+      for (int i = 0; i < cyclicNodesSize; i++) {
+        int node = cyclicNodes[i];
+        if (!available[node] && canValueBeCalculated(node, available)) {
+          available[node] = true;
+          schedule[scheduleSize++] = node;
+          foundNodeForCalculation = true;
+        }
+      }
+    } while (foundNodeForCalculation);
+    return scheduleSize;
+  }
+
+  private boolean canValueBeCalculated(int node, boolean[] available) {
+    for (int i = incomingStart[node]; i < incomingStart[node + 1]; i++) {
+      if (!available[sources[i]]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  int nodeCount() {
+    return nodeCount;
+  }
+
+  /**
+   * @return true, if the node is part of a cycle or depends on a cycle
+   */
+  boolean isCyclic(int node) {
+    for (int i = 0; i < cyclicNodesSize; i++) {
+      if (cyclicNodes[i] == node) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  int indexOf(NodeGene node) {
+    int id = node.getId().getValue();
+    if (id >= nodeIndexById.length || nodeIndexStamps[id] != stamp) {
+      throw new IllegalArgumentException("Node " + node.getId() + " is not part of the network");
+    }
+    return nodeIndexById[id];
+  }
+}
@@ -1,141 +1,194 @@
 package de.andre.neat;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.function.UnaryOperator;
-import lombok.AllArgsConstructor;
-import lombok.Getter;
 
+/**
+ * Phenotype of a {@link Genome}. The expressed connections are compiled once into flat arrays in
+ * topological order, so {@link #compute(ActivationFunction)} is a single linear pass over primitive
+ * arrays.
+ */
 public class NeuralNetwork {
 
-  private final Map<NodeGene, NeuralNetworkNode> nodeGeneMap = new HashMap<>();
-  private final List<NeuralNetworkNode> nodes = new ArrayList<>();
+  private final NetworkTopology topology;
+  private float[] values = new float[0];
+  private boolean[] calculated = new boolean[0];
+  /**
+   * values of a batch computation, the values of node i for all samples are stored from
+   * i * samples (inclusive) to (i + 1) * samples (exclusive)
+   */
+  private float[] batchValues = new float[0];
+  // buffers of a batch computation
+  private boolean[] available = new boolean[0];
+  private int[] schedule = new int[0];
+  private int[] outputIndices = new int[0];
+
+  /**
+   * @param topology the topology of the network, call {@link #topologyLoaded()} whenever a new
+   *                 genome has been loaded into it
+   */
+  NeuralNetwork(NetworkTopology topology) {
+    this.topology = topology;
+    topologyLoaded();
+  }
 
   public static NeuralNetwork createFromGenome(Genome genome) {
-    NeuralNetwork network = new NeuralNetwork();
-    for (NodeGene node : genome.getNodes()) {
-      NeuralNetworkNode neuralNetworkNode = new NeuralNetworkNode();
-      network.nodes.add(neuralNetworkNode);
-      network.nodeGeneMap.put(node, neuralNetworkNode);
-    }
+    return new NeuralNetwork(NetworkTopology.compile(genome));
+  }
 
-    for (ConnectionGene connection : genome.getConnections()) {
-      if (connection.getExpressed() == ExpressedState.EXPRESSED) {
-        NeuralNetworkNode inNode = network.nodeGeneMap.get(connection.getInNode());
-        NeuralNetworkNode outNode = network.nodeGeneMap.get(connection.getOutNode());
-        outNode.addConnection(new Connection(connection.getWeight(), inNode));
-      }
+  void topologyLoaded() {
+    int nodeCount = topology.nodeCount();
+    if (values.length < nodeCount) {
+      values = new float[nodeCount];
+      calculated = new boolean[nodeCount];
+      available = new boolean[nodeCount];
+      schedule = new int[nodeCount];
     }
-
-    return network;
+    resetValues();
   }
 
   public void putValue(NodeGene node, float value) {
-    nodeGeneMap.get(node).setValue(value);
+    int index = topology.indexOf(node);
+    values[index] = value;
+    calculated[index] = true;
   }
 
   public float getValue(NodeGene node) {
-    NeuralNetworkNode networkNode = nodeGeneMap.get(node);
-    if (networkNode.isCalculated()) {
-      return networkNode.getValue();
+    int index = topology.indexOf(node);
+    if (calculated[index]) {
+      return values[index];
     }
     throw new ValueNotPresentException(
         "Value of node " + node.getId() + " has not been calculated.");
   }
 
-  public void compute(UnaryOperator<Float> activationFunction) {
+  /**
+   * @return true, if the node is part of a cycle or depends on a cycle, so its value can only be
+   * calculated when a value has been put into the cycle
+   */
+  public boolean dependsOnCycle(NodeGene node) {
+    return topology.isCyclic(topology.indexOf(node));
+  }
+
+  public void compute(ActivationFunction activationFunction) {
+    for (int i = 0; i < topology.computeOrderSize; i++) {
+      calculateValue(topology.computeOrder[i], activationFunction);
+    }
+
+    // nodes within a cycle can only be calculated when a value has been put into the cycle
     boolean foundNodeForCalculation;
-    List<NeuralNetworkNode> uncomputedNodes = new ArrayList<>(nodes);
     do {
       foundNodeForCalculation = false;
-      Iterator<NeuralNetworkNode> iterator = uncomputedNodes.iterator();
-      while (iterator.hasNext()) {
-        NeuralNetworkNode node = iterator.next();
-        if (node.canValueBeCalculated()) {
+      for (int i = 0; i < topology.cyclicNodesSize; i++) {
+        if (calculateValue(topology.cyclicNodes[i], activationFunction)) {
           foundNodeForCalculation = true;
-          node.calculateValue(activationFunction);
-          iterator.remove();
         }
       }
     } while (foundNodeForCalculation);
   }
 
-  public void resetValues() {
-    for (NeuralNetworkNode node : nodes) {
-      node.resetValue();
+  /**
+   * Computes the network for many samples at once. The graph is traversed once per call and the
+   * samples are processed in tight loops over a structure-of-arrays layout. The values of single
+   * computations ({@link #putValue(NodeGene, float)}, {@link #getValue(NodeGene)}) are not
+   * touched.
+   *
+   * @param inputNodes  nodes the columns of the input matrix are put into
+   * @param inputs      input matrix, one row per sample and one column per input node
+   * @param outputNodes nodes the columns of the output matrix are read from
+   * @return output matrix, one row per sample and one column per output node
+   * @throws ValueNotPresentException when an output node cannot be calculated
+   */
+  public float[][] computeBatch(List<NodeGene> inputNodes, float[][] inputs,
+      List<NodeGene> outputNodes, ActivationFunction activationFunction) {
+    int[] incomingStart = topology.incomingStart;
+    int[] sources = topology.sources;
+    float[] weights = topology.weights;
+    int samples = inputs.length;
+    int nodeCount = topology.nodeCount();
+    if (batchValues.length < nodeCount * samples) {
+      batchValues = new float[nodeCount * samples];
     }
-  }
-
-  private static class NeuralNetworkNode {
-
-    private final List<Connection> connections = new ArrayList<>();
-    @Getter
-    private float value;
-    @Getter
-    private boolean calculated;
 
-    public void addConnection(Connection connection) {
-      this.connections.add(connection);
+    // the calculable nodes do not depend on the values, so find them once for all samples
+    Arrays.fill(available, 0, nodeCount, false);
+    for (int column = 0; column < inputNodes.size(); column++) {
+      int node = topology.indexOf(inputNodes.get(column));
+      available[node] = true;
+      int base = node * samples;
+      for (int sample = 0; sample < samples; sample++) {
+        batchValues[base + sample] = inputs[sample][column];
+      }
     }
+    int scheduleSize = topology.scheduleCalculableNodes(available, schedule);
 
-    public void setValue(float value) {
-      this.value = value;
-      this.calculated = true;
+    if (outputIndices.length < outputNodes.size()) {
+      outputIndices = new int[outputNodes.size()];
     }
-
-    public boolean canValueBeCalculated() {
-      if (calculated) {
-        return true;
-      }
-      if (connections.isEmpty()) {
-        return false;
+    for (int column = 0; column < outputNodes.size(); column++) {
+      NodeGene outputNode = outputNodes.get(column);
+      outputIndices[column] = topology.indexOf(outputNode);
+      if (!available[outputIndices[column]]) {
+        throw new ValueNotPresentException(
+            "Value of node " + outputNode.getId() + " has not been calculated.");
       }
-
-      for (Connection connection : connections) {
-        if (!connection.canCalculate()) {
-          return false;
-        }
-      }
-
-      // all connections can be calculated
-      return true;
     }
 
-    public void calculateValue(UnaryOperator<Float> activationFunction) {
-      if (calculated) {
-        return;
+    // compute all samples node by node
+    for (int i = 0; i < scheduleSize; i++) {
+      int node = schedule[i];
+      int base = node * samples;
+      Arrays.fill(batchValues, base, base + samples, 0f);
+      for (int connection = incomingStart[node]; connection < incomingStart[node + 1];
+          connection++) {
+        int sourceBase = sources[connection] * samples;
+        float weight = weights[connection];
+        for (int sample = 0; sample < samples; sample++) {
+          batchValues[base + sample] += batchValues[sourceBase + sample] * weight;
+        }
       }
-
-      float sumValue = 0f;
-      for (Connection connection : connections) {
-        sumValue += connection.weightedValue();
+      for (int sample = 0; sample < samples; sample++) {
+        batchValues[base + sample] = activationFunction.apply(batchValues[base + sample]);
       }
-
-      this.value = activationFunction.apply(sumValue);
-      this.calculated = true;
     }
 
-    public void resetValue() {
-      this.calculated = false;
-      this.value = 0f;
+    float[][] outputs = new float[samples][outputNodes.size()];
+    for (int column = 0; column < outputNodes.size(); column++) {
+      int base = outputIndices[column] * samples;
+      for (int sample = 0; sample < samples; sample++) {
+        outputs[sample][column] = batchValues[base + sample];
+      }
     }
+    return outputs;
   }
 
-  @AllArgsConstructor
-  private static class Connection {
-
-    private final ConnectionWeight weight;
-    private final NeuralNetworkNode sourceNode;
-
-    public boolean canCalculate() {
-      return sourceNode.isCalculated();
+  /**
+   * @return true, if the value has been calculated by this call
+   */
+  private boolean calculateValue(int node, ActivationFunction activationFunction) {
+    if (calculated[node]) {
+      return false;
     }
 
-    public float weightedValue() {
-      return sourceNode.getValue() * weight.getWeight();
+    int[] sources = topology.sources;
+    float[] weights = topology.weights;
+    int end = topology.incomingStart[node + 1];
+    float sumValue = 0f;
+    for (int i = topology.incomingStart[node]; i < end; i++) {
+      int source = sources[i];
+      if (!calculated[source]) {
+        return false;
+      }
+      sumValue += values[source] * weights[i];
     }
+
+    values[node] = activationFunction.apply(sumValue);
+    calculated[node] = true;
+    return true;
+  }
+
+  public void resetValues() {
+    Arrays.fill(values, 0, topology.nodeCount(), 0f);
+    Arrays.fill(calculated, 0, topology.nodeCount(), false);
   }
 }
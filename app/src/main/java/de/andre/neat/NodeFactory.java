@@ -1,26 +1,84 @@
 package de.andre.neat;
 
 import de.andre.neat.NodeGene.Type;
-import java.util.HashMap;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class NodeFactory {
 
-  private final HashMap<InnovationNumber, NodeGene> allNodes = new HashMap<>();
+  /**
+   * nodes by the innovation number of the split connection
+   */
+  private final AgingRegistry<NodeGene> allNodes;
+  /**
+   * value of the last created id, the ids are counted per factory
+   */
+  private final AtomicInteger lastId = new AtomicInteger();
+
+  public NodeFactory() {
+    this(Integer.MAX_VALUE);
+  }
+
+  /**
+   * @param maxAge number of generations a node is remembered after it has been created the last
+   *               time, {@link Integer#MAX_VALUE} remembers all nodes
+   */
+  public NodeFactory(int maxAge) {
+    this.allNodes = new AgingRegistry<>(maxAge);
+  }
 
   /**
    * @param innovationNumber a innovation number (connection id)
    * @return the NodeId for the node when splitting the connection with the given innovation number
    */
   public NodeGene create(InnovationNumber innovationNumber) {
-    NodeGene node = allNodes.get(innovationNumber);
-    if (node == null) {
-      // it's a new node
-      node = NodeGene.builder()
-          .type(Type.HIDDEN)
-          .id(NodeId.next())
-          .build();
-      allNodes.put(innovationNumber, node);
-    }
-    return node;
+    // it's a new node, if the connection has not been split before
+    return allNodes.get(innovationNumber.getValue(), k -> NodeGene.builder()
+        .type(Type.HIDDEN)
+        .id(nextId())
+        .build());
+  }
+
+  /**
+   * @return a new id, e.g. for the input and output nodes
+   */
+  public NodeId nextId() {
+    return NodeId.of(lastId.incrementAndGet());
+  }
+
+  /**
+   * Continues with the ids after the given value, unless a higher value has been created already.
+   */
+  void continueAfter(int value) {
+    lastId.accumulateAndGet(value, Math::max);
+  }
+
+  /**
+   * Starts the next generation and forgets the nodes that are too old.
+   */
+  public void nextGeneration() {
+    allNodes.nextGeneration();
+  }
+
+  int size() {
+    return allNodes.size();
+  }
+
+  void writeTo(DataOutput out) throws IOException {
+    out.writeInt(lastId.get());
+    allNodes.writeTo(out, node -> node.getId().getValue());
+  }
+
+  /**
+   * Replaces all nodes and the last id by the ones written by {@link #writeTo(DataOutput)}.
+   */
+  void readFrom(DataInput in) throws IOException {
+    lastId.set(in.readInt());
+    allNodes.readFrom(in, id -> NodeGene.builder()
+        .type(Type.HIDDEN)
+        .id(NodeId.of(id))
+        .build());
   }
 }
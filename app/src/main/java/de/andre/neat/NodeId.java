@@ -8,11 +8,5 @@ public class NodeId {
 
   public static final Comparator<NodeId> COMPARATOR = (a, b) -> Integer.compare(a.value, b.value);
 
-  private static int count = 0;
-
   int value;
-
-  public static NodeId next() {
-    return NodeId.of(++count);
-  }
 }
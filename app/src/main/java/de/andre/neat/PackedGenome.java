@@ -0,0 +1,245 @@
+package de.andre.neat;
+
+import de.andre.neat.NodeGene.Type;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntFunction;
+
+/**
+ * Compact immutable encoding of a {@link Genome} in primitive arrays, without an object per gene.
+ * Meant for storing large populations, e.g. genomes that are not bred or evaluated at the moment.
+ * Nodes and connections are available as gene views created on demand, {@link #unpack()} restores
+ * a genome that can be mutated again.
+ */
+public final class PackedGenome {
+
+  private static final Type[] TYPES = Type.values();
+
+  private final int[] nodeIds;
+  private final byte[] nodeTypes;
+
+  /**
+   * sorted by innovation number like {@link Genome#getConnections()}
+   */
+  private final int[] innovations;
+  /**
+   * index of the in node of each connection in {@link #nodeIds}
+   */
+  private final int[] inNodes;
+  /**
+   * index of the out node of each connection in {@link #nodeIds}
+   */
+  private final int[] outNodes;
+  private final float[] weights;
+  /**
+   * bit i is set, if connection i is expressed
+   */
+  private final long[] expressed;
+
+  private PackedGenome(int nodeCount, int connectionCount) {
+    nodeIds = new int[nodeCount];
+    nodeTypes = new byte[nodeCount];
+    innovations = new int[connectionCount];
+    inNodes = new int[connectionCount];
+    outNodes = new int[connectionCount];
+    weights = new float[connectionCount];
+    expressed = new long[(connectionCount + 63) >>> 6];
+  }
+
+  public static PackedGenome pack(Genome genome) {
+    List<NodeGene> nodes = genome.getNodes();
+    List<ConnectionGene> connections = genome.getConnections();
+    PackedGenome packed = new PackedGenome(nodes.size(), connections.size());
+
+    // a genome may contain the same node more than once, connections refer to its first index
+    LongIntHashMap nodeIndex = new LongIntHashMap(nodes.size());
+    int index = 0;
+    for (NodeGene node : nodes) {
+      packed.nodeIds[index] = node.getId().getValue();
+      packed.nodeTypes[index] = (byte) node.getType().ordinal();
+      nodeIndex.putIfAbsent(node.getId().getValue(), index);
+      index++;
+    }
+
+    index = 0;
+    for (ConnectionGene connection : connections) {
+      packed.innovations[index] = connection.getInnovation().getValue();
+      packed.inNodes[index] = nodeIndex.get(connection.getInNode().getId().getValue());
+      packed.outNodes[index] = nodeIndex.get(connection.getOutNode().getId().getValue());
+      packed.weights[index] = connection.getWeight().getWeight();
+      if (connection.getExpressed() == ExpressedState.EXPRESSED) {
+        packed.expressed[index >>> 6] |= 1L << index;
+      }
+      index++;
+    }
+    return packed;
+  }
+
+  /**
+   * Writes the arrays as they are, {@link #readFrom(DataInput)} reads them again.
+   */
+  public void writeTo(DataOutput out) throws IOException {
+    out.writeInt(nodeIds.length);
+    out.writeInt(innovations.length);
+    for (int i = 0; i < nodeIds.length; i++) {
+      out.writeInt(nodeIds[i]);
+    }
+    out.write(nodeTypes);
+    for (int i = 0; i < innovations.length; i++) {
+      out.writeInt(innovations[i]);
+      out.writeInt(inNodes[i]);
+      out.writeInt(outNodes[i]);
+      out.writeFloat(weights[i]);
+    }
+    for (long bits : expressed) {
+      out.writeLong(bits);
+    }
+  }
+
+  public static PackedGenome readFrom(DataInput in) throws IOException {
+    PackedGenome packed = new PackedGenome(in.readInt(), in.readInt());
+    for (int i = 0; i < packed.nodeIds.length; i++) {
+      packed.nodeIds[i] = in.readInt();
+    }
+    in.readFully(packed.nodeTypes);
+    for (int i = 0; i < packed.innovations.length; i++) {
+      packed.innovations[i] = in.readInt();
+      packed.inNodes[i] = in.readInt();
+      packed.outNodes[i] = in.readInt();
+      packed.weights[i] = in.readFloat();
+    }
+    for (int i = 0; i < packed.expressed.length; i++) {
+      packed.expressed[i] = in.readLong();
+    }
+    return packed;
+  }
+
+  /**
+   * @return a genome with the same nodes and connections, the genes are new objects
+   */
+  public Genome unpack() {
+    List<NodeGene> nodes = new ArrayList<>(getNodes());
+    List<ConnectionGene> connections = new ArrayList<>(innovations.length);
+    for (int i = 0; i < innovations.length; i++) {
+      connections.add(ConnectionGene.builder()
+          .inNode(nodes.get(inNodes[i]))
+          .outNode(nodes.get(outNodes[i]))
+          .weight(ConnectionWeight.of(weights[i]))
+          .expressed(isExpressed(i) ? ExpressedState.EXPRESSED : ExpressedState.NOT_EXPRESSED)
+          .innovation(InnovationNumber.of(innovations[i]))
+          .build());
+    }
+    return Genome.init(nodes, connections);
+  }
+
+  public int nodeCount() {
+    return nodeIds.length;
+  }
+
+  public int connectionCount() {
+    return innovations.length;
+  }
+
+  public int nodeId(int node) {
+    return nodeIds[node];
+  }
+
+  public Type nodeType(int node) {
+    return TYPES[nodeTypes[node]];
+  }
+
+  public int innovation(int connection) {
+    return innovations[connection];
+  }
+
+  /**
+   * @return the index of the in node of the connection
+   */
+  public int inNode(int connection) {
+    return inNodes[connection];
+  }
+
+  /**
+   * @return the index of the out node of the connection
+   */
+  public int outNode(int connection) {
+    return outNodes[connection];
+  }
+
+  public float weight(int connection) {
+    return weights[connection];
+  }
+
+  public boolean isExpressed(int connection) {
+    return (expressed[connection >>> 6] & 1L << connection) != 0;
+  }
+
+  /**
+   * @return a new gene for the node at the index
+   */
+  public NodeGene getNode(int node) {
+    return NodeGene.builder()
+        .id(NodeId.of(nodeIds[node]))
+        .type(nodeType(node))
+        .build();
+  }
+
+  /**
+   * @return a new gene for the connection at the index, it refers to new genes for its nodes
+   */
+  public ConnectionGene getConnection(int connection) {
+    return ConnectionGene.builder()
+        .inNode(getNode(inNodes[connection]))
+        .outNode(getNode(outNodes[connection]))
+        .weight(ConnectionWeight.of(weights[connection]))
+        .expressed(isExpressed(connection) ? ExpressedState.EXPRESSED
+            : ExpressedState.NOT_EXPRESSED)
+        .innovation(InnovationNumber.of(innovations[connection]))
+        .build();
+  }
+
+  /**
+   * @return an unmodifiable view of the nodes, creating a gene on each access
+   */
+  public List<NodeGene> getNodes() {
+    return new View<>(nodeIds.length, this::getNode);
+  }
+
+  /**
+   * @return an unmodifiable view of the connections sorted by innovation number, creating a gene
+   * on each access
+   */
+  public List<ConnectionGene> getConnections() {
+    return new View<>(innovations.length, this::getConnection);
+  }
+
+  private static class View<T> extends AbstractList<T> implements RandomAccess {
+
+    private final int size;
+    private final IntFunction<T> genes;
+
+    private View(int size, IntFunction<T> genes) {
+      this.size = size;
+      this.genes = genes;
+    }
+
+    @Override
+    public T get(int index) {
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+      }
+      return genes.apply(index);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+}
@@ -1,7 +1,5 @@
 package de.andre.neat;
 
-import java.util.function.UnaryOperator;
-
 public interface Parameter {
 
   /**
@@ -61,18 +59,48 @@ public interface Parameter {
    */
   float PARAM_NEW_CONNECTION_MUTATION_RATE = 0.05f;
 
+  /**
+   * only add new connections that keep the network free of cycles, connections into input nodes and
+   * out of output nodes
+   */
+  boolean PARAM_FEED_FORWARD_ONLY = true;
+
+  /**
+   * Number of generations a new connection or node is remembered after it has been created the last
+   * time. Creating it again after that assigns a new innovation number, e.g. 0 only matches the
+   * innovations of the same generation as in the original NEAT. {@link Integer#MAX_VALUE} remembers
+   * all innovations, but lets the registries grow during the whole run.
+   */
+  int PARAM_INNOVATION_MAX_AGE = Integer.MAX_VALUE;
+
   /**
    * probability a couples without respect to their species
    */
   float PARAM_INTERSPECIES_MATING_RATE = 0.001f;
 
   /**
-   * The activation function used
+   * Selection of the parents by their fitness relative to the size of their species, see
+   * {@link SelectionStrategy} for the alternatives
    */
-  UnaryOperator<Float> PARAM_ACTIVATION_FUNCTION = x -> (float) (1d / (1d + Math.exp(-4.9d * x)));
+  SelectionStrategy PARAM_SELECTION_STRATEGY = SelectionStrategy.FITNESS_PROPORTIONAL;
+
+  /**
+   * The activation function used, {@link ActivationFunction#STEEPENED_SIGMOID_LOOKUP} and
+   * {@link ActivationFunction#STEEPENED_SIGMOID_RATIONAL} are faster approximations
+   */
+  ActivationFunction PARAM_ACTIVATION_FUNCTION = ActivationFunction.STEEPENED_SIGMOID;
+  /**
+   * Number of synchronous activation steps per input when evaluating a network with cycles
+   */
+  int PARAM_RECURRENT_ACTIVATION_STEPS = 5;
 
   /**
    * Number of generations a species can survive without improvement of their fitness
    */
   int PARAM_MAX_GENERATIONS_WITHOUT_IMPROVEMENT = 15;
+
+  /**
+   * Number of generations between two checkpoints of the run
+   */
+  int PARAM_CHECKPOINT_INTERVAL = 100;
 }
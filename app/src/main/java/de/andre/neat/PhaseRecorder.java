@@ -0,0 +1,72 @@
+package de.andre.neat;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the wall time and the allocated bytes of the phases of a generation. Tasks running on
+ * worker threads add their own allocations via {@link #addWorkerAllocatedBytes(long)}.
+ */
+final class PhaseRecorder {
+
+  private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = allocationMxBean();
+
+  private final long[] nanos = new long[GenerationPhase.values().length];
+  private final long[] allocatedBytes = new long[GenerationPhase.values().length];
+  private final LongAdder workerAllocatedBytes = new LongAdder();
+  private long phaseStartNanos;
+  private long phaseStartBytes;
+
+  private static com.sun.management.ThreadMXBean allocationMxBean() {
+    ThreadMXBean threadMxBean = ManagementFactory.getThreadMXBean();
+    if (threadMxBean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean allocationMxBean =
+          (com.sun.management.ThreadMXBean) threadMxBean;
+      if (allocationMxBean.isThreadAllocatedMemorySupported()
+          && allocationMxBean.isThreadAllocatedMemoryEnabled()) {
+        return allocationMxBean;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the bytes allocated by the current thread so far, -1 if they cannot be measured
+   */
+  static long currentThreadAllocatedBytes() {
+    return THREAD_MX_BEAN == null ? -1 : THREAD_MX_BEAN
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  void start() {
+    workerAllocatedBytes.reset();
+    phaseStartNanos = System.nanoTime();
+    phaseStartBytes = currentThreadAllocatedBytes();
+  }
+
+  void addWorkerAllocatedBytes(long bytes) {
+    workerAllocatedBytes.add(bytes);
+  }
+
+  /**
+   * Ends the phase and starts the next one.
+   */
+  void endPhase(GenerationPhase phase) {
+    long now = System.nanoTime();
+    long bytes = currentThreadAllocatedBytes();
+    nanos[phase.ordinal()] = now - phaseStartNanos;
+    allocatedBytes[phase.ordinal()] = bytes < 0 ? -1
+        : bytes - phaseStartBytes + workerAllocatedBytes.sumThenReset();
+    phaseStartNanos = now;
+    phaseStartBytes = bytes;
+  }
+
+  long[] nanos() {
+    return nanos.clone();
+  }
+
+  long[] allocatedBytes() {
+    return allocatedBytes.clone();
+  }
+}
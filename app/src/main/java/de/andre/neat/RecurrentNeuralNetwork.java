@@ -0,0 +1,89 @@
+package de.andre.neat;
+
+import java.util.Arrays;
+
+/**
+ * Phenotype of a {@link Genome} with arbitrary topology, including cycles. All nodes are activated
+ * synchronously in discrete time steps: each step computes the new value of every node from the
+ * values of the previous step. Values persist between calls of
+ * {@link #compute(ActivationFunction, int)}, so the network keeps its state over a sequence of
+ * inputs until {@link #resetValues()} is called.
+ */
+public class RecurrentNeuralNetwork {
+
+  private final NetworkTopology topology;
+  /**
+   * nodes with a value that has been put into the network keep it during all steps
+   */
+  private boolean[] fixed = new boolean[0];
+  private float[] values = new float[0];
+  private float[] nextValues = new float[0];
+
+  /**
+   * @param topology the topology of the network, call {@link #topologyLoaded()} whenever a new
+   *                 genome has been loaded into it
+   */
+  RecurrentNeuralNetwork(NetworkTopology topology) {
+    this.topology = topology;
+    topologyLoaded();
+  }
+
+  public static RecurrentNeuralNetwork createFromGenome(Genome genome) {
+    return new RecurrentNeuralNetwork(NetworkTopology.compile(genome));
+  }
+
+  void topologyLoaded() {
+    int nodeCount = topology.nodeCount();
+    if (values.length < nodeCount) {
+      fixed = new boolean[nodeCount];
+      values = new float[nodeCount];
+      nextValues = new float[nodeCount];
+    }
+    resetValues();
+  }
+
+  public void putValue(NodeGene node, float value) {
+    int index = topology.indexOf(node);
+    values[index] = value;
+    fixed[index] = true;
+  }
+
+  public float getValue(NodeGene node) {
+    return values[topology.indexOf(node)];
+  }
+
+  /**
+   * @param steps number of synchronous activation steps
+   */
+  public void compute(ActivationFunction activationFunction, int steps) {
+    int[] incomingStart = topology.incomingStart;
+    int[] sources = topology.sources;
+    float[] weights = topology.weights;
+    int nodeCount = topology.nodeCount();
+    for (int step = 0; step < steps; step++) {
+      for (int node = 0; node < nodeCount; node++) {
+        int start = incomingStart[node];
+        int end = incomingStart[node + 1];
+        if (fixed[node] || start == end) {
+          nextValues[node] = values[node];
+          continue;
+        }
+
+        float sumValue = 0f;
+        for (int i = start; i < end; i++) {
+          sumValue += values[sources[i]] * weights[i];
+        }
+        nextValues[node] = activationFunction.apply(sumValue);
+      }
+
+      float[] swap = values;
+      values = nextValues;
+      nextValues = swap;
+    }
+  }
+
+  public void resetValues() {
+    Arrays.fill(values, 0, topology.nodeCount(), 0f);
+    Arrays.fill(fixed, 0, topology.nodeCount(), false);
+  }
+}
@@ -0,0 +1,137 @@
+package de.andre.neat;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Selects parents by their fitness. A strategy prepares a {@link Selection} once per generation
+ * and group of candidates, so selecting a parent does not depend on the number of candidates
+ * (except for {@link #tournament(int)}, which depends on the tournament size).
+ */
+@FunctionalInterface
+public interface SelectionStrategy {
+
+  /**
+   * every candidate has the same probability, the fitness is ignored
+   */
+  SelectionStrategy UNIFORM = (fitnesses, size, r) -> random -> random.nextInt(size);
+  /**
+   * roulette wheel selection, the probability of a candidate is proportional to its fitness.
+   * Sampled in O(1) by an alias table.
+   */
+  SelectionStrategy FITNESS_PROPORTIONAL = SelectionStrategy::fitnessProportional;
+  /**
+   * fills a mating pool with as many candidates as there are candidates by placing evenly spaced
+   * pointers on the roulette wheel, parents are picked uniformly from the pool. Each candidate is
+   * in the pool as often as its expected number of selections, rounded up or down.
+   */
+  SelectionStrategy STOCHASTIC_UNIVERSAL_SAMPLING = SelectionStrategy::stochasticUniversalSampling;
+
+  /**
+   * @param fitnesses the fitness of the candidates, the array must not be changed afterwards
+   * @param size      the number of candidates, the first entries of fitnesses are used
+   * @param r         random numbers needed to prepare the selection
+   * @return the selection of candidate indices, that can be used from several threads
+   */
+  Selection prepare(float[] fitnesses, int size, Random r);
+
+  /**
+   * The best of the given number of uniformly picked candidates.
+   */
+  static SelectionStrategy tournament(int tournamentSize) {
+    if (tournamentSize < 1) {
+      throw new IllegalArgumentException("Tournament size must be at least 1");
+    }
+    return (fitnesses, size, r) -> random -> {
+      int best = random.nextInt(size);
+      for (int i = 1; i < tournamentSize; i++) {
+        int candidate = random.nextInt(size);
+        if (fitnesses[candidate] > fitnesses[best]) {
+          best = candidate;
+        }
+      }
+      return best;
+    };
+  }
+
+  /**
+   * Linear ranking, the probability of a candidate only depends on its rank. The fittest candidate
+   * is selected pressure times as often as the average candidate, the least fit candidate
+   * 2 - pressure times. Candidates with the same fitness share their ranks.
+   *
+   * @param pressure between 1 (uniform) and 2
+   */
+  static SelectionStrategy linearRank(float pressure) {
+    if (!(pressure >= 1f && pressure <= 2f)) {
+      throw new IllegalArgumentException("Selection pressure must be between 1 and 2");
+    }
+    return (fitnesses, size, r) -> {
+      // sort the indices by fitness, the fitness bits are mapped to an int in the same order
+      long[] keys = new long[size];
+      for (int i = 0; i < size; i++) {
+        int bits = Float.floatToIntBits(fitnesses[i]);
+        bits ^= (bits >> 31) & 0x7fffffff;
+        keys[i] = (long) bits << 32 | i;
+      }
+      Arrays.sort(keys);
+
+      double[] weights = new double[size];
+      double slope = size == 1 ? 0d : 2d * (pressure - 1d) / (size - 1);
+      for (int start = 0; start < size; ) {
+        int end = start + 1;
+        while (end < size && (int) (keys[end] >> 32) == (int) (keys[start] >> 32)) {
+          end++;
+        }
+        // the average weight of the ranks start to end - 1
+        double weight = 2d - pressure + slope * (start + end - 1) / 2d;
+        for (int rank = start; rank < end; rank++) {
+          weights[(int) keys[rank]] = weight;
+        }
+        start = end;
+      }
+      return new AliasTable(weights, size);
+    };
+  }
+
+  /**
+   * Negative fitness values are shifted, so the least fit candidate gets a weight of 0.
+   */
+  static Selection fitnessProportional(float[] fitnesses, int size, Random r) {
+    return new AliasTable(AliasTable.nonNegativeWeights(fitnesses, size), size);
+  }
+
+  static Selection stochasticUniversalSampling(float[] fitnesses, int size, Random r) {
+    double[] weights = AliasTable.nonNegativeWeights(fitnesses, size);
+    double sum = 0d;
+    for (int i = 0; i < size; i++) {
+      sum += weights[i];
+    }
+    if (!(sum > 0d)) {
+      return UNIFORM.prepare(fitnesses, size, r);
+    }
+
+    int[] pool = new int[size];
+    double spacing = sum / size;
+    double pointer = r.nextDouble() * spacing;
+    double cumulative = 0d;
+    int candidate = 0;
+    for (int i = 0; i < size; i++) {
+      while (candidate < size - 1 && cumulative + weights[candidate] <= pointer) {
+        cumulative += weights[candidate];
+        candidate++;
+      }
+      pool[i] = candidate;
+      pointer += spacing;
+    }
+    return random -> pool[random.nextInt(size)];
+  }
+
+  /**
+   * Selects the index of a candidate.
+   */
+  @FunctionalInterface
+  interface Selection {
+
+    int select(Random r);
+  }
+}
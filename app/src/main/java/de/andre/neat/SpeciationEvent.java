@@ -0,0 +1,27 @@
+package de.andre.neat;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("de.andre.neat.Speciation")
+@Label("Speciation")
+@Category("NEAT")
+@Description("Placing the genomes of a generation into species")
+class SpeciationEvent extends Event {
+
+  @Label("Generation")
+  int generation;
+
+  @Label("Species")
+  @Description("Number of species after the speciation, including empty species")
+  int speciesCount;
+
+  @Label("New Species")
+  int newSpecies;
+
+  @Label("Compatibility Checks")
+  int compatibilityChecks;
+}
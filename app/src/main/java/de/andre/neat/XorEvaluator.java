@@ -1,23 +1,36 @@
 package de.andre.neat;
 
 import static de.andre.neat.Parameter.PARAM_ACTIVATION_FUNCTION;
+import static de.andre.neat.Parameter.PARAM_RECURRENT_ACTIVATION_STEPS;
 
 import de.andre.neat.NodeGene.Type;
+import de.andre.neat.runtime.Model.WeightEncoding;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
 
 public class XorEvaluator extends Evaluator {
 
-  private static final List<List<Integer>> TESTDATA = List.of(
-      List.of(1, 0, 0, 1),
-      List.of(1, 1, 0, 0),
-      List.of(1, 0, 1, 0),
-      List.of(1, 1, 1, 1)
-  );
+  /**
+   * bias, input1 and input2 of each test sample
+   */
+  private static final float[][] TESTDATA_INPUTS = {
+      {1, 0, 0},
+      {1, 1, 0},
+      {1, 0, 1},
+      {1, 1, 1}
+  };
+  private static final float[] TESTDATA_EXPECTED_OUTPUTS = {1, 0, 0, 1};
   private NodeGene biasNode;
   private NodeGene input1Node;
   private NodeGene input2Node;
   private NodeGene outputNode;
+  private List<NodeGene> inputNodes;
+  private List<NodeGene> outputNodes;
   private InnovationNumber inno1;
   private InnovationNumber inno2;
   private InnovationNumber inno3;
@@ -26,28 +39,19 @@ public class XorEvaluator extends Evaluator {
     super(populationSize);
   }
 
+  protected XorEvaluator(int populationSize, ExecutorService executor) {
+    super(populationSize, executor);
+  }
+
+  protected XorEvaluator(int populationSize, ExecutorService executor, long seed) {
+    super(populationSize, executor, seed);
+  }
+
   @Override
   protected Genome initializeGenome(Random r) {
     if (biasNode == null) {
-      biasNode = NodeGene.builder()
-          .id(NodeId.next())
-          .type(Type.INPUT)
-          .build();
-      input1Node = NodeGene.builder()
-          .id(NodeId.next())
-          .type(Type.INPUT)
-          .build();
-      input2Node = NodeGene.builder()
-          .id(NodeId.next())
-          .type(Type.INPUT)
-          .build();
-      outputNode = NodeGene.builder()
-          .id(NodeId.next())
-          .type(Type.OUTPUT)
-          .build();
-      inno1 = InnovationNumber.next();
-      inno2 = InnovationNumber.next();
-      inno3 = InnovationNumber.next();
+      initializeGenes(nextNodeId(), nextNodeId(), nextNodeId(), nextNodeId(),
+          nextInnovationNumber(), nextInnovationNumber(), nextInnovationNumber());
     }
 
     ConnectionGene con1 = ConnectionGene.builder()
@@ -77,31 +81,94 @@ public class XorEvaluator extends Evaluator {
         List.of(con1, con2, con3));
   }
 
+  private void initializeGenes(NodeId biasId, NodeId input1Id, NodeId input2Id, NodeId outputId,
+      InnovationNumber inno1, InnovationNumber inno2, InnovationNumber inno3) {
+    biasNode = NodeGene.builder()
+        .id(biasId)
+        .type(Type.INPUT)
+        .build();
+    input1Node = NodeGene.builder()
+        .id(input1Id)
+        .type(Type.INPUT)
+        .build();
+    input2Node = NodeGene.builder()
+        .id(input2Id)
+        .type(Type.INPUT)
+        .build();
+    outputNode = NodeGene.builder()
+        .id(outputId)
+        .type(Type.OUTPUT)
+        .build();
+    inputNodes = List.of(biasNode, input1Node, input2Node);
+    outputNodes = List.of(outputNode);
+    this.inno1 = inno1;
+    this.inno2 = inno2;
+    this.inno3 = inno3;
+  }
+
+  @Override
+  protected void writeCheckpoint(DataOutput out) throws IOException {
+    for (NodeGene node : List.of(biasNode, input1Node, input2Node, outputNode)) {
+      out.writeInt(node.getId().getValue());
+    }
+    for (InnovationNumber innovation : List.of(inno1, inno2, inno3)) {
+      out.writeInt(innovation.getValue());
+    }
+  }
+
+  @Override
+  protected void readCheckpoint(DataInput in) throws IOException {
+    initializeGenes(NodeId.of(in.readInt()), NodeId.of(in.readInt()), NodeId.of(in.readInt()),
+        NodeId.of(in.readInt()), InnovationNumber.of(in.readInt()),
+        InnovationNumber.of(in.readInt()), InnovationNumber.of(in.readInt()));
+  }
+
+  /**
+   * Exports the fittest genome for the runtime, its inputs are bias, input1 and input2.
+   *
+   * @throws IllegalArgumentException if the output of the fittest genome depends on a cycle
+   */
+  public void exportFittestGenome(Path file, WeightEncoding weightEncoding) throws IOException {
+    ModelExporter.export(getFittestGenome(), inputNodes, outputNodes, PARAM_ACTIVATION_FUNCTION,
+        weightEncoding, file);
+  }
+
   @Override
   protected Fitness evaluateGenome(Genome genome) {
+    NeuralNetwork neuralNetwork = NetworkArena.forCurrentThread().neuralNetwork(genome);
     try {
-      NeuralNetwork neuralNetwork = NeuralNetwork.createFromGenome(genome);
+      float[][] outputs = neuralNetwork.computeBatch(inputNodes, TESTDATA_INPUTS, outputNodes,
+          PARAM_ACTIVATION_FUNCTION);
       float sumDistance = 0f;
-      for (List<Integer> testdate : TESTDATA) {
-        float bias = testdate.get(0);
-        float input1 = testdate.get(1);
-        float input2 = testdate.get(2);
-        float expectedOutput = testdate.get(3);
-
-        neuralNetwork.resetValues();
-        neuralNetwork.putValue(biasNode, bias);
-        neuralNetwork.putValue(input1Node, input1);
-        neuralNetwork.putValue(input2Node, input2);
-        neuralNetwork.compute(PARAM_ACTIVATION_FUNCTION);
-        float output = neuralNetwork.getValue(outputNode);
-
-        sumDistance += Math.abs(expectedOutput - output);
+      for (int i = 0; i < TESTDATA_EXPECTED_OUTPUTS.length; i++) {
+        sumDistance += Math.abs(TESTDATA_EXPECTED_OUTPUTS[i] - outputs[i][0]);
       }
 
-      return Fitness.of(TESTDATA.size() - sumDistance);
+      return Fitness.of(TESTDATA_EXPECTED_OUTPUTS.length - sumDistance);
     } catch (ValueNotPresentException ex) {
+      if (neuralNetwork.dependsOnCycle(outputNode)) {
+        // the output depends on a cycle, so evaluate it step by step
+        return evaluateRecurrentGenome(genome);
+      }
       // cannot evaluate the network, so apply the lowest possible fitness function
       return Fitness.NOT_AVAILABLE;
     }
   }
+
+  private Fitness evaluateRecurrentGenome(Genome genome) {
+    RecurrentNeuralNetwork neuralNetwork = NetworkArena.forCurrentThread()
+        .recurrentNeuralNetwork(genome);
+    float sumDistance = 0f;
+    for (int i = 0; i < TESTDATA_EXPECTED_OUTPUTS.length; i++) {
+      // the samples are independent of each other, so do not keep the state
+      neuralNetwork.resetValues();
+      for (int column = 0; column < inputNodes.size(); column++) {
+        neuralNetwork.putValue(inputNodes.get(column), TESTDATA_INPUTS[i][column]);
+      }
+      neuralNetwork.compute(PARAM_ACTIVATION_FUNCTION, PARAM_RECURRENT_ACTIVATION_STEPS);
+      sumDistance += Math.abs(TESTDATA_EXPECTED_OUTPUTS[i] - neuralNetwork.getValue(outputNode));
+    }
+
+    return Fitness.of(TESTDATA_EXPECTED_OUTPUTS.length - sumDistance);
+  }
 }
@@ -0,0 +1,44 @@
+package de.andre.neat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.jupiter.api.Test;
+
+class ActivationFunctionTest {
+
+  @Test
+  void shouldComputeBuiltInFunctions() {
+    assertThat(ActivationFunction.STEEPENED_SIGMOID.apply(0f)).isEqualTo(0.5f);
+    assertThat(ActivationFunction.STEEPENED_SIGMOID.apply(1f)).isCloseTo(0.99261f, within(1e-5f));
+    assertThat(ActivationFunction.TANH.apply(0.5f)).isCloseTo(0.46212f, within(1e-5f));
+    assertThat(ActivationFunction.RELU.apply(-2f)).isEqualTo(0f);
+    assertThat(ActivationFunction.RELU.apply(2f)).isEqualTo(2f);
+  }
+
+  @Test
+  void shouldApproximateSteepenedSigmoidWithinDocumentedBounds() {
+    float maxLookupError = 0f;
+    float maxRationalError = 0f;
+    for (float x = -10f; x <= 10f; x += 0.0001f) {
+      float exact = ActivationFunction.STEEPENED_SIGMOID.apply(x);
+      maxLookupError = Math.max(maxLookupError,
+          Math.abs(ActivationFunction.STEEPENED_SIGMOID_LOOKUP.apply(x) - exact));
+      maxRationalError = Math.max(maxRationalError,
+          Math.abs(ActivationFunction.STEEPENED_SIGMOID_RATIONAL.apply(x) - exact));
+    }
+
+    assertThat(maxLookupError).isLessThan(1.1e-5f);
+    assertThat(maxRationalError).isLessThan(5e-5f);
+  }
+
+  @Test
+  void shouldSaturateOutsideOfLookupTable() {
+    ActivationFunction lookup = new LookupTableActivationFunction(ActivationFunction.TANH, -1f, 1f,
+        16);
+
+    assertThat(lookup.apply(-5f)).isEqualTo(ActivationFunction.TANH.apply(-1f));
+    assertThat(lookup.apply(5f)).isEqualTo(ActivationFunction.TANH.apply(1f));
+    assertThat(lookup.apply(1f)).isEqualTo(ActivationFunction.TANH.apply(1f));
+  }
+}
@@ -0,0 +1,31 @@
+package de.andre.neat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class AgingRegistryTest {
+
+  @Test
+  void shouldFindRemainingKeys_WhenOthersAreEvicted() {
+    // given: more keys than the initial table holds
+    AgingRegistry<Long> registry = new AgingRegistry<>(1);
+    for (long key = 0; key < 1000; key++) {
+      assertThat(registry.get(key << 32 | key, k -> k)).isEqualTo(key << 32 | key);
+    }
+
+    // when: only the even keys are used within the max age
+    registry.nextGeneration();
+    for (long key = 0; key < 1000; key += 2) {
+      registry.get(key << 32 | key, k -> -1L);
+    }
+    registry.nextGeneration();
+
+    // then: the odd keys are evicted and the even keys are still found
+    assertThat(registry.size()).isEqualTo(500);
+    for (long key = 0; key < 1000; key += 2) {
+      assertThat(registry.get(key << 32 | key, k -> -1L)).isEqualTo(key << 32 | key);
+    }
+    assertThat(registry.get(1L << 32 | 1, k -> -1L)).isEqualTo(-1L);
+  }
+}
@@ -0,0 +1,59 @@
+package de.andre.neat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class ChunkedListTest {
+
+  @Test
+  void shouldBehaveLikeArrayList() {
+    Random r = new Random(42);
+    List<Integer> expected = new ArrayList<>();
+    ChunkedList<Integer> list = ChunkedList.empty();
+    for (int i = 0; i < 2000; i++) {
+      // when: inserting or replacing at random positions
+      ChunkedList<Integer> previous = list;
+      List<Integer> previousExpected = new ArrayList<>(expected);
+      if (expected.isEmpty() || r.nextInt(3) > 0) {
+        int index = r.nextBoolean() ? expected.size() : r.nextInt(expected.size() + 1);
+        expected.add(index, i);
+        list = list.insert(index, i);
+      } else {
+        int index = r.nextInt(expected.size());
+        expected.set(index, i);
+        list = list.replace(index, i);
+      }
+
+      // then: the new list should have the changes and the previous list should be unchanged
+      assertThat(list).containsExactlyElementsOf(expected);
+      assertThat(previous).containsExactlyElementsOf(previousExpected);
+    }
+    for (int i = 0; i < expected.size(); i++) {
+      assertThat(list.get(i)).isEqualTo(expected.get(i));
+    }
+  }
+
+  @Test
+  void shouldBuildAndCopyLists() {
+    // given: a list with more elements than a chunk
+    List<Integer> elements = new ArrayList<>();
+    for (int i = 0; i < 3 * ChunkedList.MAX_CHUNK_SIZE + 5; i++) {
+      elements.add(i);
+    }
+
+    // when: copying the list
+    ChunkedList<Integer> list = ChunkedList.copyOf(elements);
+
+    // then: it should contain the elements and not be modifiable
+    assertThat(list).isEqualTo(elements);
+    assertThat(ChunkedList.copyOf(list)).isSameAs(list);
+    assertThat(ChunkedList.copyOf(List.of())).isEmpty();
+    assertThrows(UnsupportedOperationException.class, () -> list.add(1));
+    assertThrows(IndexOutOfBoundsException.class, () -> list.get(list.size()));
+  }
+}
@@ -0,0 +1,95 @@
+package de.andre.neat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import de.andre.neat.NodeGene.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class CompatibiltyCalculatorTest {
+
+  @Test
+  void shouldCountExcessAndDisjointConnectionsAndAverageWeightDifferences() {
+    // given: two genomes with matching (1, 2), disjoint (3, 4) and excess (5, 6) connections
+    NodeGene node1 = NodeGene.builder().id(NodeId.of(1)).type(Type.INPUT).build();
+    NodeGene node2 = NodeGene.builder().id(NodeId.of(2)).type(Type.INPUT).build();
+    NodeGene node3 = NodeGene.builder().id(NodeId.of(3)).type(Type.OUTPUT).build();
+    NodeGene node4 = NodeGene.builder().id(NodeId.of(4)).type(Type.HIDDEN).build();
+    Genome genome1 = Genome.init(List.of(node1, node2, node3, node4), List.of(
+        connection(node1, node3, 1, 1f),
+        connection(node2, node3, 2, 1f),
+        connection(node1, node4, 4, 1f),
+        connection(node4, node3, 5, 1f),
+        connection(node2, node4, 6, 1f)));
+    Genome genome2 = Genome.init(List.of(node1, node2, node3), List.of(
+        connection(node1, node3, 1, 0f),
+        connection(node2, node3, 2, 3f),
+        connection(node1, node2, 3, 1f)));
+
+    // when: calculating the compatibility in both directions
+    float compatibility = new CompatibiltyCalculator().calcCompatibility(genome1, genome2);
+    float reverseCompatibility = new CompatibiltyCalculator().calcCompatibility(genome2, genome1);
+
+    // then: 2 excess / 4 nodes + 2 disjoint / 4 nodes + 0.4 * (1 + 2) / 2 matching
+    assertThat(compatibility).isCloseTo(1.6f, within(1e-6f));
+    assertThat(reverseCompatibility).isCloseTo(1.6f, within(1e-6f));
+  }
+
+  @Test
+  void shouldDecideCompatibilityLikeTheDistance() {
+    // given: related genomes with a random history of mutations
+    Random r = new Random(42);
+    NodeFactory nodeFactory = new NodeFactory();
+    InnovationNumberFactory innovationNumberFactory = new InnovationNumberFactory();
+    List<Genome> genomes = new ArrayList<>();
+    genomes.add(GenomeTestData.randomFeedForward(r, 3, 1, 3, 10));
+    genomes.add(GenomeTestData.randomFeedForward(r, 3, 1, 3, 10));
+    nodeFactory.continueAfter(NodeGeneTestData.counter.get());
+    innovationNumberFactory.continueAfter(ConnectionGeneTestData.counter.get());
+    while (genomes.size() < 60) {
+      Genome genome = genomes.get(r.nextInt(genomes.size()));
+      switch (r.nextInt(4)) {
+        case 0:
+          genome = genome.weightMutation(r);
+          break;
+        case 1:
+          genome = genome.addNodeMutation(r, nodeFactory, innovationNumberFactory);
+          break;
+        case 2:
+          genome = genome.addConnectionMutation(r, innovationNumberFactory);
+          break;
+        default:
+          genome = Genome.crossover(genome, genomes.get(r.nextInt(genomes.size())), true, r);
+      }
+      genomes.add(genome);
+    }
+
+    CompatibiltyCalculator calculator = new CompatibiltyCalculator();
+    for (Genome genome1 : genomes) {
+      for (Genome genome2 : genomes) {
+        float distance = calculator.calcCompatibility(genome1, genome2);
+        for (float threshold : new float[]{0.5f, 1f, 3f, 10f}) {
+          // when: checking the compatibility with a threshold
+          boolean compatible = calculator.isCompatible(genome1, genome2, threshold);
+
+          // then: it should be the same as comparing the distance
+          assertThat(compatible).isEqualTo(distance < threshold);
+        }
+      }
+    }
+  }
+
+  private static ConnectionGene connection(NodeGene inNode, NodeGene outNode, int innovation,
+      float weight) {
+    return ConnectionGene.builder()
+        .inNode(inNode)
+        .outNode(outNode)
+        .weight(ConnectionWeight.of(weight))
+        .expressed(ExpressedState.EXPRESSED)
+        .innovation(InnovationNumber.of(innovation))
+        .build();
+  }
+}
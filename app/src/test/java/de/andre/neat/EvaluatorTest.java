@@ -0,0 +1,529 @@
+package de.andre.neat;
+
+import static de.andre.neat.ConnectionGeneTestData.connection;
+import static de.andre.neat.NodeGeneTestData.input;
+import static de.andre.neat.NodeGeneTestData.output;
+import static de.andre.neat.Parameter.PARAM_POPULATION_SIZE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EvaluatorTest {
+
+  private static final NodeGene INPUT = input();
+  private static final NodeGene OUTPUT = output();
+  private static final InnovationNumber INNOVATION = connection(INPUT, OUTPUT).build()
+      .getInnovation();
+
+  @Test
+  void shouldBreedSameGenerations_IndependentOfExecutor() {
+    // given: two evaluators with the same seed, one without and one with an executor
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      // when: evolving some generations
+      List<String> sequential = evolve(null, 42L);
+      List<String> parallel = evolve(pool, 42L);
+
+      // then: each generation should be identical
+      assertThat(parallel).isEqualTo(sequential);
+      assertThat(evolve(pool, 43L)).isNotEqualTo(sequential);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void shouldReportEachGeneration_WhenListenerIsAttached() {
+    // given
+    XorEvaluator evaluator = new XorEvaluator(PARAM_POPULATION_SIZE, null, 42L);
+    List<GenerationStatistics> statistics = new ArrayList<>();
+    GenerationListener listener = statistics::add;
+    evaluator.addGenerationListener(listener);
+
+    // when
+    for (int i = 0; i < 5; i++) {
+      evaluator.evaluateNextGeneration();
+    }
+
+    // then
+    assertThat(statistics).extracting(GenerationStatistics::getGeneration)
+        .containsExactly(1, 2, 3, 4, 5);
+    GenerationStatistics last = statistics.get(4);
+    assertThat(last.getPopulationSize()).isEqualTo(PARAM_POPULATION_SIZE);
+    assertThat(last.getNumberOfSpecies()).isEqualTo(evaluator.getNumberOfSpecies());
+    assertThat(last.getHighestFitness()).isEqualTo(evaluator.getHighestFitness());
+    assertThat(last.getFittestGenome()).isSameAs(evaluator.getFittestGenome());
+    assertThat(last.getCompatibilityChecks()).isGreaterThanOrEqualTo(PARAM_POPULATION_SIZE);
+    assertThat(last.getNotAvailableGenomes()).isZero();
+    for (GenerationPhase phase : GenerationPhase.values()) {
+      assertThat(last.getNanos(phase)).isNotNegative();
+    }
+    assertThat(last.getTotalNanos()).isPositive();
+    assertThat(last.getAllocatedBytes(GenerationPhase.EVALUATION)).isPositive();
+
+    // when: the listener has been removed
+    evaluator.removeGenerationListener(listener);
+    evaluator.evaluateNextGeneration();
+
+    // then: it is not notified anymore
+    assertThat(statistics).hasSize(5);
+  }
+
+  @Test
+  void shouldBreedSameGenerations_IndependentOfListener() {
+    // when
+    List<String> withoutListener = evolve(null, 42L);
+    List<String> withListener = evolve(null, 42L, statistics -> {
+    });
+
+    // then
+    assertThat(withListener).isEqualTo(withoutListener);
+  }
+
+  @Test
+  void shouldBreedSameGenerations_WhenResumedFromCheckpoint(@TempDir Path directory)
+      throws IOException {
+    // given: a run that saves a checkpoint every 10 generations
+    Path checkpoint = directory.resolve("checkpoint.bin");
+    XorEvaluator evaluator = new XorEvaluator(PARAM_POPULATION_SIZE, null, 42L);
+    evaluator.setCheckpoints(checkpoint, 10);
+    evolve(evaluator, 10);
+    Path tenthGeneration = Files.copy(checkpoint, directory.resolve("generation10.bin"));
+    List<String> uninterrupted = evolve(evaluator, 20);
+
+    // when: another evaluator resumes the run after the 10th generation
+    XorEvaluator resumed = new XorEvaluator(PARAM_POPULATION_SIZE, null, 43L);
+    resumed.restoreCheckpoint(tenthGeneration);
+
+    // then: it continues after the 10th generation and breeds the same generations
+    assertThat(resumed.getEvaluatedGenerations()).isEqualTo(10);
+    assertThat(evolve(resumed, 20)).isEqualTo(uninterrupted);
+    assertThat(directory.toFile().list()).containsExactlyInAnyOrder("checkpoint.bin",
+        "generation10.bin");
+  }
+
+  @Test
+  void shouldRejectCorruptedCheckpoint(@TempDir Path directory) throws IOException {
+    // given
+    Path checkpoint = directory.resolve("checkpoint.bin");
+    XorEvaluator evaluator = new XorEvaluator(PARAM_POPULATION_SIZE, null, 42L);
+    evolve(evaluator, 3);
+    evaluator.saveCheckpoint(checkpoint);
+
+    // when: a byte in the middle has been changed
+    byte[] bytes = Files.readAllBytes(checkpoint);
+    bytes[bytes.length / 2] ^= 1;
+    Files.write(checkpoint, bytes);
+
+    // then
+    assertThrows(IOException.class, () -> new XorEvaluator(PARAM_POPULATION_SIZE, null, 42L)
+        .restoreCheckpoint(checkpoint));
+  }
+
+  @Test
+  void shouldSwapPopulationArrays_WhenChangingGeneration() {
+    // given: more genomes than the population has been created for
+    WeightEvaluator evaluator = new WeightEvaluator(2);
+    Genome[] genomes = {genome(0.1f), genome(0.2f), genome(0.3f)};
+    Evaluator.Population population = evaluator.getPopulation();
+    for (int i = 0; i < genomes.length; i++) {
+      population.addToNextGeneration(genomes[i], null, i, -1);
+    }
+
+    // when
+    population.nextGeneration();
+
+    // then: the arrays have grown
+    assertThat(population.size()).isEqualTo(3);
+    for (int i = 0; i < genomes.length; i++) {
+      assertThat(population.genome(i)).isSameAs(genomes[i]);
+      assertThat(population.firstParent(i)).isEqualTo(i);
+      assertThat(population.secondParent(i)).isEqualTo(-1);
+      assertThat(population.speciesId(i)).isEqualTo(-1);
+    }
+
+    // when: the generation is evaluated and a smaller generation follows
+    List<GenerationStatistics> statistics = new ArrayList<>();
+    evaluator.addGenerationListener(statistics::add);
+    evaluator.evaluateNextGeneration();
+
+    // then: every genome got a fitness and the state of the slots is reset
+    GenerationStatistics evaluated = statistics.get(0);
+    assertThat(evaluated.getPopulationSize()).isEqualTo(3);
+    for (int i = 0; i < genomes.length; i++) {
+      assertThat(evaluated.getFitness(i)).isEqualTo(weight(genomes[i]));
+    }
+    assertThat(population.size()).isEqualTo(2);
+    for (int i = 0; i < population.size(); i++) {
+      assertThat(population.speciesId(i)).isEqualTo(-1);
+      assertThat(population.isChampion(i)).isFalse();
+    }
+  }
+
+  @Test
+  void shouldCarryChampionOfSpecies_IntoNextGeneration() {
+    // given: a single species
+    WeightEvaluator evaluator = new WeightEvaluator(10);
+    List<GenerationStatistics> statistics = new ArrayList<>();
+    evaluator.addGenerationListener(statistics::add);
+
+    // when
+    evaluator.evaluateNextGeneration();
+
+    // then: the fittest genome is the first genome of the next generation
+    assertThat(evaluator.getNumberOfSpecies()).isEqualTo(1);
+    GenerationStatistics evaluated = statistics.get(0);
+    int fittestSlot = fittestSlot(evaluated);
+    Evaluator.Population population = evaluator.getPopulation();
+    assertThat(population.genome(0)).isSameAs(evaluated.getGenome(fittestSlot))
+        .isSameAs(evaluator.getFittestGenome());
+    assertThat(population.firstParent(0)).isEqualTo(fittestSlot);
+    assertThat(population.secondParent(0)).isEqualTo(-1);
+    assertThat(population.parentSpecie(0)).isSameAs(evaluator.getSpecies().get(0));
+  }
+
+  @Test
+  void shouldResetSpecies_AfterEachGeneration() {
+    // given
+    WeightEvaluator evaluator = new WeightEvaluator(10);
+    List<GenerationStatistics> statistics = new ArrayList<>();
+    evaluator.addGenerationListener(statistics::add);
+
+    // when
+    evaluator.evaluateNextGeneration();
+
+    // then: the members and the fittest slot belonged to the evaluated generation only
+    for (Evaluator.Species specie : evaluator.getSpecies()) {
+      assertThat(specie.size()).isZero();
+      assertThat(specie.getBestSlot()).isEqualTo(-1);
+    }
+
+    // when
+    evaluator.evaluateNextGeneration();
+
+    // then: the champion is the fittest genome of the second generation
+    assertThat(evaluator.getNumberOfSpecies()).isEqualTo(1);
+    GenerationStatistics evaluated = statistics.get(1);
+    int fittestSlot = fittestSlot(evaluated);
+    assertThat(evaluator.getPopulation().genome(0)).isSameAs(evaluated.getGenome(fittestSlot));
+    assertThat(evaluator.getPopulation().firstParent(0)).isEqualTo(fittestSlot);
+  }
+
+  @Test
+  void shouldCountMascot_AsMemberOfItsSpecies() {
+    // given
+    WeightEvaluator evaluator = new WeightEvaluator(3);
+    Genome mascot = genome(0.5f);
+    startGeneration(evaluator, mascot, genome(0.6f), genome(0.7f));
+
+    // when
+    evaluator.speciate();
+
+    // then: the genome that created the species is one of its members
+    assertThat(evaluator.getSpecies()).hasSize(1);
+    Evaluator.Species specie = evaluator.getSpecies().get(0);
+    assertThat(specie.getMascot()).isSameAs(mascot);
+    assertThat(specie.getMembers()).containsExactly(0, 1, 2);
+
+    // when: the mascot is a champion in the next generation
+    specie.reset();
+    Evaluator.Population population = evaluator.getPopulation();
+    population.addToNextGeneration(genome(0.4f), specie, 1, 2);
+    population.addToNextGeneration(mascot, specie, 0, -1);
+    population.nextGeneration();
+    evaluator.speciate();
+
+    // then: it is counted again
+    assertThat(evaluator.getSpecies()).hasSize(1);
+    assertThat(specie.getMembers()).containsExactly(0, 1);
+  }
+
+  @Test
+  void shouldGiveEachOccurrenceOfGenome_ItsOwnSlot() {
+    // given: a generation that contains a genome three times
+    Genome repeated = genome(0.5f);
+    WeightEvaluator evaluator = new WeightEvaluator(5);
+    startGeneration(evaluator, repeated, genome(0.2f), repeated, repeated, genome(0.3f));
+
+    // when
+    evaluator.speciate();
+
+    // then: every occurrence is a member
+    assertThat(evaluator.getSpecies()).hasSize(1);
+    assertThat(evaluator.getSpecies().get(0).getMembers()).containsExactly(0, 1, 2, 3, 4);
+    for (int slot = 0; slot < 5; slot++) {
+      assertThat(evaluator.getPopulation().speciesId(slot)).isZero();
+    }
+
+    // when: the generation is evaluated
+    WeightEvaluator evaluated = new WeightEvaluator(5);
+    startGeneration(evaluated, repeated, genome(0.2f), repeated, repeated, genome(0.3f));
+    List<GenerationStatistics> statistics = new ArrayList<>();
+    evaluated.addGenerationListener(statistics::add);
+    evaluated.evaluateNextGeneration();
+
+    // then: every occurrence has its own fitness
+    GenerationStatistics generation = statistics.get(0);
+    assertThat(generation.getPopulationSize()).isEqualTo(5);
+    for (int slot : new int[]{0, 2, 3}) {
+      assertThat(generation.getGenome(slot)).isSameAs(repeated);
+      assertThat(generation.getFitness(slot)).isEqualTo(0.5f);
+    }
+    assertThat(generation.getFitness(1)).isEqualTo(0.2f);
+  }
+
+  @Test
+  void shouldKeepParentSpecies_ConsistentWithSpeciesOfParent() {
+    // given
+    SpeciesRecordingEvaluator evaluator = new SpeciesRecordingEvaluator();
+    int maxSpecies = 0;
+
+    for (int g = 0; g < 20; g++) {
+      // when
+      evaluator.evaluatedSpeciesIds = null;
+      evaluator.evaluateNextGeneration();
+
+      // then: the parent species of each genome is the species of its first parent
+      Evaluator.Population population = evaluator.getPopulation();
+      for (int i = 0; i < population.size(); i++) {
+        Evaluator.Species expected = evaluator.evaluatedSpecies
+            .get(evaluator.evaluatedSpeciesIds[population.firstParent(i)]);
+        assertThat(population.parentSpecie(i)).isSameAs(expected);
+        assertThat(evaluator.getSpecies()).contains(expected);
+        assertThat(population.speciesId(i)).isEqualTo(-1);
+      }
+      maxSpecies = Math.max(maxSpecies, evaluator.getNumberOfSpecies());
+    }
+    assertThat(maxSpecies).isGreaterThan(1);
+  }
+
+  @Test
+  void shouldPlaceOffspring_InSpeciesOfParent() {
+    // given: two species, that are both compatible with the offspring
+    WeightEvaluator evaluator = new WeightEvaluator(2);
+    startGeneration(evaluator, genome(0f), genome(8f));
+    evaluator.speciate();
+    List<Evaluator.Species> species = evaluator.getSpecies();
+    assertThat(species).hasSize(2);
+    species.forEach(Evaluator.Species::reset);
+
+    // when: one offspring comes from the second species, the other one is unknown
+    Evaluator.Population population = evaluator.getPopulation();
+    population.addToNextGeneration(genome(4f), species.get(1), 1, -1);
+    population.addToNextGeneration(genome(4f), null, -1, -1);
+    population.nextGeneration();
+    evaluator.speciate();
+
+    // then: the species of the parent is checked first
+    assertThat(species).hasSize(2);
+    assertThat(population.speciesId(0)).isEqualTo(1);
+    assertThat(population.compatibilityChecks(0)).isEqualTo(1);
+    assertThat(population.speciesId(1)).isEqualTo(0);
+  }
+
+  @Test
+  void shouldTryNeighborsOfParentSpecies_OrderedByDistance() {
+    // given: four incompatible species
+    WeightEvaluator evaluator = new WeightEvaluator(4);
+    startGeneration(evaluator, genome(0f), genome(20f), genome(-10f), genome(8f));
+
+    // when
+    evaluator.speciate();
+
+    // then: the neighbors of each species are all other species, the closest first
+    List<Evaluator.Species> species = evaluator.getSpecies();
+    assertThat(species).hasSize(4);
+    for (Evaluator.Species specie : species) {
+      assertThat(specie.getNeighbors()).extracting(neighbor -> neighbor.getSpecie())
+          .containsExactlyInAnyOrderElementsOf(species.stream()
+              .filter(other -> other != specie).collect(Collectors.toList()));
+      assertThat(specie.getNeighbors()).extracting(neighbor -> neighbor.getDistance())
+          .isSorted();
+    }
+    assertThat(species.get(1).getNeighbors())
+        .extracting(neighbor -> weight(neighbor.getSpecie().getMascot()))
+        .containsExactly(8f, 0f, -10f);
+
+    // when: an offspring does not fit into the species of its parent anymore
+    species.forEach(Evaluator.Species::reset);
+    Evaluator.Population population = evaluator.getPopulation();
+    population.addToNextGeneration(genome(4f), species.get(1), 1, -1);
+    population.nextGeneration();
+    evaluator.speciate();
+
+    // then: it joins the closest compatible neighbor, not the first compatible species
+    assertThat(population.speciesId(0)).isEqualTo(3);
+    assertThat(population.compatibilityChecks(0)).isEqualTo(2);
+  }
+
+  @Test
+  void shouldMergeNewSpecies_InOrderOfGenomes() {
+    // given: genomes without a species, the third one is compatible with both previous ones
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      for (ExecutorService executor : Arrays.asList(null, pool)) {
+        WeightEvaluator evaluator = new WeightEvaluator(5, executor);
+        startGeneration(evaluator, genome(0f), genome(8f), genome(4f), genome(0.5f),
+            genome(8.5f));
+
+        // when
+        evaluator.speciate();
+
+        // then: genomes join the first new species they are compatible with
+        assertThat(evaluator.getSpecies()).hasSize(2)
+            .extracting(specie -> weight(specie.getMascot())).containsExactly(0f, 8f);
+        assertThat(speciesIds(evaluator)).containsExactly(0, 1, 0, 0, 1);
+        assertThat(evaluator.getSpecies().get(0).getMembers()).containsExactly(0, 2, 3);
+        assertThat(evaluator.getSpecies().get(1).getMembers()).containsExactly(1, 4);
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private static List<String> evolve(ExecutorService executor, long seed,
+      GenerationListener... listeners) {
+    XorEvaluator evaluator = new XorEvaluator(PARAM_POPULATION_SIZE, executor, seed);
+    for (GenerationListener listener : listeners) {
+      evaluator.addGenerationListener(listener);
+    }
+    return evolve(evaluator, 30);
+  }
+
+  private static List<String> evolve(Evaluator evaluator, int generationCount) {
+    List<String> generations = new ArrayList<>();
+    for (int i = 0; i < generationCount; i++) {
+      evaluator.evaluateNextGeneration();
+      StringBuilder generation = new StringBuilder()
+          .append(Float.floatToIntBits(evaluator.getHighestFitness().getValue()))
+          .append(' ').append(evaluator.getNumberOfSpecies())
+          .append(' ').append(evaluator.getFittestGenome().nodeCount());
+      for (NodeGene node : evaluator.getFittestGenome().getNodes()) {
+        generation.append(' ').append(node.getId().getValue());
+      }
+      for (ConnectionGene connection : evaluator.getFittestGenome().getConnections()) {
+        generation.append(' ').append(connection.getInnovation().getValue())
+            .append(':').append(connection.getInNode().getId().getValue())
+            .append('>').append(connection.getOutNode().getId().getValue())
+            .append(' ').append(Float.floatToIntBits(connection.getWeight().getWeight()))
+            .append(connection.getExpressed());
+      }
+      generations.add(generation.toString());
+    }
+    return generations;
+  }
+
+  /**
+   * @return a genome with a single connection, all of them are compatible unless their weights differ
+   * by at least 7.5
+   */
+  private static Genome genome(float weight) {
+    ConnectionGene connection = connection(INPUT, OUTPUT).innovation(INNOVATION)
+        .weight(ConnectionWeight.of(weight)).build();
+    return Genome.init(List.of(INPUT, OUTPUT), List.of(connection));
+  }
+
+  private static float weight(Genome genome) {
+    return genome.getConnections().get(0).getWeight().getWeight();
+  }
+
+  /**
+   * Replaces the current generation of the evaluator by the genomes, without parents.
+   */
+  private static void startGeneration(Evaluator evaluator, Genome... genomes) {
+    Evaluator.Population population = evaluator.getPopulation();
+    for (Genome genome : genomes) {
+      population.addToNextGeneration(genome, null, -1, -1);
+    }
+    population.nextGeneration();
+  }
+
+  /**
+   * @return the species ids of the current generation by slot
+   */
+  private static int[] speciesIds(Evaluator evaluator) {
+    Evaluator.Population population = evaluator.getPopulation();
+    int[] speciesIds = new int[population.size()];
+    for (int slot = 0; slot < speciesIds.length; slot++) {
+      speciesIds[slot] = population.speciesId(slot);
+    }
+    return speciesIds;
+  }
+
+  /**
+   * @return the first slot with the highest fitness
+   */
+  private static int fittestSlot(GenerationStatistics statistics) {
+    int fittestSlot = 0;
+    for (int slot = 1; slot < statistics.getPopulationSize(); slot++) {
+      if (statistics.getFitness(slot) > statistics.getFitness(fittestSlot)) {
+        fittestSlot = slot;
+      }
+    }
+    return fittestSlot;
+  }
+
+  /**
+   * Rates the genomes by the absolute weight of their first connection.
+   */
+  private static class WeightEvaluator extends Evaluator {
+
+    private WeightEvaluator(int populationSize) {
+      this(populationSize, null);
+    }
+
+    private WeightEvaluator(int populationSize, ExecutorService executor) {
+      super(populationSize, executor, 42L);
+    }
+
+    @Override
+    protected Genome initializeGenome(Random r) {
+      return genome(r.nextFloat());
+    }
+
+    @Override
+    protected Fitness evaluateGenome(Genome genome) {
+      return Fitness.of(Math.abs(weight(genome)));
+    }
+  }
+
+  /**
+   * Starts with two species and remembers the species of the evaluated generation, before the
+   * generation change resets them.
+   */
+  private static class SpeciesRecordingEvaluator extends WeightEvaluator {
+
+    private int[] evaluatedSpeciesIds;
+    private List<Evaluator.Species> evaluatedSpecies;
+
+    private SpeciesRecordingEvaluator() {
+      super(50);
+    }
+
+    @Override
+    protected Genome initializeGenome(Random r) {
+      return genome(r.nextBoolean() ? r.nextFloat() : 10f + r.nextFloat());
+    }
+
+    @Override
+    protected Fitness evaluateGenome(Genome genome) {
+      if (evaluatedSpeciesIds == null) {
+        evaluatedSpeciesIds = speciesIds(this);
+        evaluatedSpecies = new ArrayList<>(getSpecies());
+      }
+      return super.evaluateGenome(genome);
+    }
+  }
+}
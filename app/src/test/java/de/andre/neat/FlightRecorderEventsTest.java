@@ -0,0 +1,70 @@
+package de.andre.neat;
+
+import static de.andre.neat.Parameter.PARAM_POPULATION_SIZE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+class FlightRecorderEventsTest {
+
+  @Test
+  void shouldRecordGenerationSpeciationAndEvaluationEvents() throws IOException {
+    // given: a recording of all events of the evaluator
+    XorEvaluator evaluator = new XorEvaluator(PARAM_POPULATION_SIZE, null, 42L);
+    Path file = Files.createTempFile("neat", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable(GenerationEvent.class);
+      recording.enable(SpeciationEvent.class);
+      recording.enable(GenomeEvaluationEvent.class).withThreshold(Duration.ZERO);
+      recording.start();
+
+      // when
+      for (int i = 0; i < 3; i++) {
+        evaluator.evaluateNextGeneration();
+      }
+      recording.stop();
+      recording.dump(file);
+
+      // then
+      List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+      List<RecordedEvent> generations = ofType(events, "de.andre.neat.Generation");
+      assertThat(generations).extracting(event -> event.getInt("generation"))
+          .containsExactly(1, 2, 3);
+      assertThat(generations.get(2).getInt("speciesCount"))
+          .isEqualTo(evaluator.getNumberOfSpecies());
+      assertThat(generations.get(2).getFloat("highestFitness"))
+          .isEqualTo(evaluator.getHighestFitness().getValue());
+
+      List<RecordedEvent> speciations = ofType(events, "de.andre.neat.Speciation");
+      assertThat(speciations).hasSize(3);
+      assertThat(speciations.get(0).getInt("newSpecies")).isPositive();
+      assertThat(speciations.get(0).getInt("compatibilityChecks")).isPositive();
+
+      List<RecordedEvent> evaluations = ofType(events, "de.andre.neat.GenomeEvaluation");
+      assertThat(evaluations).hasSize(3 * PARAM_POPULATION_SIZE);
+      assertThat(evaluations.get(0).getInt("connectionCount")).isEqualTo(3);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * @return the events of the type ordered by their start, the file is not ordered
+   */
+  private static List<RecordedEvent> ofType(List<RecordedEvent> events, String name) {
+    return events.stream()
+        .filter(event -> event.getEventType().getName().equals(name))
+        .sorted(Comparator.comparing(RecordedEvent::getStartTime))
+        .collect(Collectors.toList());
+  }
+}
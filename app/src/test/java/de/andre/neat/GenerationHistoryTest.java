@@ -0,0 +1,185 @@
+package de.andre.neat;
+
+import static de.andre.neat.Parameter.PARAM_POPULATION_SIZE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GenerationHistoryTest {
+
+  @Test
+  void shouldReadEachGeneration_WhenWrittenInBackground(@TempDir Path directory)
+      throws IOException {
+    // given
+    Path file = directory.resolve("history.bin");
+    List<GenerationStatistics> statistics = evolve(file, 20);
+
+    // when
+    try (GenerationHistoryReader reader = GenerationHistoryReader.open(file)) {
+
+      // then: every generation can be read directly
+      assertThat(reader.getFirstGeneration()).isEqualTo(1);
+      assertThat(reader.getLastGeneration()).isEqualTo(20);
+      for (GenerationStatistics expected : statistics) {
+        GenerationHistoryReader.Generation generation =
+            reader.getGeneration(expected.getGeneration());
+        assertThat(generation.getGeneration()).isEqualTo(expected.getGeneration());
+        assertThat(generation.size()).isEqualTo(PARAM_POPULATION_SIZE);
+        for (int slot = 0; slot < generation.size(); slot++) {
+          assertThat(generation.getFitness(slot)).isEqualTo(expected.getFitness(slot));
+          assertThat(generation.getFirstParent(slot)).isEqualTo(expected.getFirstParent(slot));
+          assertThat(generation.getSecondParent(slot)).isEqualTo(expected.getSecondParent(slot));
+        }
+        int slot = expected.getGeneration() % PARAM_POPULATION_SIZE;
+        PackedGenome genome = generation.getGenome(slot);
+        PackedGenome expectedGenome = PackedGenome.pack(expected.getGenome(slot));
+        assertThat(genome.nodeCount()).isEqualTo(expectedGenome.nodeCount());
+        assertThat(genome.connectionCount()).isEqualTo(expectedGenome.connectionCount());
+        for (int i = 0; i < genome.connectionCount(); i++) {
+          assertThat(genome.innovation(i)).isEqualTo(expectedGenome.innovation(i));
+          assertThat(genome.weight(i)).isEqualTo(expectedGenome.weight(i));
+        }
+      }
+    }
+  }
+
+  @Test
+  void shouldFollowFirstParents_WhenReadingLineage(@TempDir Path directory) throws IOException {
+    // given
+    Path file = directory.resolve("history.bin");
+    List<GenerationStatistics> statistics = evolve(file, 10);
+
+    // when
+    int[] lineage;
+    try (GenerationHistoryReader reader = GenerationHistoryReader.open(file)) {
+      lineage = reader.getLineage(10, 7);
+    }
+
+    // then: back to the first generation
+    assertThat(lineage).hasSize(10);
+    assertThat(lineage[0]).isEqualTo(7);
+    for (int i = 1; i < lineage.length; i++) {
+      assertThat(lineage[i]).isEqualTo(statistics.get(10 - i).getFirstParent(lineage[i - 1]));
+    }
+    assertThat(statistics.get(0).getFirstParent(lineage[9])).isEqualTo(-1);
+  }
+
+  @Test
+  void shouldIgnoreIncompleteRecord(@TempDir Path directory) throws IOException {
+    // given: a record that has been interrupted after a few bytes
+    Path file = directory.resolve("history.bin");
+    evolve(file, 3);
+    ByteBuffer incomplete = ByteBuffer.allocate(12).putInt(1000).putInt(4).putInt(150);
+    Files.write(file, incomplete.array(), StandardOpenOption.APPEND);
+
+    // when
+    try (GenerationHistoryReader reader = GenerationHistoryReader.open(file)) {
+
+      // then
+      assertThat(reader.getLastGeneration()).isEqualTo(3);
+      assertThat(reader.contains(4)).isFalse();
+    }
+  }
+
+  @Test
+  void shouldIndexRecordsByCount_WhenGenerationIsCorrupted(@TempDir Path directory)
+      throws IOException {
+    // given: a complete record of an empty generation with a huge generation number
+    Path file = directory.resolve("history.bin");
+    evolve(file, 3);
+    ByteBuffer corrupted = ByteBuffer.allocate(12).putInt(8).putInt(Integer.MAX_VALUE - 1)
+        .putInt(0);
+    Files.write(file, corrupted.array(), StandardOpenOption.APPEND);
+
+    // when
+    try (GenerationHistoryReader reader = GenerationHistoryReader.open(file)) {
+
+      // then: the generations are found without an array for every generation number
+      assertThat(reader.getFirstGeneration()).isEqualTo(1);
+      assertThat(reader.getLastGeneration()).isEqualTo(Integer.MAX_VALUE - 1);
+      assertThat(reader.contains(3)).isTrue();
+      assertThat(reader.contains(4)).isFalse();
+      assertThat(reader.getGeneration(Integer.MAX_VALUE - 1).size()).isZero();
+    }
+  }
+
+  @Test
+  void shouldReadLastRecord_WhenGenerationIsWrittenAgain(@TempDir Path directory)
+      throws IOException {
+    // given: the third generation written again by a resumed run, this time empty
+    Path file = directory.resolve("history.bin");
+    evolve(file, 3);
+    ByteBuffer again = ByteBuffer.allocate(12).putInt(8).putInt(3).putInt(0);
+    Files.write(file, again.array(), StandardOpenOption.APPEND);
+
+    // when
+    try (GenerationHistoryReader reader = GenerationHistoryReader.open(file)) {
+
+      // then
+      assertThat(reader.getLastGeneration()).isEqualTo(3);
+      assertThat(reader.getGeneration(2).size()).isEqualTo(PARAM_POPULATION_SIZE);
+      assertThat(reader.getGeneration(3).size()).isZero();
+    }
+  }
+
+  @Test
+  void shouldCutOffIncompleteRecord_WhenAppending(@TempDir Path directory) throws IOException {
+    // given: a run that has been interrupted while writing a record
+    Path file = directory.resolve("history.bin");
+    XorEvaluator evaluator = new XorEvaluator(PARAM_POPULATION_SIZE, null, 42L);
+    List<GenerationStatistics> statistics = new ArrayList<>();
+    evaluator.addGenerationListener(statistics::add);
+    evolve(evaluator, file, 3);
+    ByteBuffer incomplete = ByteBuffer.allocate(12).putInt(1000).putInt(4).putInt(150);
+    Files.write(file, incomplete.array(), StandardOpenOption.APPEND);
+
+    // when: the run continues
+    evolve(evaluator, file, 3);
+
+    // then: the generations after the incomplete record can be read
+    try (GenerationHistoryReader reader = GenerationHistoryReader.open(file)) {
+      assertThat(reader.getFirstGeneration()).isEqualTo(1);
+      assertThat(reader.getLastGeneration()).isEqualTo(6);
+      for (GenerationStatistics expected : statistics) {
+        GenerationHistoryReader.Generation generation =
+            reader.getGeneration(expected.getGeneration());
+        assertThat(generation.getGeneration()).isEqualTo(expected.getGeneration());
+        assertThat(generation.size()).isEqualTo(PARAM_POPULATION_SIZE);
+        for (int slot = 0; slot < generation.size(); slot++) {
+          assertThat(generation.getFitness(slot)).isEqualTo(expected.getFitness(slot));
+          assertThat(generation.getFirstParent(slot)).isEqualTo(expected.getFirstParent(slot));
+          assertThat(generation.getGenome(slot).connectionCount())
+              .isEqualTo(PackedGenome.pack(expected.getGenome(slot)).connectionCount());
+        }
+      }
+    }
+  }
+
+  private static List<GenerationStatistics> evolve(Path file, int generations)
+      throws IOException {
+    XorEvaluator evaluator = new XorEvaluator(PARAM_POPULATION_SIZE, null, 42L);
+    List<GenerationStatistics> statistics = new ArrayList<>();
+    evaluator.addGenerationListener(statistics::add);
+    evolve(evaluator, file, generations);
+    return statistics;
+  }
+
+  private static void evolve(Evaluator evaluator, Path file, int generations)
+      throws IOException {
+    try (GenerationHistoryWriter writer = new GenerationHistoryWriter(file)) {
+      evaluator.addGenerationListener(writer);
+      for (int i = 0; i < generations; i++) {
+        evaluator.evaluateNextGeneration();
+      }
+      evaluator.removeGenerationListener(writer);
+    }
+  }
+}
@@ -1,12 +1,17 @@
 package de.andre.neat;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import de.andre.neat.NodeGene.Type;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -58,9 +63,11 @@ class GenomeTest {
     Random r = mock(Random.class);
     when(r.nextInt(anyInt())).thenReturn(2, 4);
     when(r.nextFloat()).thenReturn(0.8f);
+    InnovationNumberFactory innovationNumberFactory = mock(InnovationNumberFactory.class);
+    when(innovationNumberFactory.create(any(), any())).thenReturn(InnovationNumber.of(7));
 
     // when: add connection is called
-    Genome mutatedGenome = genome.addConnectionMutation(r, new InnovationNumberFactory());
+    Genome mutatedGenome = genome.addConnectionMutation(r, innovationNumberFactory);
 
     // then: a new connection should have been created
     assertThat(mutatedGenome.getConnections()).hasSize(7);
@@ -111,9 +118,15 @@ class GenomeTest {
 
     Random r = mock(Random.class);
     when(r.nextInt(anyInt())).thenReturn(2);
+    InnovationNumberFactory innovationNumberFactory = mock(InnovationNumberFactory.class);
+    when(innovationNumberFactory.create(any(), any()))
+        .thenReturn(InnovationNumber.of(7), InnovationNumber.of(8));
+
+    NodeFactory nodeFactory = new NodeFactory();
+    nodeFactory.continueAfter(5);
 
     // when: add connection is called
-    Genome mutatedGenome = genome.addNodeMutation(r, new NodeFactory(), new InnovationNumberFactory());
+    Genome mutatedGenome = genome.addNodeMutation(r, nodeFactory, innovationNumberFactory);
 
     // then: a new node should have been created
     assertThat(mutatedGenome.getNodes()).hasSize(6);
@@ -231,4 +244,306 @@ class GenomeTest {
         .containsExactlyInAnyOrder(con11, con12, con23, con14, con25, con26, con27, con18, con29,
             con2A);
   }
-}
\ No newline at end of file
+
+  @Test
+  void testOffspring_FeedForwardOnly() {
+    // given: the parents in1 -> hidden5 -> hidden6 -> out4 and in1 -> hidden6 -> hidden5 -> out4
+    NodeGene node1 = NodeGene.builder().id(NodeId.of(1)).type(Type.INPUT).build();
+    NodeGene node4 = NodeGene.builder().id(NodeId.of(4)).type(Type.OUTPUT).build();
+    NodeGene node5 = NodeGene.builder().id(NodeId.of(5)).type(Type.HIDDEN).build();
+    NodeGene node6 = NodeGene.builder().id(NodeId.of(6)).type(Type.HIDDEN).build();
+
+    ConnectionGene con1 = ConnectionGene.builder().inNode(node1).outNode(node5)
+        .weight(ConnectionWeight.of(0.7f)).expressed(ExpressedState.EXPRESSED)
+        .innovation(InnovationNumber.of(1))
+        .build();
+    ConnectionGene con2 = ConnectionGene.builder().inNode(node5).outNode(node6)
+        .weight(ConnectionWeight.of(-0.5f)).expressed(ExpressedState.EXPRESSED)
+        .innovation(InnovationNumber.of(2))
+        .build();
+    ConnectionGene con3 = ConnectionGene.builder().inNode(node6).outNode(node4)
+        .weight(ConnectionWeight.of(0.5f)).expressed(ExpressedState.EXPRESSED)
+        .innovation(InnovationNumber.of(3))
+        .build();
+    ConnectionGene con4 = ConnectionGene.builder().inNode(node1).outNode(node6)
+        .weight(ConnectionWeight.of(0.2f)).expressed(ExpressedState.EXPRESSED)
+        .innovation(InnovationNumber.of(4))
+        .build();
+    ConnectionGene con5 = ConnectionGene.builder().inNode(node6).outNode(node5)
+        .weight(ConnectionWeight.of(0.3f)).expressed(ExpressedState.EXPRESSED)
+        .innovation(InnovationNumber.of(5))
+        .build();
+    ConnectionGene con6 = ConnectionGene.builder().inNode(node5).outNode(node4)
+        .weight(ConnectionWeight.of(0.4f)).expressed(ExpressedState.EXPRESSED)
+        .innovation(InnovationNumber.of(6))
+        .build();
+    Genome genome1 = Genome.init(List.of(node1, node4, node5, node6), List.of(con1, con2, con3));
+    Genome genome2 = Genome.init(List.of(node1, node4, node5, node6), List.of(con1, con4, con5,
+        con6));
+    Random r = new Random(42);
+
+    // when: both parents have the same fitness
+    Genome child = Genome.crossover(genome1, genome2, true, r, true);
+
+    // then: the connection of the second parent, that closes a cycle, should be left out
+    assertThat(child.getConnections()).containsExactly(con1, con2, con3, con4, con6);
+
+    // when: cycles are allowed
+    Genome cyclicChild = Genome.crossover(genome1, genome2, true, r, false);
+
+    // then: all connections should be inherited
+    assertThat(cyclicChild.getConnections()).containsExactly(con1, con2, con3, con4, con5, con6);
+  }
+
+  @Test
+  void testAddConnectionMutation_FeedForwardOnly() {
+    // given: a genome in1 -> hidden5 -> hidden6 -> out4
+    NodeGene node1 = NodeGene.builder().id(NodeId.of(1)).type(Type.INPUT).build();
+    NodeGene node4 = NodeGene.builder().id(NodeId.of(4)).type(Type.OUTPUT).build();
+    NodeGene node5 = NodeGene.builder().id(NodeId.of(5)).type(Type.HIDDEN).build();
+    NodeGene node6 = NodeGene.builder().id(NodeId.of(6)).type(Type.HIDDEN).build();
+
+    ConnectionGene con1 = ConnectionGene.builder().inNode(node1).outNode(node5)
+        .weight(ConnectionWeight.of(0.7f)).expressed(ExpressedState.EXPRESSED)
+        .innovation(InnovationNumber.of(1))
+        .build();
+    ConnectionGene con2 = ConnectionGene.builder().inNode(node5).outNode(node6)
+        .weight(ConnectionWeight.of(-0.5f)).expressed(ExpressedState.EXPRESSED)
+        .innovation(InnovationNumber.of(2))
+        .build();
+    ConnectionGene con3 = ConnectionGene.builder().inNode(node6).outNode(node4)
+        .weight(ConnectionWeight.of(0.5f)).expressed(ExpressedState.EXPRESSED)
+        .innovation(InnovationNumber.of(3))
+        .build();
+
+    Genome genome = Genome.init(
+        List.of(node1, node4, node5, node6),
+        List.of(con1, con2, con3)
+    );
+
+    Random r = mock(Random.class);
+    when(r.nextFloat()).thenReturn(0.8f);
+    InnovationNumberFactory innovationNumberFactory = mock(InnovationNumberFactory.class);
+    when(innovationNumberFactory.create(any(), any())).thenReturn(InnovationNumber.of(4));
+
+    // when: the random node pairs only close a cycle (hidden6 -> hidden5), go into an input node
+    // (hidden5 -> in1), out of an output node (out4 -> hidden5) or connect a node to itself
+    when(r.nextInt(anyInt())).thenReturn(3, 2, 2, 0, 1, 2, 2);
+    Genome mutatedGenome = genome.addConnectionMutation(r, innovationNumberFactory, true);
+    // then: one of the allowed connections in1 -> out4, hidden5 -> out4 and in1 -> hidden6 (the
+    // last one, since the mock returns 2) should have been created
+    assertThat(mutatedGenome.getConnections()).hasSize(4);
+    assertThat(mutatedGenome.getConnections().get(3).getInNode()).isSameAs(node1);
+    assertThat(mutatedGenome.getConnections().get(3).getOutNode()).isSameAs(node6);
+
+    // when: adding a connection that skips a node (in1 -> hidden6)
+    when(r.nextInt(anyInt())).thenReturn(0, 3);
+    mutatedGenome = genome.addConnectionMutation(r, innovationNumberFactory, true);
+    // then: a new connection should have been created
+    assertThat(mutatedGenome.getConnections()).hasSize(4);
+    assertThat(mutatedGenome.getConnections().get(3).getInNode()).isSameAs(node1);
+    assertThat(mutatedGenome.getConnections().get(3).getOutNode()).isSameAs(node6);
+
+    // when: cycles are allowed
+    when(r.nextInt(anyInt())).thenReturn(3, 2);
+    mutatedGenome = genome.addConnectionMutation(r, innovationNumberFactory, false);
+    // then: the cycle should have been created
+    assertThat(mutatedGenome.getConnections()).hasSize(4);
+    assertThat(mutatedGenome.getConnections().get(3).getInNode()).isSameAs(node6);
+    assertThat(mutatedGenome.getConnections().get(3).getOutNode()).isSameAs(node5);
+  }
+
+  @Test
+  void testAddConnectionMutation_PicksAllowedConnectionsUniformly() {
+    // given: a genome in1 -> hidden5 -> hidden6 -> out4, that allows the new connections
+    // in1 -> out4, hidden5 -> out4 and in1 -> hidden6
+    NodeGene node1 = NodeGene.builder().id(NodeId.of(1)).type(Type.INPUT).build();
+    NodeGene node4 = NodeGene.builder().id(NodeId.of(4)).type(Type.OUTPUT).build();
+    NodeGene node5 = NodeGene.builder().id(NodeId.of(5)).type(Type.HIDDEN).build();
+    NodeGene node6 = NodeGene.builder().id(NodeId.of(6)).type(Type.HIDDEN).build();
+    List<ConnectionGene> connections = List.of(
+        ConnectionGene.builder().inNode(node1).outNode(node5)
+            .weight(ConnectionWeight.of(0.7f)).expressed(ExpressedState.EXPRESSED)
+            .innovation(InnovationNumber.of(1))
+            .build(),
+        ConnectionGene.builder().inNode(node5).outNode(node6)
+            .weight(ConnectionWeight.of(-0.5f)).expressed(ExpressedState.EXPRESSED)
+            .innovation(InnovationNumber.of(2))
+            .build(),
+        ConnectionGene.builder().inNode(node6).outNode(node4)
+            .weight(ConnectionWeight.of(0.5f)).expressed(ExpressedState.NOT_EXPRESSED)
+            .innovation(InnovationNumber.of(3))
+            .build());
+    Genome genome = Genome.init(List.of(node1, node4, node5, node6), connections);
+    InnovationNumberFactory innovationNumberFactory = new InnovationNumberFactory();
+    innovationNumberFactory.continueAfter(3);
+    Random r = new Random(42);
+
+    // when: adding connections many times
+    Map<String, Integer> counts = new HashMap<>();
+    int mutations = 3000;
+    for (int i = 0; i < mutations; i++) {
+      ConnectionGene connection = genome.addConnectionMutation(r, innovationNumberFactory, true)
+          .getConnections().get(3);
+      counts.merge(connection.getInNode().getId().getValue() + "->"
+          + connection.getOutNode().getId().getValue(), 1, Integer::sum);
+    }
+
+    // then: each allowed connection is picked with the same probability
+    assertThat(counts).containsOnlyKeys("1->4", "5->4", "1->6");
+    for (int count : counts.values()) {
+      assertThat(count).isBetween(mutations / 3 - 150, mutations / 3 + 150);
+    }
+
+    // when: all allowed connections have been added
+    Genome saturatedGenome = genome;
+    for (int i = 0; i < 3; i++) {
+      saturatedGenome = saturatedGenome.addConnectionMutation(r, innovationNumberFactory, true);
+    }
+    // then: the genome is unchanged
+    assertThat(saturatedGenome.getConnections()).hasSize(6);
+    assertThat(saturatedGenome.addConnectionMutation(r, innovationNumberFactory, true))
+        .isSameAs(saturatedGenome);
+  }
+
+  @Test
+  void shouldKeepConnectionsSortedByInnovationNumber() {
+    // given: a genome with unsorted connections
+    NodeGene node1 = NodeGene.builder().id(NodeId.of(1)).type(Type.INPUT).build();
+    NodeGene node2 = NodeGene.builder().id(NodeId.of(2)).type(Type.INPUT).build();
+    NodeGene node3 = NodeGene.builder().id(NodeId.of(3)).type(Type.OUTPUT).build();
+    NodeGene node4 = NodeGene.builder().id(NodeId.of(4)).type(Type.HIDDEN).build();
+
+    ConnectionGene con5 = ConnectionGene.builder().inNode(node1).outNode(node4)
+        .weight(ConnectionWeight.of(0.7f)).expressed(ExpressedState.EXPRESSED)
+        .innovation(InnovationNumber.of(5))
+        .build();
+    ConnectionGene con2 = ConnectionGene.builder().inNode(node4).outNode(node3)
+        .weight(ConnectionWeight.of(-0.5f)).expressed(ExpressedState.EXPRESSED)
+        .innovation(InnovationNumber.of(2))
+        .build();
+    Genome genome = Genome.init(List.of(node1, node2, node3, node4), List.of(con5, con2));
+    assertThat(genome.getConnections()).containsExactly(con2, con5);
+    assertThat(genome.maxInnovationNumber()).isEqualTo(InnovationNumber.of(5));
+
+    // when: adding a connection with an innovation number in between (in2 -> hidden4)
+    Random r = mock(Random.class);
+    when(r.nextInt(anyInt())).thenReturn(1, 3);
+    InnovationNumberFactory innovationNumberFactory = mock(InnovationNumberFactory.class);
+    when(innovationNumberFactory.create(any(), any())).thenReturn(InnovationNumber.of(3));
+    Genome mutatedGenome = genome.addConnectionMutation(r, innovationNumberFactory, true);
+
+    // then: the new connection should be inserted in order
+    assertThat(mutatedGenome.getConnections())
+        .extracting(connection -> connection.getInnovation().getValue())
+        .containsExactly(2, 3, 5);
+  }
+
+  @Test
+  void testAddNodeMutation_KeepsParentUnchanged() {
+    // given: a genome in1 -> out2 and a disabled in1 -> out3
+    NodeGene node1 = NodeGene.builder().id(NodeId.of(1)).type(Type.INPUT).build();
+    NodeGene node2 = NodeGene.builder().id(NodeId.of(2)).type(Type.OUTPUT).build();
+    NodeGene node3 = NodeGene.builder().id(NodeId.of(3)).type(Type.OUTPUT).build();
+    ConnectionGene con1 = ConnectionGene.builder().inNode(node1).outNode(node2)
+        .weight(ConnectionWeight.of(0.7f)).expressed(ExpressedState.EXPRESSED)
+        .innovation(InnovationNumber.of(1))
+        .build();
+    ConnectionGene con2 = ConnectionGene.builder().inNode(node1).outNode(node3)
+        .weight(ConnectionWeight.of(0.7f)).expressed(ExpressedState.NOT_EXPRESSED)
+        .innovation(InnovationNumber.of(2))
+        .build();
+    Genome genome = Genome.init(List.of(node1, node2, node3), List.of(con1, con2));
+    long structuralHash = genome.structuralHash();
+    assertThat(genome.expressedConnectionCount()).isEqualTo(1);
+
+    Random r = mock(Random.class);
+    InnovationNumberFactory innovationNumberFactory = mock(InnovationNumberFactory.class);
+    when(innovationNumberFactory.create(any(), any()))
+        .thenReturn(InnovationNumber.of(3), InnovationNumber.of(4));
+    NodeFactory nodeFactory = new NodeFactory();
+    nodeFactory.continueAfter(3);
+
+    // when: splitting the expressed connection
+    when(r.nextInt(anyInt())).thenReturn(0);
+    Genome mutatedGenome = genome.addNodeMutation(r, nodeFactory, innovationNumberFactory);
+
+    // then: only the offspring has the connection disabled
+    assertThat(mutatedGenome.getConnections().get(0).getExpressed())
+        .isEqualTo(ExpressedState.NOT_EXPRESSED);
+    assertThat(mutatedGenome.expressedConnectionCount()).isEqualTo(2);
+    assertThat(mutatedGenome.structuralHash()).isNotEqualTo(structuralHash);
+    assertThat(con1.getExpressed()).isEqualTo(ExpressedState.EXPRESSED);
+    assertThat(genome.expressedConnectionCount()).isEqualTo(1);
+    assertThat(genome.structuralHash()).isEqualTo(structuralHash);
+
+    // when: splitting the disabled connection or a connection that has been split before
+    when(r.nextInt(anyInt())).thenReturn(1, 0);
+    // then: the genome is unchanged
+    assertThat(genome.addNodeMutation(r, nodeFactory, innovationNumberFactory)).isSameAs(genome);
+    Genome crossedGenome = Genome.crossover(mutatedGenome, genome, true, r);
+    assertThat(crossedGenome.addNodeMutation(r, nodeFactory, innovationNumberFactory))
+        .isSameAs(crossedGenome);
+  }
+
+  @Test
+  void shouldHaveSameStructuralHash_WhenOnlyWeightsDiffer() {
+    // given: a genome
+    Genome genome = GenomeTestData.randomFeedForward(new Random(42), 3, 1, 5, 15);
+
+    // when: mutating the weights
+    Genome mutatedGenome = genome.weightMutation(new Random(42));
+
+    // then: the structure is the same
+    assertThat(mutatedGenome.structuralHash()).isEqualTo(genome.structuralHash());
+    assertThat(mutatedGenome.getConnections()).isNotEqualTo(genome.getConnections());
+  }
+
+  @Test
+  void shouldAddSameConnections_WhenReachabilityIsPassedToOffspring() {
+    // given: a genome and factories, that continue after its ids
+    Genome genome = GenomeTestData.randomFeedForward(new Random(42), 3, 1, 5, 15);
+    NodeFactory nodeFactory = new NodeFactory();
+    nodeFactory.continueAfter(NodeGeneTestData.counter.get());
+    InnovationNumberFactory innovationNumberFactory = new InnovationNumberFactory();
+    innovationNumberFactory.continueAfter(ConnectionGeneTestData.counter.get());
+    Random r = new Random(42);
+
+    for (int i = 0; i < 200; i++) {
+      // when: the offspring of structural mutations, that get the updated reachability of their
+      // parent, and a copy, that finds it from scratch, add a connection
+      genome = r.nextFloat() < 0.3f
+          ? genome.addNodeMutation(r, nodeFactory, innovationNumberFactory)
+          : genome.addConnectionMutation(r, innovationNumberFactory, true);
+      Genome copy = Genome.init(genome.getNodes(), genome.getConnections());
+      Genome mutatedGenome = genome.addConnectionMutation(new Random(i), innovationNumberFactory,
+          true);
+      Genome mutatedCopy = copy.addConnectionMutation(new Random(i), innovationNumberFactory,
+          true);
+
+      // then: both should have added the same connection
+      assertThat(mutatedGenome.structuralHash()).isEqualTo(mutatedCopy.structuralHash());
+    }
+  }
+
+  @Test
+  void shouldPickDistinctNodes_WhenNodeIsContainedRepeatedly() {
+    // given: a genome, that contains its input node three times
+    NodeGene node1 = NodeGene.builder().id(NodeId.of(1)).type(Type.INPUT).build();
+    NodeGene node2 = NodeGene.builder().id(NodeId.of(2)).type(Type.OUTPUT).build();
+    Genome genome = Genome.init(List.of(node1, node1, node1, node2), List.of());
+    Random r = mock(Random.class);
+    when(r.nextInt(anyInt())).thenReturn(0, 1);
+    InnovationNumberFactory innovationNumberFactory = mock(InnovationNumberFactory.class);
+    when(innovationNumberFactory.create(any(), any())).thenReturn(InnovationNumber.of(1));
+
+    // when
+    Genome mutatedGenome = genome.addConnectionMutation(r, innovationNumberFactory, true);
+
+    // then: each node should have been picked with the same probability
+    verify(r, never()).nextInt(4);
+    assertThat(mutatedGenome.getConnections()).hasSize(1);
+    assertThat(mutatedGenome.getConnections().get(0).getInNode()).isSameAs(node1);
+    assertThat(mutatedGenome.getConnections().get(0).getOutNode()).isSameAs(node2);
+  }
+}
@@ -0,0 +1,53 @@
+package de.andre.neat;
+
+import static de.andre.neat.ConnectionGeneTestData.connection;
+import static de.andre.neat.NodeGeneTestData.hidden;
+import static de.andre.neat.NodeGeneTestData.input;
+import static de.andre.neat.NodeGeneTestData.output;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public interface GenomeTestData {
+
+  /**
+   * @return a random feed-forward genome, the inputs are the first nodes of the genome followed by
+   * the outputs
+   */
+  static Genome randomFeedForward(Random r, int inputs, int outputs, int hiddenNodes,
+      int connections) {
+    List<NodeGene> nodes = new ArrayList<>();
+    // nodes in topological order: inputs, hidden, outputs
+    List<NodeGene> ordered = new ArrayList<>();
+    for (int i = 0; i < inputs; i++) {
+      nodes.add(input());
+    }
+    for (int i = 0; i < outputs; i++) {
+      nodes.add(output());
+    }
+    ordered.addAll(nodes.subList(0, inputs));
+    for (int i = 0; i < hiddenNodes; i++) {
+      NodeGene hidden = hidden();
+      nodes.add(hidden);
+      ordered.add(hidden);
+    }
+    ordered.addAll(nodes.subList(inputs, inputs + outputs));
+
+    List<ConnectionGene> connectionGenes = new ArrayList<>();
+    // every output and hidden node gets at least one connection from an earlier node
+    for (int i = inputs; i < ordered.size(); i++) {
+      connectionGenes.add(connection(ordered.get(r.nextInt(Math.min(i, inputs + hiddenNodes))),
+          ordered.get(i)).weight(ConnectionWeight.random(r)).build());
+    }
+    while (connectionGenes.size() < connections) {
+      int out = inputs + r.nextInt(ordered.size() - inputs);
+      int in = r.nextInt(Math.min(out, inputs + hiddenNodes));
+      connectionGenes.add(connection(ordered.get(in), ordered.get(out))
+          .weight(ConnectionWeight.random(r))
+          .expressed(r.nextInt(10) == 0 ? ExpressedState.NOT_EXPRESSED : ExpressedState.EXPRESSED)
+          .build());
+    }
+    return Genome.init(nodes, connectionGenes);
+  }
+}
@@ -2,6 +2,12 @@ package de.andre.neat;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.jupiter.api.Test;
 
 class InnovationNumberFactoryTest {
@@ -33,4 +39,59 @@ class InnovationNumberFactoryTest {
     assertThat(inno3).isNotNull();
     assertThat(inno3).usingRecursiveComparison().isEqualTo(inno1);
   }
-}
\ No newline at end of file
+
+  @Test
+  void shouldForgetInnovationNumbers_WhenTooOld() {
+    InnovationNumberFactory factory = new InnovationNumberFactory(1);
+    NodeGene node1 = NodeGene.builder().id(NodeId.of(1)).build();
+    NodeGene node2 = NodeGene.builder().id(NodeId.of(2)).build();
+    NodeGene node3 = NodeGene.builder().id(NodeId.of(3)).build();
+    InnovationNumber inno1 = factory.create(node1, node2);
+    InnovationNumber inno2 = factory.create(node1, node3);
+
+    // when: only one connection is created again within the max age
+    factory.nextGeneration();
+    assertThat(factory.create(node1, node2)).isEqualTo(inno1);
+    factory.nextGeneration();
+
+    // then: the other connection should have been forgotten
+    assertThat(factory.size()).isEqualTo(1);
+    assertThat(factory.create(node1, node2)).isEqualTo(inno1);
+    assertThat(factory.create(node1, node3)).isNotEqualTo(inno2);
+  }
+
+  @Test
+  void shouldCreateSameInnovationNumbers_WhenCalledConcurrently() throws Exception {
+    InnovationNumberFactory factory = new InnovationNumberFactory();
+    List<NodeGene> nodes = new ArrayList<>();
+    for (int i = 1; i <= 20; i++) {
+      nodes.add(NodeGene.builder().id(NodeId.of(i)).build());
+    }
+
+    // when: all connections are created from several threads at once
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Future<List<InnovationNumber>>> results = new ArrayList<>();
+    try {
+      for (int thread = 0; thread < 4; thread++) {
+        results.add(executor.submit(() -> {
+          List<InnovationNumber> innovations = new ArrayList<>();
+          for (NodeGene inNode : nodes) {
+            for (NodeGene outNode : nodes) {
+              innovations.add(factory.create(inNode, outNode));
+            }
+          }
+          return innovations;
+        }));
+      }
+
+      // then: each thread should get the same innovation number for a connection
+      List<InnovationNumber> expected = results.get(0).get();
+      assertThat(new HashSet<>(expected)).hasSize(nodes.size() * nodes.size());
+      for (Future<List<InnovationNumber>> result : results) {
+        assertThat(result.get()).isEqualTo(expected);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
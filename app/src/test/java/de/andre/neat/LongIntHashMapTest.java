@@ -0,0 +1,27 @@
+package de.andre.neat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class LongIntHashMapTest {
+
+  @Test
+  void shouldKeepFirstValueOfKey() {
+    LongIntHashMap map = new LongIntHashMap(2);
+
+    // when: adding more keys than expected
+    for (int i = 0; i < 1000; i++) {
+      assertThat(map.putIfAbsent((long) i << 32 | i, i)).isEqualTo(-1);
+    }
+
+    // then: all keys should be present
+    assertThat(map.size()).isEqualTo(1000);
+    for (int i = 0; i < 1000; i++) {
+      assertThat(map.get((long) i << 32 | i)).isEqualTo(i);
+      assertThat(map.putIfAbsent((long) i << 32 | i, 0)).isEqualTo(i);
+    }
+    assertThat(map.get(1)).isEqualTo(-1);
+    assertThat(map.get(-1L)).isEqualTo(-1);
+  }
+}
@@ -0,0 +1,175 @@
+package de.andre.neat;
+
+import static de.andre.neat.ConnectionGeneTestData.connection;
+import static de.andre.neat.NodeGeneTestData.hidden;
+import static de.andre.neat.NodeGeneTestData.input;
+import static de.andre.neat.NodeGeneTestData.output;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import de.andre.neat.NodeGene.Type;
+import de.andre.neat.runtime.Model;
+import de.andre.neat.runtime.Model.WeightEncoding;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ModelExporterTest {
+
+  @Test
+  void shouldComputeSameOutputs_AsNeuralNetwork(@TempDir Path directory) throws IOException {
+    // given: an exported feed-forward genome
+    Genome genome = GenomeTestData.randomFeedForward(new Random(42), 3, 2, 30, 150);
+    List<NodeGene> inputNodes = nodes(genome, Type.INPUT);
+    List<NodeGene> outputNodes = nodes(genome, Type.OUTPUT);
+    Path file = directory.resolve("genome.model");
+    ModelExporter.export(genome, inputNodes, outputNodes, ActivationFunction.STEEPENED_SIGMOID,
+        WeightEncoding.FLOAT32, file);
+
+    // when
+    Model model = Model.load(file);
+
+    // then: the outputs are bit for bit the ones of the network
+    NeuralNetwork network = NeuralNetwork.createFromGenome(genome);
+    float[] values = new float[model.valueCount()];
+    float[] outputs = new float[model.outputCount()];
+    Random r = new Random(43);
+    for (int sample = 0; sample < 20; sample++) {
+      float[] inputs = {r.nextFloat(), r.nextFloat(), r.nextFloat()};
+      network.resetValues();
+      for (int i = 0; i < inputs.length; i++) {
+        network.putValue(inputNodes.get(i), inputs[i]);
+      }
+      network.compute(ActivationFunction.STEEPENED_SIGMOID);
+      model.evaluate(inputs, outputs, values);
+      for (int i = 0; i < outputs.length; i++) {
+        assertThat(outputs[i]).isEqualTo(network.getValue(outputNodes.get(i)));
+      }
+    }
+  }
+
+  @Test
+  void shouldComputeSameOutputs_WhenActivationFunctionIsApproximated() throws IOException {
+    // given: a feed-forward genome
+    Genome genome = GenomeTestData.randomFeedForward(new Random(42), 3, 2, 30, 150);
+    List<NodeGene> inputNodes = nodes(genome, Type.INPUT);
+    List<NodeGene> outputNodes = nodes(genome, Type.OUTPUT);
+    NeuralNetwork network = NeuralNetwork.createFromGenome(genome);
+
+    for (ActivationFunction activationFunction : List.of(
+        ActivationFunction.STEEPENED_SIGMOID_LOOKUP,
+        ActivationFunction.STEEPENED_SIGMOID_RATIONAL)) {
+      // when: exporting it with an approximation of the sigmoid
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ModelExporter.writeTo(genome, inputNodes, outputNodes, activationFunction,
+          WeightEncoding.FLOAT32, new DataOutputStream(bytes));
+      Model model = Model.of(ByteBuffer.wrap(bytes.toByteArray()));
+
+      // then: the model uses the same approximation as the network
+      float[] values = new float[model.valueCount()];
+      float[] outputs = new float[model.outputCount()];
+      Random r = new Random(43);
+      for (int sample = 0; sample < 20; sample++) {
+        float[] inputs = {r.nextFloat(), r.nextFloat(), r.nextFloat()};
+        network.resetValues();
+        for (int i = 0; i < inputs.length; i++) {
+          network.putValue(inputNodes.get(i), inputs[i]);
+        }
+        network.compute(activationFunction);
+        model.evaluate(inputs, outputs, values);
+        for (int i = 0; i < outputs.length; i++) {
+          assertThat(outputs[i]).isEqualTo(network.getValue(outputNodes.get(i)));
+        }
+      }
+    }
+  }
+
+  @Test
+  void shouldComputeSimilarOutputs_WhenWeightsAreQuantized() throws IOException {
+    // given
+    Genome genome = GenomeTestData.randomFeedForward(new Random(44), 3, 2, 30, 150);
+    List<NodeGene> inputNodes = nodes(genome, Type.INPUT);
+    List<NodeGene> outputNodes = nodes(genome, Type.OUTPUT);
+
+    // when
+    Model exact = export(genome, inputNodes, outputNodes, WeightEncoding.FLOAT32);
+    Model quantized = export(genome, inputNodes, outputNodes, WeightEncoding.INT8);
+
+    // then
+    float[] values = new float[exact.valueCount()];
+    float[] exactOutputs = new float[2];
+    float[] quantizedOutputs = new float[2];
+    Random r = new Random(45);
+    for (int sample = 0; sample < 20; sample++) {
+      float[] inputs = {r.nextFloat(), r.nextFloat(), r.nextFloat()};
+      exact.evaluate(inputs, exactOutputs, values);
+      quantized.evaluate(inputs, quantizedOutputs, values);
+      assertThat(quantizedOutputs[0]).isCloseTo(exactOutputs[0], within(0.05f));
+      assertThat(quantizedOutputs[1]).isCloseTo(exactOutputs[1], within(0.05f));
+    }
+  }
+
+  @Test
+  void shouldPruneGenesThatDoNotAffectOutputs() throws IOException {
+    // given: a disabled connection and a hidden node without path to the output
+    NodeGene inputNode = input();
+    NodeGene hiddenNode = hidden();
+    NodeGene deadEnd = hidden();
+    NodeGene outputNode = output();
+    Genome genome = Genome.init(List.of(inputNode, hiddenNode, deadEnd, outputNode), List.of(
+        connection(inputNode, hiddenNode).weight(ConnectionWeight.of(0.5f)).build(),
+        connection(hiddenNode, outputNode).weight(ConnectionWeight.of(2f)).build(),
+        connection(inputNode, outputNode).expressed(ExpressedState.NOT_EXPRESSED).build(),
+        connection(inputNode, deadEnd).build()));
+
+    // when
+    Model model = export(genome, List.of(inputNode), List.of(outputNode), WeightEncoding.FLOAT32);
+
+    // then: only the hidden node and the output are computed
+    assertThat(model.valueCount()).isEqualTo(3);
+    float[] outputs = new float[1];
+    model.evaluate(new float[]{1f}, outputs, new float[3]);
+    float hiddenValue = ActivationFunction.steepenedSigmoid(0.5f);
+    assertThat(outputs[0]).isEqualTo(ActivationFunction.steepenedSigmoid(hiddenValue * 2f));
+  }
+
+  @Test
+  void shouldRejectOutputThatCanNotBeComputed() {
+    // given: the output depends on a cycle
+    NodeGene inputNode = input();
+    NodeGene hidden1 = hidden();
+    NodeGene hidden2 = hidden();
+    NodeGene outputNode = output();
+    Genome genome = Genome.init(List.of(inputNode, hidden1, hidden2, outputNode), List.of(
+        connection(inputNode, hidden1).build(),
+        connection(hidden1, hidden2).build(),
+        connection(hidden2, hidden1).build(),
+        connection(hidden2, outputNode).build()));
+
+    // then
+    assertThrows(IllegalArgumentException.class,
+        () -> export(genome, List.of(inputNode), List.of(outputNode), WeightEncoding.FLOAT32));
+  }
+
+  private static Model export(Genome genome, List<NodeGene> inputNodes,
+      List<NodeGene> outputNodes, WeightEncoding weightEncoding) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ModelExporter.writeTo(genome, inputNodes, outputNodes, ActivationFunction.STEEPENED_SIGMOID,
+        weightEncoding, new DataOutputStream(bytes));
+    return Model.of(ByteBuffer.wrap(bytes.toByteArray()));
+  }
+
+  private static List<NodeGene> nodes(Genome genome, Type type) {
+    return genome.getNodes().stream()
+        .filter(node -> node.getType() == type)
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,51 @@
+package de.andre.neat;
+
+import static de.andre.neat.NodeGeneTestData.resetNodeCounter;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class NetworkArenaTest {
+
+  @BeforeEach
+  void setup() {
+    resetNodeCounter();
+  }
+
+  @Test
+  void shouldReuseNetworkForGenomesOfDifferentSize() {
+    // given: genomes of different size
+    Random r = new Random(7);
+    List<Genome> genomes = List.of(
+        GenomeTestData.randomFeedForward(r, 3, 1, 20, 80),
+        GenomeTestData.randomFeedForward(r, 3, 1, 2, 6),
+        GenomeTestData.randomFeedForward(r, 3, 1, 40, 200));
+    NetworkArena arena = new NetworkArena();
+    float[][] inputs = {{1f, 0f, 1f}, {0.5f, -1f, 2f}};
+
+    NeuralNetwork firstNetwork = null;
+    for (Genome genome : genomes) {
+      List<NodeGene> inputNodes = genome.getNodes().subList(0, 3);
+      List<NodeGene> outputNodes = genome.getNodes().subList(3, 4);
+
+      // when: building the network within the arena
+      NeuralNetwork network = arena.neuralNetwork(genome);
+      float[][] outputs = network.computeBatch(inputNodes, inputs, outputNodes,
+          ActivationFunction.STEEPENED_SIGMOID);
+
+      // then: the network is reused
+      if (firstNetwork == null) {
+        firstNetwork = network;
+      }
+      assertThat(network).isSameAs(firstNetwork);
+
+      // then: the results are the same as of a new network
+      float[][] expected = NeuralNetwork.createFromGenome(genome)
+          .computeBatch(inputNodes, inputs, outputNodes, ActivationFunction.STEEPENED_SIGMOID);
+      assertThat(outputs).isDeepEqualTo(expected);
+    }
+  }
+}
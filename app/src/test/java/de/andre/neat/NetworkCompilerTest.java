@@ -0,0 +1,73 @@
+package de.andre.neat;
+
+import static de.andre.neat.ConnectionGeneTestData.connection;
+import static de.andre.neat.NodeGeneTestData.hidden;
+import static de.andre.neat.NodeGeneTestData.input;
+import static de.andre.neat.NodeGeneTestData.output;
+import static de.andre.neat.NodeGeneTestData.resetNodeCounter;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class NetworkCompilerTest {
+
+  @BeforeEach
+  void setup() {
+    resetNodeCounter();
+  }
+
+  @Test
+  void shouldComputeSameValuesAsNeuralNetwork() {
+    Random r = new Random(42);
+    for (ActivationFunction activationFunction : List.of(ActivationFunction.STEEPENED_SIGMOID,
+        ActivationFunction.STEEPENED_SIGMOID_LOOKUP, ActivationFunction.TANH)) {
+      // given: a random feed-forward genome
+      Genome genome = GenomeTestData.randomFeedForward(r, 3, 2, 10, 40);
+      List<NodeGene> inputNodes = genome.getNodes().subList(0, 3);
+      List<NodeGene> outputNodes = genome.getNodes().subList(3, 5);
+
+      // when: compiling the network
+      CompiledNetwork compiledNetwork = NetworkCompiler.compile(genome, inputNodes, outputNodes,
+          activationFunction);
+
+      // then: each input should have the same result as the neural network
+      NeuralNetwork neuralNetwork = NeuralNetwork.createFromGenome(genome);
+      for (int sample = 0; sample < 10; sample++) {
+        float[] inputs = {r.nextFloat(), r.nextFloat(), r.nextFloat()};
+        neuralNetwork.resetValues();
+        for (int i = 0; i < inputs.length; i++) {
+          neuralNetwork.putValue(inputNodes.get(i), inputs[i]);
+        }
+        neuralNetwork.compute(activationFunction);
+        float[] expected = {neuralNetwork.getValue(outputNodes.get(0)),
+            neuralNetwork.getValue(outputNodes.get(1))};
+
+        float[] outputs = new float[2];
+        compiledNetwork.compute(inputs, outputs);
+        assertArrayEquals(expected, outputs);
+      }
+    }
+  }
+
+  @Test
+  void shouldNotCompileNetwork_WithCycle() {
+    // given: a genome
+    NodeGene inputNode1 = input();
+    NodeGene outputNode = output();
+    NodeGene hiddenNode1 = hidden();
+    ConnectionGene con1 = connection(inputNode1, outputNode).build();
+    ConnectionGene con2 = connection(hiddenNode1, outputNode).build();
+    ConnectionGene con3 = connection(outputNode, hiddenNode1).build();
+    Genome genome = Genome.init(List.of(inputNode1, outputNode, hiddenNode1),
+        List.of(con1, con2, con3));
+
+    // then: out cannot be calculated
+    assertThrows(ValueNotPresentException.class,
+        () -> NetworkCompiler.compile(genome, List.of(inputNode1), List.of(outputNode),
+            ActivationFunction.STEEPENED_SIGMOID));
+  }
+}
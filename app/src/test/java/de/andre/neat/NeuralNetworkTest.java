@@ -9,7 +9,6 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.util.List;
-import java.util.function.UnaryOperator;
 import org.assertj.core.data.Percentage;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -19,7 +18,7 @@ class NeuralNetworkTest {
   /**
    * a very simple activation function
    */
-  private static final UnaryOperator<Float> ACTIVATION = f -> f;
+  private static final ActivationFunction ACTIVATION = f -> f;
 
   @BeforeEach
   void setup() {
@@ -191,4 +190,138 @@ class NeuralNetworkTest {
     // then: out should not have been calculated
     assertThrows(ValueNotPresentException.class, () -> network.getValue(outputNode));
   }
-}
\ No newline at end of file
+
+  @Test
+  void shouldComputeNetwork_WithCycleThroughInputNode() {
+    // given: a genome with a cycle that passes an input node
+    NodeGene inputNode1 = input();
+    NodeGene outputNode = output();
+    NodeGene hiddenNode1 = hidden();
+    ConnectionGene con1 = connection(inputNode1, hiddenNode1).build();
+    ConnectionGene con2 = connection(hiddenNode1, inputNode1).build();
+    ConnectionGene con3 = connection(hiddenNode1, outputNode).build();
+    Genome genome = Genome.init(List.of(inputNode1, outputNode, hiddenNode1),
+        List.of(con1, con2, con3));
+
+    // when: computing the network
+    NeuralNetwork network = NeuralNetwork.createFromGenome(genome);
+    network.putValue(inputNode1, 3f);
+    network.compute(ACTIVATION);
+
+    // then: the value put into the input node breaks the cycle
+    float result = network.getValue(outputNode);
+    assertThat(result).isCloseTo(3f, Percentage.withPercentage(0.1d));
+  }
+
+  @Test
+  void shouldComputeNetwork_DuplicateNode() {
+    // given: a genome containing the same hidden node twice
+    NodeGene inputNode = input();
+    NodeGene outputNode = output();
+    NodeGene hiddenNode = hidden();
+    ConnectionGene con1 = connection(inputNode, hiddenNode).build();
+    ConnectionGene con2 = connection(hiddenNode, outputNode).build();
+    Genome genome = Genome.init(List.of(inputNode, hiddenNode, outputNode, hiddenNode),
+        List.of(con1, con2));
+
+    // when: computing the network
+    NeuralNetwork network = NeuralNetwork.createFromGenome(genome);
+    network.putValue(inputNode, 3f);
+    network.compute(ACTIVATION);
+
+    float result = network.getValue(outputNode);
+    assertThat(result).isCloseTo(3f, Percentage.withPercentage(0.1d));
+  }
+
+  @Test
+  void shouldComputeBatch_SameAsSingleComputation() {
+    // given: a genome
+    NodeGene inputNode1 = input();
+    NodeGene inputNode2 = input();
+    NodeGene outputNode = output();
+    NodeGene hiddenNode1 = hidden();
+    ConnectionGene con1 = connection(inputNode1, outputNode).weight(ConnectionWeight.of(0.3f))
+        .build();
+    ConnectionGene con2 = connection(inputNode2, outputNode).weight(ConnectionWeight.of(-0.7f))
+        .build();
+    ConnectionGene con3 = connection(inputNode1, hiddenNode1).weight(ConnectionWeight.of(1.1f))
+        .build();
+    ConnectionGene con4 = connection(hiddenNode1, outputNode).weight(ConnectionWeight.of(0.9f))
+        .build();
+    Genome genome = Genome.init(List.of(inputNode1, inputNode2, outputNode, hiddenNode1),
+        List.of(con1, con2, con3, con4));
+    float[][] inputs = {{3f, 5f}, {5f, 7f}, {-1f, 0.5f}};
+
+    // when: computing the network for all samples at once
+    NeuralNetwork network = NeuralNetwork.createFromGenome(genome);
+    float[][] outputs = network.computeBatch(List.of(inputNode1, inputNode2), inputs,
+        List.of(outputNode, hiddenNode1), ACTIVATION);
+
+    // then: each sample should have the result of a single computation
+    assertThat(outputs).hasDimensions(3, 2);
+    for (int sample = 0; sample < inputs.length; sample++) {
+      network.resetValues();
+      network.putValue(inputNode1, inputs[sample][0]);
+      network.putValue(inputNode2, inputs[sample][1]);
+      network.compute(ACTIVATION);
+      assertThat(outputs[sample][0]).isEqualTo(network.getValue(outputNode));
+      assertThat(outputs[sample][1]).isEqualTo(network.getValue(hiddenNode1));
+    }
+  }
+
+  @Test
+  void shouldComputeBatch_WhenInputHasIncomingConnection() {
+    // given: a genome with a connection between two input nodes
+    NodeGene inputNode1 = input();
+    NodeGene inputNode2 = input();
+    NodeGene outputNode = output();
+    ConnectionGene con1 = connection(inputNode2, inputNode1).weight(ConnectionWeight.of(0.5f))
+        .build();
+    ConnectionGene con2 = connection(inputNode1, outputNode).weight(ConnectionWeight.of(2f))
+        .build();
+    ConnectionGene con3 = connection(inputNode2, outputNode).weight(ConnectionWeight.of(-1f))
+        .build();
+    Genome genome = Genome.init(List.of(inputNode1, inputNode2, outputNode),
+        List.of(con1, con2, con3));
+    float[][] inputs = {{3f, 5f}, {-2f, 1f}};
+
+    // when: computing the network for all samples at once
+    NeuralNetwork network = NeuralNetwork.createFromGenome(genome);
+    float[][] outputs = network.computeBatch(List.of(inputNode1, inputNode2), inputs,
+        List.of(outputNode), ACTIVATION);
+
+    // then: the input values should not be overwritten by the incoming connection
+    for (int sample = 0; sample < inputs.length; sample++) {
+      network.resetValues();
+      network.putValue(inputNode1, inputs[sample][0]);
+      network.putValue(inputNode2, inputs[sample][1]);
+      network.compute(ACTIVATION);
+      assertThat(outputs[sample][0]).isEqualTo(network.getValue(outputNode));
+      assertThat(outputs[sample][0])
+          .isEqualTo(2f * inputs[sample][0] - inputs[sample][1]);
+    }
+  }
+
+  @Test
+  void shouldComputeBatch_WithCycle() {
+    // given: a genome
+    NodeGene inputNode1 = input();
+    NodeGene outputNode = output();
+    NodeGene hiddenNode1 = hidden();
+    ConnectionGene con1 = connection(inputNode1, outputNode).build();
+    ConnectionGene con2 = connection(hiddenNode1, outputNode).build();
+    ConnectionGene con3 = connection(outputNode, hiddenNode1).build();
+    Genome genome = Genome.init(List.of(inputNode1, outputNode, hiddenNode1),
+        List.of(con1, con2, con3));
+
+    // when: computing the network for all samples at once
+    NeuralNetwork network = NeuralNetwork.createFromGenome(genome);
+
+    // then: out cannot be calculated
+    assertThrows(ValueNotPresentException.class,
+        () -> network.computeBatch(List.of(inputNode1), new float[][]{{1f}, {2f}},
+            List.of(outputNode), ACTIVATION));
+    assertThat(network.dependsOnCycle(outputNode)).isTrue();
+    assertThat(network.dependsOnCycle(inputNode1)).isFalse();
+  }
+}
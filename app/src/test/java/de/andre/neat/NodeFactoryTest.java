@@ -2,6 +2,11 @@ package de.andre.neat;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import org.junit.jupiter.api.Test;
 
 class NodeFactoryTest {
@@ -27,4 +32,58 @@ class NodeFactoryTest {
     assertThat(node3).isNotNull();
     assertThat(node3).usingRecursiveComparison().isEqualTo(node1);
   }
-}
\ No newline at end of file
+
+  @Test
+  void shouldForgetNodes_WhenTooOld() {
+    NodeFactory factory = new NodeFactory(0);
+    InnovationNumber inno1 = InnovationNumber.of(1);
+    NodeGene node1 = factory.create(inno1);
+
+    // when: calling with the same innovation number within the same generation
+    assertThat(factory.create(inno1)).isSameAs(node1);
+
+    // when: calling with the same innovation number in the next generation
+    factory.nextGeneration();
+    assertThat(factory.size()).isZero();
+    assertThat(factory.create(inno1).getId()).isNotEqualTo(node1.getId());
+  }
+
+  @Test
+  void shouldKeepNodesAndTheirAge_WhenWrittenAndRead() throws IOException {
+    // given: a node created in the first and a node created in the second generation
+    NodeFactory factory = new NodeFactory(1);
+    NodeGene node1 = factory.create(InnovationNumber.of(1));
+    factory.nextGeneration();
+    NodeGene node2 = factory.create(InnovationNumber.of(2));
+
+    // when
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    factory.writeTo(new DataOutputStream(bytes));
+    NodeFactory restored = new NodeFactory(1);
+    restored.create(InnovationNumber.of(3));
+    restored.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+    // then: the first node is forgotten first
+    assertThat(restored.size()).isEqualTo(2);
+    restored.nextGeneration();
+    assertThat(restored.size()).isEqualTo(1);
+    assertThat(restored.create(InnovationNumber.of(2)).getId()).isEqualTo(node2.getId());
+    assertThat(restored.create(InnovationNumber.of(1)).getId()).isNotEqualTo(node1.getId())
+        .isNotEqualTo(node2.getId());
+  }
+
+  @Test
+  void shouldCountIds_PerFactory() {
+    // given: a factory that has already created some nodes
+    NodeFactory factory = new NodeFactory();
+    factory.create(InnovationNumber.of(1));
+    factory.create(InnovationNumber.of(2));
+
+    // when
+    NodeGene node = new NodeFactory().create(InnovationNumber.of(1));
+
+    // then: another factory starts with the first id
+    assertThat(node.getId()).isEqualTo(NodeId.of(1));
+    assertThat(factory.nextId()).isEqualTo(NodeId.of(3));
+  }
+}
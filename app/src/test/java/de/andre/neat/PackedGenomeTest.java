@@ -0,0 +1,108 @@
+package de.andre.neat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class PackedGenomeTest {
+
+  @Test
+  void shouldKeepAllGenes_WhenPackedAndUnpacked() {
+    // given: a random genome
+    Genome genome = GenomeTestData.randomFeedForward(new Random(42), 3, 2, 30, 150);
+
+    // when
+    PackedGenome packed = PackedGenome.pack(genome);
+    Genome unpacked = packed.unpack();
+
+    // then
+    assertThat(packed.nodeCount()).isEqualTo(genome.nodeCount());
+    assertThat(packed.connectionCount()).isEqualTo(genome.getConnections().size());
+    assertSameGenes(unpacked, genome);
+    assertThat(unpacked.structuralHash()).isEqualTo(genome.structuralHash());
+    assertThat(unpacked.expressedConnectionCount()).isEqualTo(genome.expressedConnectionCount());
+  }
+
+  @Test
+  void shouldProvideConnectionViews() {
+    // given
+    Genome genome = GenomeTestData.randomFeedForward(new Random(43), 2, 1, 10, 100);
+
+    // when
+    PackedGenome packed = PackedGenome.pack(genome);
+
+    // then: the views and the primitive accessors match the genes of the genome
+    List<ConnectionGene> connections = genome.getConnections();
+    for (int i = 0; i < connections.size(); i++) {
+      ConnectionGene connection = connections.get(i);
+      assertThat(packed.innovation(i)).isEqualTo(connection.getInnovation().getValue());
+      assertThat(packed.nodeId(packed.inNode(i)))
+          .isEqualTo(connection.getInNode().getId().getValue());
+      assertThat(packed.nodeId(packed.outNode(i)))
+          .isEqualTo(connection.getOutNode().getId().getValue());
+      assertThat(packed.weight(i)).isEqualTo(connection.getWeight().getWeight());
+      assertThat(packed.isExpressed(i))
+          .isEqualTo(connection.getExpressed() == ExpressedState.EXPRESSED);
+    }
+    assertSameConnections(packed.getConnections(), connections);
+  }
+
+  @Test
+  void shouldKeepAllGenes_WhenWrittenAndRead() throws IOException {
+    // given
+    Genome genome = GenomeTestData.randomFeedForward(new Random(44), 3, 2, 30, 150);
+
+    // when
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    PackedGenome.pack(genome).writeTo(new DataOutputStream(bytes));
+    PackedGenome read = PackedGenome.readFrom(
+        new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+    // then
+    assertSameGenes(read.unpack(), genome);
+  }
+
+  @Test
+  void shouldPackEmptyGenome() {
+    // given
+    Genome genome = Genome.init(List.of(NodeGeneTestData.input(), NodeGeneTestData.output()),
+        List.of());
+
+    // when
+    Genome unpacked = PackedGenome.pack(genome).unpack();
+
+    // then
+    assertSameGenes(unpacked, genome);
+    assertThat(unpacked.getConnections()).isEmpty();
+  }
+
+  private static void assertSameGenes(Genome actual, Genome expected) {
+    assertThat(actual.getNodes()).hasSameSizeAs(expected.getNodes());
+    for (int i = 0; i < expected.getNodes().size(); i++) {
+      NodeGene node = expected.getNodes().get(i);
+      assertThat(actual.getNodes().get(i).getId()).isEqualTo(node.getId());
+      assertThat(actual.getNodes().get(i).getType()).isEqualTo(node.getType());
+    }
+    assertSameConnections(actual.getConnections(), expected.getConnections());
+  }
+
+  private static void assertSameConnections(List<ConnectionGene> actual,
+      List<ConnectionGene> expected) {
+    assertThat(actual).hasSameSizeAs(expected);
+    for (int i = 0; i < expected.size(); i++) {
+      ConnectionGene connection = expected.get(i);
+      assertThat(actual.get(i).getInnovation()).isEqualTo(connection.getInnovation());
+      assertThat(actual.get(i).getInNode().getId()).isEqualTo(connection.getInNode().getId());
+      assertThat(actual.get(i).getOutNode().getId()).isEqualTo(connection.getOutNode().getId());
+      assertThat(actual.get(i).getWeight()).isEqualTo(connection.getWeight());
+      assertThat(actual.get(i).getExpressed()).isEqualTo(connection.getExpressed());
+    }
+  }
+}
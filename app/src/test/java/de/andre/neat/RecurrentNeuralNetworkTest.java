@@ -0,0 +1,108 @@
+package de.andre.neat;
+
+import static de.andre.neat.ConnectionGeneTestData.connection;
+import static de.andre.neat.NodeGeneTestData.hidden;
+import static de.andre.neat.NodeGeneTestData.input;
+import static de.andre.neat.NodeGeneTestData.output;
+import static de.andre.neat.NodeGeneTestData.resetNodeCounter;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.assertj.core.data.Percentage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RecurrentNeuralNetworkTest {
+
+  /**
+   * a very simple activation function
+   */
+  private static final ActivationFunction ACTIVATION = f -> f;
+
+  @BeforeEach
+  void setup() {
+    resetNodeCounter();
+  }
+
+  @Test
+  void shouldComputeFeedForwardNetwork_AfterEnoughSteps() {
+    // given: a genome
+    NodeGene inputNode1 = input();
+    NodeGene inputNode2 = input();
+    NodeGene outputNode = output();
+    NodeGene hiddenNode1 = hidden();
+    ConnectionGene con1 = connection(inputNode1, outputNode).build();
+    ConnectionGene con2 = connection(inputNode2, outputNode).build();
+    ConnectionGene con3 = connection(inputNode1, hiddenNode1).build();
+    ConnectionGene con4 = connection(hiddenNode1, outputNode).build();
+    Genome genome = Genome.init(List.of(inputNode1, inputNode2, outputNode, hiddenNode1),
+        List.of(con1, con2, con3, con4));
+
+    // when: computing the network with one step per layer
+    RecurrentNeuralNetwork network = RecurrentNeuralNetwork.createFromGenome(genome);
+    network.putValue(inputNode1, 3f);
+    network.putValue(inputNode2, 5f);
+    network.compute(ACTIVATION, 2);
+
+    float result = network.getValue(outputNode);
+    assertThat(result).isCloseTo(11f, Percentage.withPercentage(0.1d));
+  }
+
+  @Test
+  void shouldComputeNetwork_WithSelfReferenceKeepingState() {
+    // given: a genome
+    NodeGene inputNode1 = input();
+    NodeGene outputNode = output();
+    NodeGene hiddenNode1 = hidden();
+    ConnectionGene con1 = connection(inputNode1, hiddenNode1).build();
+    ConnectionGene con2 = connection(hiddenNode1, hiddenNode1).build();
+    ConnectionGene con3 = connection(hiddenNode1, outputNode).build();
+    Genome genome = Genome.init(List.of(inputNode1, outputNode, hiddenNode1),
+        List.of(con1, con2, con3));
+
+    // when: computing the network
+    RecurrentNeuralNetwork network = RecurrentNeuralNetwork.createFromGenome(genome);
+    network.putValue(inputNode1, 1f);
+    network.compute(ACTIVATION, 2);
+
+    // then: the hidden node has summed up the input twice, the output has seen the first step
+    assertThat(network.getValue(hiddenNode1)).isCloseTo(2f, Percentage.withPercentage(0.1d));
+    assertThat(network.getValue(outputNode)).isCloseTo(1f, Percentage.withPercentage(0.1d));
+
+    // when: computing the network again
+    network.compute(ACTIVATION, 1);
+
+    // then: the state of the previous call has been kept
+    assertThat(network.getValue(hiddenNode1)).isCloseTo(3f, Percentage.withPercentage(0.1d));
+    assertThat(network.getValue(outputNode)).isCloseTo(2f, Percentage.withPercentage(0.1d));
+
+    // when: resetting the network
+    network.resetValues();
+    network.putValue(inputNode1, 1f);
+    network.compute(ACTIVATION, 1);
+
+    // then: the state has been cleared
+    assertThat(network.getValue(hiddenNode1)).isCloseTo(1f, Percentage.withPercentage(0.1d));
+  }
+
+  @Test
+  void shouldComputeNetwork_WithCycle() {
+    // given: a genome
+    NodeGene inputNode1 = input();
+    NodeGene outputNode = output();
+    NodeGene hiddenNode1 = hidden();
+    ConnectionGene con1 = connection(inputNode1, outputNode).build();
+    ConnectionGene con2 = connection(hiddenNode1, outputNode).build();
+    ConnectionGene con3 = connection(outputNode, hiddenNode1).build();
+    Genome genome = Genome.init(List.of(inputNode1, outputNode, hiddenNode1),
+        List.of(con1, con2, con3));
+
+    // when: computing the network
+    RecurrentNeuralNetwork network = RecurrentNeuralNetwork.createFromGenome(genome);
+    network.putValue(inputNode1, 1f);
+    network.compute(ACTIVATION, 3);
+
+    // then: out has been fed back through the hidden node
+    assertThat(network.getValue(outputNode)).isCloseTo(2f, Percentage.withPercentage(0.1d));
+  }
+}
@@ -0,0 +1,128 @@
+package de.andre.neat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class SelectionStrategyTest {
+
+  private static final int SAMPLES = 200_000;
+
+  @Test
+  void shouldSelectProportionalToFitness() {
+    // given
+    float[] fitnesses = {1f, 2f, 0f, 5f, 2f};
+
+    // when
+    double[] frequencies = frequencies(SelectionStrategy.FITNESS_PROPORTIONAL, fitnesses);
+
+    // then
+    assertThat(frequencies[0]).isCloseTo(0.1, within(0.01));
+    assertThat(frequencies[1]).isCloseTo(0.2, within(0.01));
+    assertThat(frequencies[2]).isEqualTo(0d);
+    assertThat(frequencies[3]).isCloseTo(0.5, within(0.01));
+    assertThat(frequencies[4]).isCloseTo(0.2, within(0.01));
+  }
+
+  @Test
+  void shouldShiftNegativeFitness() {
+    // given
+    float[] fitnesses = {-1f, 0f, 1f};
+
+    // when
+    double[] frequencies = frequencies(SelectionStrategy.FITNESS_PROPORTIONAL, fitnesses);
+
+    // then: the weights are 0, 1 and 2
+    assertThat(frequencies[0]).isEqualTo(0d);
+    assertThat(frequencies[1]).isCloseTo(1 / 3d, within(0.01));
+    assertThat(frequencies[2]).isCloseTo(2 / 3d, within(0.01));
+  }
+
+  @Test
+  void shouldSelectUniformly_WhenAllFitnessIsZero() {
+    // given
+    float[] fitnesses = {0f, 0f, 0f, 0f};
+
+    // when
+    double[] frequencies = frequencies(SelectionStrategy.FITNESS_PROPORTIONAL, fitnesses);
+
+    // then
+    for (double frequency : frequencies) {
+      assertThat(frequency).isCloseTo(0.25, within(0.01));
+    }
+  }
+
+  @Test
+  void shouldFillPoolByExpectedSelections_WhenUsingStochasticUniversalSampling() {
+    // given: expected selections of 0.5, 1, 1.5, 2 and 0
+    float[] fitnesses = {1f, 2f, 3f, 4f, 0f};
+
+    // when
+    SelectionStrategy.Selection selection = SelectionStrategy.STOCHASTIC_UNIVERSAL_SAMPLING
+        .prepare(fitnesses, fitnesses.length, new Random(42));
+    double[] frequencies = frequencies(selection, fitnesses.length);
+
+    // then: each candidate is in the pool of 5 as often as expected, rounded up or down
+    double[] expected = {0.5, 1, 1.5, 2, 0};
+    for (int i = 0; i < fitnesses.length; i++) {
+      double poolCount = Math.round(frequencies[i] * fitnesses.length);
+      assertThat(poolCount).isBetween(Math.floor(expected[i]), Math.ceil(expected[i]));
+    }
+  }
+
+  @Test
+  void shouldPreferFitterCandidates_WhenUsingTournament() {
+    // given
+    float[] fitnesses = {3f, 1f, 2f};
+
+    // when
+    double[] frequencies = frequencies(SelectionStrategy.tournament(2), fitnesses);
+
+    // then: the best wins unless it is not drawn at all, the worst only against itself
+    assertThat(frequencies[0]).isCloseTo(5 / 9d, within(0.01));
+    assertThat(frequencies[1]).isCloseTo(1 / 9d, within(0.01));
+    assertThat(frequencies[2]).isCloseTo(3 / 9d, within(0.01));
+  }
+
+  @Test
+  void shouldSelectByRank_WhenUsingLinearRank() {
+    // given: the ranks do not depend on the distances between the fitness values
+    float[] fitnesses = {1000f, -5f, 0.5f, 0.5f};
+
+    // when
+    double[] frequencies = frequencies(SelectionStrategy.linearRank(2f), fitnesses);
+
+    // then: rank weights 0, 2/3, 4/3 and 2 with the tied ranks sharing their weight
+    assertThat(frequencies[0]).isCloseTo(0.5, within(0.01));
+    assertThat(frequencies[1]).isCloseTo(0d, within(0.001));
+    assertThat(frequencies[2]).isCloseTo(0.25, within(0.01));
+    assertThat(frequencies[3]).isCloseTo(0.25, within(0.01));
+  }
+
+  @Test
+  void shouldRejectInvalidParameters() {
+    assertThrows(IllegalArgumentException.class, () -> SelectionStrategy.tournament(0));
+    assertThrows(IllegalArgumentException.class, () -> SelectionStrategy.linearRank(2.5f));
+  }
+
+  private static double[] frequencies(SelectionStrategy strategy, float[] fitnesses) {
+    return frequencies(strategy.prepare(fitnesses, fitnesses.length, new Random(42)),
+        fitnesses.length);
+  }
+
+  private static double[] frequencies(SelectionStrategy.Selection selection, int size) {
+    Random r = new Random(43);
+    int[] counts = new int[size];
+    for (int i = 0; i < SAMPLES; i++) {
+      counts[selection.select(r)]++;
+    }
+    double[] frequencies = new double[size];
+    for (int i = 0; i < size; i++) {
+      frequencies[i] = (double) counts[i] / SAMPLES;
+    }
+    return frequencies;
+  }
+}
@@ -0,0 +1,65 @@
+package de.andre.neat;
+
+import static de.andre.neat.Parameter.PARAM_POPULATION_SIZE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import de.andre.neat.NodeGene.Type;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class XorEvaluatorTest {
+
+  @Test
+  void shouldNotEvaluate_WhenOutputIsNotConnected() {
+    // given: a genome whose connections are all disabled
+    XorEvaluator evaluator = new XorEvaluator(PARAM_POPULATION_SIZE, null, 42L);
+    evaluator.evaluateNextGeneration();
+    Genome genome = evaluator.getFittestGenome();
+    List<ConnectionGene> connections = new ArrayList<>();
+    for (ConnectionGene connection : genome.getConnections()) {
+      connections.add(copy(connection, connection.getInNode(), connection.getOutNode(),
+          connection.getInnovation(), ExpressedState.NOT_EXPRESSED));
+    }
+    Genome unconnected = Genome.init(genome.getNodes(), connections);
+
+    // when
+    Fitness fitness = evaluator.evaluateGenome(unconnected);
+
+    // then
+    assertThat(fitness).isEqualTo(Fitness.NOT_AVAILABLE);
+  }
+
+  @Test
+  void shouldEvaluateStepByStep_WhenOutputDependsOnCycle() {
+    // given: a genome whose output is connected to itself
+    XorEvaluator evaluator = new XorEvaluator(PARAM_POPULATION_SIZE, null, 42L);
+    evaluator.evaluateNextGeneration();
+    Genome genome = evaluator.getFittestGenome();
+    NodeGene outputNode = genome.getNodes().stream()
+        .filter(node -> node.getType() == Type.OUTPUT)
+        .findFirst().orElseThrow();
+    List<ConnectionGene> connections = new ArrayList<>(genome.getConnections());
+    connections.add(copy(connections.get(0), outputNode, outputNode,
+        InnovationNumber.of(genome.maxInnovationNumber().getValue() + 1),
+        ExpressedState.EXPRESSED));
+    Genome cyclic = Genome.init(genome.getNodes(), connections);
+
+    // when
+    Fitness fitness = evaluator.evaluateGenome(cyclic);
+
+    // then
+    assertThat(fitness).isNotEqualTo(Fitness.NOT_AVAILABLE);
+  }
+
+  private static ConnectionGene copy(ConnectionGene connection, NodeGene inNode, NodeGene outNode,
+      InnovationNumber innovation, ExpressedState expressed) {
+    return ConnectionGene.builder()
+        .inNode(inNode)
+        .outNode(outNode)
+        .weight(connection.getWeight())
+        .innovation(innovation)
+        .expressed(expressed)
+        .build();
+  }
+}
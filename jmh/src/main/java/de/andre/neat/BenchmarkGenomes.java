@@ -0,0 +1,111 @@
+package de.andre.neat;
+
+import de.andre.neat.NodeGene.Type;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Genomes for the benchmarks, generated from a fixed seed.
+ */
+public interface BenchmarkGenomes {
+
+  int INPUTS = 3;
+  int OUTPUTS = 1;
+
+  /**
+   * @return a random feed-forward genome with distinct connections and one hidden node per five
+   * connections. The inputs are the first nodes of the genome followed by the outputs.
+   */
+  static Genome feedForward(long seed, int connections) {
+    Random r = new Random(seed);
+    int hiddenNodes = Math.max(2, connections / 5);
+    List<NodeGene> nodes = new ArrayList<>();
+    // nodes in topological order: inputs, hidden, outputs
+    List<NodeGene> ordered = new ArrayList<>();
+    for (int i = 0; i < INPUTS; i++) {
+      nodes.add(node(Type.INPUT, nodes.size() + 1));
+    }
+    for (int i = 0; i < OUTPUTS; i++) {
+      nodes.add(node(Type.OUTPUT, nodes.size() + 1));
+    }
+    ordered.addAll(nodes.subList(0, INPUTS));
+    for (int i = 0; i < hiddenNodes; i++) {
+      NodeGene hidden = node(Type.HIDDEN, nodes.size() + 1);
+      nodes.add(hidden);
+      ordered.add(hidden);
+    }
+    ordered.addAll(nodes.subList(INPUTS, INPUTS + OUTPUTS));
+
+    List<ConnectionGene> connectionGenes = new ArrayList<>();
+    Set<Long> edges = new HashSet<>();
+    // every output and hidden node gets a connection from an earlier node
+    for (int out = INPUTS; out < ordered.size() && connectionGenes.size() < connections; out++) {
+      int in = r.nextInt(Math.min(out, INPUTS + hiddenNodes));
+      addConnection(r, ordered.get(in), ordered.get(out), edges, connectionGenes);
+    }
+    while (connectionGenes.size() < connections) {
+      int out = INPUTS + r.nextInt(ordered.size() - INPUTS);
+      int in = r.nextInt(Math.min(out, INPUTS + hiddenNodes));
+      addConnection(r, ordered.get(in), ordered.get(out), edges, connectionGenes);
+    }
+    return Genome.init(nodes, connectionGenes);
+  }
+
+  /**
+   * @return a descendant of the genome after a few generations of mutations
+   */
+  static Genome relative(Genome genome, long seed) {
+    Random r = new Random(seed);
+    NodeFactory nodeFactory = nodeFactory(genome);
+    InnovationNumberFactory innovationNumberFactory = innovationNumberFactory(genome);
+    Genome relative = genome;
+    for (int i = 0; i < 10; i++) {
+      relative = relative.weightMutation(r)
+          .addNodeMutation(r, nodeFactory, innovationNumberFactory)
+          .addConnectionMutation(r, innovationNumberFactory);
+    }
+    return relative;
+  }
+
+  /**
+   * @return a factory that continues after the node ids of the genome
+   */
+  static NodeFactory nodeFactory(Genome genome) {
+    NodeFactory nodeFactory = new NodeFactory();
+    nodeFactory.continueAfter(genome.getNodes().stream()
+        .mapToInt(node -> node.getId().getValue())
+        .max().orElse(0));
+    return nodeFactory;
+  }
+
+  /**
+   * @return a factory that continues after the innovation numbers of the genome
+   */
+  static InnovationNumberFactory innovationNumberFactory(Genome genome) {
+    InnovationNumberFactory innovationNumberFactory = new InnovationNumberFactory();
+    innovationNumberFactory.continueAfter(genome.getConnections().stream()
+        .mapToInt(connection -> connection.getInnovation().getValue())
+        .max().orElse(0));
+    return innovationNumberFactory;
+  }
+
+  private static NodeGene node(Type type, int id) {
+    return NodeGene.builder().type(type).id(NodeId.of(id)).build();
+  }
+
+  private static void addConnection(Random r, NodeGene in, NodeGene out, Set<Long> edges,
+      List<ConnectionGene> connections) {
+    if (edges.add(ConnectionGene.edgeKey(in, out))) {
+      connections.add(ConnectionGene.builder()
+          .inNode(in)
+          .outNode(out)
+          .weight(ConnectionWeight.random(r))
+          .expressed(ExpressedState.EXPRESSED)
+          .innovation(InnovationNumber.of(connections.size() + 1))
+          .build());
+    }
+  }
+}
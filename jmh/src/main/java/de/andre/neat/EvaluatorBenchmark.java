@@ -0,0 +1,92 @@
+package de.andre.neat;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A full generation of {@link XorEvaluator}, on the calling thread (0 threads) or on a
+ * {@link ForkJoinPool}. The evaluation of each genome can be repeated to see how the parallel
+ * execution pays off for more expensive evaluators. Every iteration starts a new run from the same
+ * seed, so the genomes do not keep growing over the iterations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EvaluatorBenchmark {
+
+  private static final int WARM_UP_GENERATIONS = 20;
+
+  @Param({"150", "1000"})
+  private int populationSize;
+
+  @Param({"0", "1", "4"})
+  private int threads;
+
+  @Param({"1", "200"})
+  private int evaluationRepetitions;
+
+  private ForkJoinPool pool;
+  private Evaluator evaluator;
+
+  @Setup
+  public void startPool() {
+    pool = threads == 0 ? null : new ForkJoinPool(threads);
+  }
+
+  @TearDown
+  public void stopPool() {
+    if (pool != null) {
+      pool.shutdown();
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void setup() {
+    evaluator = new RepeatingXorEvaluator(populationSize, pool, evaluationRepetitions);
+    for (int i = 0; i < WARM_UP_GENERATIONS; i++) {
+      evaluator.evaluateNextGeneration();
+    }
+  }
+
+  @Benchmark
+  public Evaluator evaluateNextGeneration() {
+    evaluator.evaluateNextGeneration();
+    return evaluator;
+  }
+
+  private static class RepeatingXorEvaluator extends XorEvaluator {
+
+    private final int repetitions;
+
+    private RepeatingXorEvaluator(int populationSize, ExecutorService executor, int repetitions) {
+      super(populationSize, executor, 42L);
+      this.repetitions = repetitions;
+    }
+
+    @Override
+    protected Fitness evaluateGenome(Genome genome) {
+      Fitness fitness = super.evaluateGenome(genome);
+      for (int i = 1; i < repetitions; i++) {
+        fitness = super.evaluateGenome(genome);
+      }
+      return fitness;
+    }
+  }
+}
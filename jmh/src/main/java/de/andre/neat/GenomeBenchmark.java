@@ -0,0 +1,151 @@
+package de.andre.neat;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Comparing, crossing and mutating genomes. The second genome descends from the first one, so
+ * most of their connections match. The structural mutations get a new copy of the first genome for
+ * every invocation, like an offspring, so they do not profit from the metadata cached by previous
+ * invocations. The copies are made before each batch of mutations, since setting up every single
+ * invocation would take longer than the mutation itself. A mutated offspring instead gets the
+ * reachability of its parent, so {@link #addConnectionMutationToOffspring} only rebuilds the
+ * metadata.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenomeBenchmark {
+
+  private static final CompatibiltyCalculator COMPATIBILITY_CALCULATOR =
+      new CompatibiltyCalculator();
+  /**
+   * structural mutations per iteration, each one on its own copy
+   */
+  private static final int BATCH_SIZE = 1000;
+
+  @Param({"10", "100", "1000", "10000"})
+  private int connections;
+
+  private Genome genome1;
+  private Genome genome2;
+  private Random r;
+  private NodeFactory nodeFactory;
+  private InnovationNumberFactory innovationNumberFactory;
+
+  @Setup
+  public void setup() {
+    genome1 = BenchmarkGenomes.feedForward(42L, connections);
+    genome2 = BenchmarkGenomes.relative(genome1, 43L);
+    r = new Random(44L);
+    // genome2 contains the ids of genome1, so new nodes and connections do not reuse them
+    nodeFactory = BenchmarkGenomes.nodeFactory(genome2);
+    innovationNumberFactory = BenchmarkGenomes.innovationNumberFactory(genome2);
+  }
+
+  @Benchmark
+  public float calcCompatibility() {
+    return COMPATIBILITY_CALCULATOR.calcCompatibility(genome1, genome2);
+  }
+
+  @Benchmark
+  public Genome crossover() {
+    return Genome.crossover(genome1, genome2, false, r);
+  }
+
+  @Benchmark
+  public Genome crossoverSameFitness() {
+    return Genome.crossover(genome1, genome2, true, r);
+  }
+
+  @Benchmark
+  public Genome weightMutation() {
+    return genome1.weightMutation(r);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @Warmup(iterations = 50, batchSize = BATCH_SIZE)
+  @Measurement(iterations = 20, batchSize = BATCH_SIZE)
+  @OperationsPerInvocation(BATCH_SIZE)
+  public Genome addNodeMutation(FreshGenomes fresh) {
+    return fresh.next().addNodeMutation(r, nodeFactory, innovationNumberFactory);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @Warmup(iterations = 50, batchSize = BATCH_SIZE)
+  @Measurement(iterations = 20, batchSize = BATCH_SIZE)
+  @OperationsPerInvocation(BATCH_SIZE)
+  public Genome addConnectionMutation(FreshGenomes fresh) {
+    return fresh.next().addConnectionMutation(r, innovationNumberFactory);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @Warmup(iterations = 50, batchSize = BATCH_SIZE)
+  @Measurement(iterations = 20, batchSize = BATCH_SIZE)
+  @OperationsPerInvocation(BATCH_SIZE)
+  public Genome addConnectionMutationToOffspring(Offspring offspring) {
+    return offspring.next().addConnectionMutation(r, innovationNumberFactory);
+  }
+
+  /**
+   * A copy of the first genome for each invocation of a batch.
+   */
+  @State(Scope.Thread)
+  public static class FreshGenomes {
+
+    final Genome[] genomes = new Genome[BATCH_SIZE];
+    int next;
+
+    @Setup(Level.Iteration)
+    public void setup(GenomeBenchmark benchmark) {
+      for (int i = 0; i < genomes.length; i++) {
+        genomes[i] = Genome.init(benchmark.genome1.getNodes(), benchmark.genome1.getConnections());
+      }
+      next = 0;
+    }
+
+    Genome next() {
+      Genome genome = genomes[next];
+      // the mutated copy and its metadata can be collected
+      genomes[next++] = null;
+      return genome;
+    }
+  }
+
+  /**
+   * An offspring of the first genome with an additional connection for each invocation of a batch.
+   */
+  @State(Scope.Thread)
+  public static class Offspring extends FreshGenomes {
+
+    private final Random r = new Random(45L);
+
+    @Override
+    @Setup(Level.Iteration)
+    public void setup(GenomeBenchmark benchmark) {
+      for (int i = 0; i < genomes.length; i++) {
+        genomes[i] = benchmark.genome1.addConnectionMutation(r, benchmark.innovationNumberFactory);
+      }
+      next = 0;
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package de.andre.neat;
+
+import org.openjdk.jol.info.GraphLayout;
+
+/**
+ * Prints the retained size per connection of a {@link Genome} and of its {@link PackedGenome},
+ * measured by walking the object graph with JOL. Unlike the allocations reported for
+ * {@link PackedGenomeBenchmark}, this is the memory a stored genome keeps reachable. The genome
+ * owns all of its genes, like one that does not share them with other genomes.
+ */
+public class GenomeFootprint {
+
+  private static final int[] CONNECTIONS = {100, 1000, 5000};
+
+  public static void main(String[] args) {
+    System.out.println("connections\tgenome bytes/connection\tpacked bytes/connection");
+    for (int connections : CONNECTIONS) {
+      Genome genome = BenchmarkGenomes.feedForward(42L, connections);
+      PackedGenome packedGenome = PackedGenome.pack(genome);
+      long genomeBytes = GraphLayout.parseInstance(genome).totalSize();
+      long packedBytes = GraphLayout.parseInstance(packedGenome).totalSize();
+      System.out.printf("%d\t%.1f\t%.1f%n", connections, (double) genomeBytes / connections,
+          (double) packedBytes / connections);
+    }
+  }
+}
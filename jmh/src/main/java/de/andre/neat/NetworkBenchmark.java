@@ -0,0 +1,60 @@
+package de.andre.neat;
+
+import static de.andre.neat.Parameter.PARAM_ACTIVATION_FUNCTION;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building a {@link NeuralNetwork} from a genome and computing its output.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NetworkBenchmark {
+
+  @Param({"10", "100", "1000", "10000"})
+  private int connections;
+
+  private Genome genome;
+  private List<NodeGene> inputNodes;
+  private NodeGene outputNode;
+  private NeuralNetwork neuralNetwork;
+
+  @Setup
+  public void setup() {
+    genome = BenchmarkGenomes.feedForward(42L, connections);
+    inputNodes = genome.getNodes().subList(0, BenchmarkGenomes.INPUTS);
+    outputNode = genome.getNodes().get(BenchmarkGenomes.INPUTS);
+    neuralNetwork = NeuralNetwork.createFromGenome(genome);
+  }
+
+  @Benchmark
+  public NeuralNetwork createFromGenome() {
+    return NeuralNetwork.createFromGenome(genome);
+  }
+
+  @Benchmark
+  public float compute() {
+    neuralNetwork.resetValues();
+    for (int i = 0; i < inputNodes.size(); i++) {
+      neuralNetwork.putValue(inputNodes.get(i), i + 0.5f);
+    }
+    neuralNetwork.compute(PARAM_ACTIVATION_FUNCTION);
+    return neuralNetwork.getValue(outputNode);
+  }
+}
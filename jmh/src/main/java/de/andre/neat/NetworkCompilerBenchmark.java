@@ -0,0 +1,76 @@
+package de.andre.neat;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Computing the output of the same genome with {@link NeuralNetwork} and with the
+ * {@link CompiledNetwork} of {@link NetworkCompiler}. The compiled method is limited in size, so
+ * the largest genomes of the other benchmarks are left out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NetworkCompilerBenchmark {
+
+  @Param({"10", "100", "1000"})
+  private int connections;
+
+  @Param({"STEEPENED_SIGMOID", "STEEPENED_SIGMOID_RATIONAL"})
+  private String activationFunctionName;
+
+  private ActivationFunction activationFunction;
+  private List<NodeGene> inputNodes;
+  private NodeGene outputNode;
+  private NeuralNetwork neuralNetwork;
+  private CompiledNetwork compiledNetwork;
+  private final float[] inputs = new float[BenchmarkGenomes.INPUTS];
+  private final float[] outputs = new float[BenchmarkGenomes.OUTPUTS];
+
+  @Setup
+  public void setup() {
+    activationFunction = "STEEPENED_SIGMOID".equals(activationFunctionName)
+        ? ActivationFunction.STEEPENED_SIGMOID : ActivationFunction.STEEPENED_SIGMOID_RATIONAL;
+    Genome genome = BenchmarkGenomes.feedForward(42L, connections);
+    inputNodes = genome.getNodes().subList(0, BenchmarkGenomes.INPUTS);
+    List<NodeGene> outputNodes = genome.getNodes().subList(BenchmarkGenomes.INPUTS,
+        BenchmarkGenomes.INPUTS + BenchmarkGenomes.OUTPUTS);
+    outputNode = outputNodes.get(0);
+    neuralNetwork = NeuralNetwork.createFromGenome(genome);
+    compiledNetwork = NetworkCompiler.compile(genome, inputNodes, outputNodes,
+        activationFunction);
+    for (int i = 0; i < inputs.length; i++) {
+      inputs[i] = i + 0.5f;
+    }
+  }
+
+  @Benchmark
+  public float neuralNetwork() {
+    neuralNetwork.resetValues();
+    for (int i = 0; i < inputNodes.size(); i++) {
+      neuralNetwork.putValue(inputNodes.get(i), inputs[i]);
+    }
+    neuralNetwork.compute(activationFunction);
+    return neuralNetwork.getValue(outputNode);
+  }
+
+  @Benchmark
+  public float compiledNetwork() {
+    compiledNetwork.compute(inputs, outputs);
+    return outputs[0];
+  }
+}
@@ -0,0 +1,51 @@
+package de.andre.neat;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Converting between {@link Genome} and {@link PackedGenome}. The allocated bytes per operation
+ * reported by the GC profiler (gc.alloc.rate.norm) include temporary objects, so divided by the
+ * number of connections they are only an upper bound of the footprint per connection. The
+ * retained size is measured by {@link GenomeFootprint}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PackedGenomeBenchmark {
+
+  @Param({"100", "1000", "5000"})
+  private int connections;
+
+  private Genome genome;
+  private PackedGenome packedGenome;
+
+  @Setup
+  public void setup() {
+    genome = BenchmarkGenomes.feedForward(42L, connections);
+    packedGenome = PackedGenome.pack(genome);
+  }
+
+  @Benchmark
+  public PackedGenome pack() {
+    return PackedGenome.pack(genome);
+  }
+
+  @Benchmark
+  public Genome unpack() {
+    return packedGenome.unpack();
+  }
+}
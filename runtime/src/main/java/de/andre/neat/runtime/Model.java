@@ -0,0 +1,315 @@
+package de.andre.neat.runtime;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A feed-forward network exported from an evolved genome. The model is read from the (mapped)
+ * buffer on each evaluation, it is immutable and can be evaluated by several threads at once.
+ *
+ * <p>The format starts with a header of {@link #HEADER_BYTES}: {@link #MAGIC},
+ * {@link #VERSION}, the {@link Activation} and the {@link WeightEncoding} as a byte each, two
+ * reserved bytes, the number of inputs, outputs, computed nodes and connections. Values are indexed
+ * with the inputs first and the computed nodes following in topological order. The sections follow
+ * the header, all numbers are big-endian:
+ * <ul>
+ *   <li>the value index of each output</li>
+ *   <li>the end of the incoming connections of each computed node (exclusive)</li>
+ *   <li>the value index of the source of each connection</li>
+ *   <li>{@link WeightEncoding#FLOAT32}: the weight of each connection as float</li>
+ *   <li>{@link WeightEncoding#INT8}: a scale per computed node as float, then the weight of each
+ *   connection as byte, multiplied by the scale of its node</li>
+ * </ul>
+ */
+public final class Model {
+
+  /**
+   * "NEAM" in ASCII
+   */
+  public static final int MAGIC = 0x4e45414d;
+  public static final int VERSION = 1;
+  public static final int HEADER_BYTES = 28;
+
+  private final ByteBuffer buffer;
+  private final Activation activation;
+  private final WeightEncoding weightEncoding;
+  private final int inputCount;
+  private final int outputCount;
+  private final int computedCount;
+  // start of the sections
+  private final int outputsStart;
+  private final int incomingEndsStart;
+  private final int sourcesStart;
+  private final int scalesStart;
+  private final int weightsStart;
+
+  private Model(ByteBuffer buffer) {
+    if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+      throw new IllegalArgumentException("Not a model");
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new IllegalArgumentException("Unsupported model version " + buffer.getInt(4));
+    }
+    this.buffer = buffer;
+    this.activation = Activation.of(buffer.get(8));
+    this.weightEncoding = WeightEncoding.of(buffer.get(9));
+    this.inputCount = buffer.getInt(12);
+    this.outputCount = buffer.getInt(16);
+    this.computedCount = buffer.getInt(20);
+    int connectionCount = buffer.getInt(24);
+    if (inputCount < 0 || outputCount < 0 || computedCount < 0 || connectionCount < 0) {
+      throw new IllegalArgumentException("Model is corrupted");
+    }
+
+    long position = HEADER_BYTES;
+    outputsStart = (int) position;
+    position += 4L * outputCount;
+    incomingEndsStart = (int) position;
+    position += 4L * computedCount;
+    sourcesStart = (int) position;
+    position += 4L * connectionCount;
+    scalesStart = (int) position;
+    if (weightEncoding == WeightEncoding.INT8) {
+      position += 4L * computedCount;
+    }
+    weightsStart = (int) position;
+    position += (long) weightEncoding.bytes * connectionCount;
+    if (position != buffer.capacity()) {
+      throw new IllegalArgumentException(
+          "Model has " + buffer.capacity() + " bytes instead of " + position);
+    }
+    validateIndices(connectionCount);
+  }
+
+  /**
+   * Checks the indices once, so an evaluation can not read outside of the values.
+   */
+  private void validateIndices(int connectionCount) {
+    int valueCount = valueCount();
+    for (int i = 0; i < outputCount; i++) {
+      int output = buffer.getInt(outputsStart + 4 * i);
+      if (output < 0 || output >= valueCount) {
+        throw new IllegalArgumentException("Output " + i + " refers to value " + output);
+      }
+    }
+    int start = 0;
+    for (int node = 0; node < computedCount; node++) {
+      int end = buffer.getInt(incomingEndsStart + 4 * node);
+      if (end < start || end > connectionCount) {
+        throw new IllegalArgumentException("Node " + node + " has invalid connections");
+      }
+      for (int connection = start; connection < end; connection++) {
+        // the sources must have been computed before the node
+        int source = buffer.getInt(sourcesStart + 4 * connection);
+        if (source < 0 || source >= inputCount + node) {
+          throw new IllegalArgumentException(
+              "Connection " + connection + " refers to value " + source);
+        }
+      }
+      start = end;
+    }
+    if (start != connectionCount) {
+      throw new IllegalArgumentException("Model has connections without node");
+    }
+  }
+
+  /**
+   * Maps the file, the mapping stays valid after the file has been closed.
+   */
+  public static Model load(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return new Model(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * @param buffer the model from position 0 to the capacity of the buffer, it must not be changed
+   *               afterwards
+   */
+  public static Model of(ByteBuffer buffer) {
+    return new Model(buffer);
+  }
+
+  public int inputCount() {
+    return inputCount;
+  }
+
+  public int outputCount() {
+    return outputCount;
+  }
+
+  /**
+   * @return the length of the values needed by {@link #evaluate(float[], float[], float[])}
+   */
+  public int valueCount() {
+    return inputCount + computedCount;
+  }
+
+  public Activation getActivation() {
+    return activation;
+  }
+
+  public WeightEncoding getWeightEncoding() {
+    return weightEncoding;
+  }
+
+  /**
+   * Computes the outputs without allocating anything.
+   *
+   * @param inputs  one value per input
+   * @param outputs receives one value per output
+   * @param values  buffer of at least {@link #valueCount()} values, that can be reused for each
+   *                evaluation by the same thread
+   */
+  public void evaluate(float[] inputs, float[] outputs, float[] values) {
+    if (inputs.length < inputCount || outputs.length < outputCount
+        || values.length < valueCount()) {
+      throw new IllegalArgumentException("Arrays are too short for the model");
+    }
+    System.arraycopy(inputs, 0, values, 0, inputCount);
+    ByteBuffer buffer = this.buffer;
+    Activation activation = this.activation;
+    int connection = 0;
+    if (weightEncoding == WeightEncoding.FLOAT32) {
+      for (int node = 0; node < computedCount; node++) {
+        int end = buffer.getInt(incomingEndsStart + 4 * node);
+        float sum = 0f;
+        for (; connection < end; connection++) {
+          sum += values[buffer.getInt(sourcesStart + 4 * connection)]
+              * buffer.getFloat(weightsStart + 4 * connection);
+        }
+        values[inputCount + node] = activation.apply(sum);
+      }
+    } else {
+      for (int node = 0; node < computedCount; node++) {
+        int end = buffer.getInt(incomingEndsStart + 4 * node);
+        float sum = 0f;
+        for (; connection < end; connection++) {
+          sum += values[buffer.getInt(sourcesStart + 4 * connection)]
+              * buffer.get(weightsStart + connection);
+        }
+        values[inputCount + node] = activation.apply(sum * buffer.getFloat(scalesStart + 4 * node));
+      }
+    }
+    for (int i = 0; i < outputCount; i++) {
+      outputs[i] = values[buffer.getInt(outputsStart + 4 * i)];
+    }
+  }
+
+  public enum Activation {
+    /**
+     * 1 / (1 + e^(-4.9x)), the steepened sigmoid of the NEAT paper
+     */
+    STEEPENED_SIGMOID {
+      @Override
+      public float apply(float x) {
+        return steepenedSigmoid(x);
+      }
+    },
+    TANH {
+      @Override
+      public float apply(float x) {
+        return (float) Math.tanh(x);
+      }
+    },
+    RELU {
+      @Override
+      public float apply(float x) {
+        return x > 0f ? x : 0f;
+      }
+    },
+    /**
+     * the steepened sigmoid looked up in a table of 1024 entries on [-3, 3] with linear
+     * interpolation, the same values as the lookup table the network has been evolved with
+     */
+    STEEPENED_SIGMOID_LOOKUP {
+      private static final float MIN = -3f;
+      private static final float MAX = 3f;
+      private final float scale = (LOOKUP_TABLE_SIZE - 1) / (MAX - MIN);
+      private final float[] table = new float[LOOKUP_TABLE_SIZE];
+
+      {
+        for (int i = 0; i < table.length; i++) {
+          table[i] = steepenedSigmoid(MIN + i / scale);
+        }
+      }
+
+      @Override
+      public float apply(float x) {
+        if (!(x > MIN)) {
+          return table[0];
+        }
+        if (x >= MAX) {
+          return table[table.length - 1];
+        }
+        float position = (x - MIN) * scale;
+        int index = Math.min((int) position, table.length - 2);
+        float fraction = position - index;
+        return table[index] + (table[index + 1] - table[index]) * fraction;
+      }
+    },
+    /**
+     * the steepened sigmoid as (1 + tanh(2.45x)) / 2, tanh approximated by Lambert's continued
+     * fraction
+     */
+    STEEPENED_SIGMOID_RATIONAL {
+      @Override
+      public float apply(float x) {
+        float y = 2.45f * x;
+        if (y >= 4.97f) {
+          return 1f;
+        }
+        if (y <= -4.97f) {
+          return 0f;
+        }
+        float y2 = y * y;
+        float tanh = y * (135135f + y2 * (17325f + y2 * (378f + y2)))
+            / (135135f + y2 * (62370f + y2 * (3150f + y2 * 28f)));
+        return 0.5f + 0.5f * tanh;
+      }
+    };
+
+    private static final int LOOKUP_TABLE_SIZE = 1024;
+    private static final Activation[] VALUES = values();
+
+    public abstract float apply(float x);
+
+    private static float steepenedSigmoid(float x) {
+      return (float) (1d / (1d + Math.exp(-4.9d * x)));
+    }
+
+    private static Activation of(byte ordinal) {
+      if (ordinal < 0 || ordinal >= VALUES.length) {
+        throw new IllegalArgumentException("Unknown activation " + ordinal);
+      }
+      return VALUES[ordinal];
+    }
+  }
+
+  public enum WeightEncoding {
+    FLOAT32(4),
+    /**
+     * symmetric quantization with a scale per node, the largest weight of a node is 127
+     */
+    INT8(1);
+
+    private static final WeightEncoding[] VALUES = values();
+
+    private final int bytes;
+
+    WeightEncoding(int bytes) {
+      this.bytes = bytes;
+    }
+
+    private static WeightEncoding of(byte ordinal) {
+      if (ordinal < 0 || ordinal >= VALUES.length) {
+        throw new IllegalArgumentException("Unknown weight encoding " + ordinal);
+      }
+      return VALUES[ordinal];
+    }
+  }
+}
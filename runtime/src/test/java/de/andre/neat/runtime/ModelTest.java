@@ -0,0 +1,121 @@
+package de.andre.neat.runtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import de.andre.neat.runtime.Model.Activation;
+import de.andre.neat.runtime.Model.WeightEncoding;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ModelTest {
+
+  /**
+   * hidden = relu(in0 - in1), out = relu(2 * hidden + 0.5 * in0)
+   */
+  private static final int[] SOURCES = {0, 1, 2, 0};
+  private static final float[] WEIGHTS = {1f, -1f, 2f, 0.5f};
+
+  @Test
+  void shouldEvaluateModel() throws IOException {
+    // given
+    Model model = Model.of(ByteBuffer.wrap(model(SOURCES, WEIGHTS)));
+    float[] outputs = new float[1];
+    float[] values = new float[model.valueCount()];
+
+    // when
+    model.evaluate(new float[]{3f, 1f}, outputs, values);
+
+    // then
+    assertThat(model.inputCount()).isEqualTo(2);
+    assertThat(model.getActivation()).isEqualTo(Activation.RELU);
+    assertThat(outputs[0]).isEqualTo(5.5f);
+
+    // when: the hidden node is not active
+    model.evaluate(new float[]{1f, 3f}, outputs, values);
+
+    // then
+    assertThat(outputs[0]).isEqualTo(0.5f);
+  }
+
+  @Test
+  void shouldNotAllocate_WhenEvaluatingMappedModel(@TempDir Path directory) throws IOException {
+    // given
+    Path file = Files.write(directory.resolve("model.bin"), model(SOURCES, WEIGHTS));
+    Model model = Model.load(file);
+    float[] inputs = {3f, 1f};
+    float[] outputs = new float[1];
+    float[] values = new float[model.valueCount()];
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+
+    // when
+    long before = threads.getThreadAllocatedBytes(thread);
+    int evaluations = 100_000;
+    for (int i = 0; i < evaluations; i++) {
+      model.evaluate(inputs, outputs, values);
+    }
+    long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+    // then: not even a byte per evaluation
+    assertThat(allocated).isLessThan(evaluations);
+    assertThat(outputs[0]).isEqualTo(5.5f);
+  }
+
+  @Test
+  void shouldRejectInvalidModels() throws IOException {
+    byte[] valid = model(SOURCES, WEIGHTS);
+
+    // wrong magic number
+    byte[] wrongMagic = valid.clone();
+    wrongMagic[0] = 0;
+    assertThrows(IllegalArgumentException.class, () -> Model.of(ByteBuffer.wrap(wrongMagic)));
+
+    // truncated
+    assertThrows(IllegalArgumentException.class,
+        () -> Model.of(ByteBuffer.wrap(Arrays.copyOf(valid, valid.length - 1))));
+
+    // the hidden node refers to the output, that is computed after it
+    byte[] wrongOrder = model(new int[]{0, 3, 2, 0}, WEIGHTS);
+    assertThrows(IllegalArgumentException.class, () -> Model.of(ByteBuffer.wrap(wrongOrder)));
+  }
+
+  /**
+   * @return a model with 2 inputs, a hidden node with the first 2 connections and an output node
+   * with the last 2 connections
+   */
+  private static byte[] model(int[] sources, float[] weights) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(Model.MAGIC);
+    out.writeInt(Model.VERSION);
+    out.writeByte(Activation.RELU.ordinal());
+    out.writeByte(WeightEncoding.FLOAT32.ordinal());
+    out.writeShort(0);
+    out.writeInt(2);
+    out.writeInt(1);
+    out.writeInt(2);
+    out.writeInt(sources.length);
+    // output
+    out.writeInt(3);
+    // incoming ends
+    out.writeInt(2);
+    out.writeInt(4);
+    for (int source : sources) {
+      out.writeInt(source);
+    }
+    for (float weight : weights) {
+      out.writeFloat(weight);
+    }
+    return bytes.toByteArray();
+  }
+}